@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.google.common.io.Resources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * JSON fixtures of TD API responses used in the benchmarks
+ */
+final class BenchmarkFixtures
+{
+    private BenchmarkFixtures()
+    {
+    }
+
+    /**
+     * The response of /v3/job/list with 200 jobs
+     */
+    static final byte[] JOB_LIST = load("fixtures/job_list.json");
+    /**
+     * The response of /v3/table/list with 100 tables
+     */
+    static final byte[] TABLE_LIST = load("fixtures/table_list.json");
+
+    static final String API_KEY = "1/0123456789abcdef0123456789abcdef01234567";
+
+    private static byte[] load(String name)
+    {
+        try {
+            return Resources.toByteArray(Resources.getResource(BenchmarkFixtures.class, "/" + name));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDColumn;
+import com.treasuredata.client.model.TDColumnType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing table schemas, which runs for every table in listTables and showTable responses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnParsingBenchmark
+{
+    private static final String SCHEMA = "[[\"time\",\"long\"],[\"host\",\"string\"],[\"path\",\"string\"],[\"code\",\"int\"],"
+            + "[\"size\",\"long\"],[\"latency\",\"double\"],[\"tags\",\"array<string>\"],[\"attrs\",\"map<string,long>\"],"
+            + "[\"v\",\"string\",\"value\"],[\"scores\",\"array<map<string,double>>\"]]";
+
+    private final String[] tuple = new String[] {"attrs", "map<string,long>", "attributes"};
+
+    @Benchmark
+    public List<TDColumn> parseSchema()
+    {
+        return TDColumn.parseTuple(SCHEMA);
+    }
+
+    @Benchmark
+    public TDColumn parseTuple()
+    {
+        return TDColumn.parseTuple(tuple);
+    }
+
+    @Benchmark
+    public TDColumnType parsePrimitiveType()
+    {
+        return TDColumnType.parseColumnType("string");
+    }
+
+    @Benchmark
+    public TDColumnType parseNestedType()
+    {
+        return TDColumnType.parseColumnType("array<map<string,double>>");
+    }
+}
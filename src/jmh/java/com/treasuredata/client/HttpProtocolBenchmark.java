@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDJobSummary;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fan-out of concurrent jobStatus calls against a local MockWebServer, over HTTP/1.1 with a small connection pool
+ * and over HTTP/2 (h2c) multiplexing the calls on a single connection. The server delays each response to
+ * simulate the API latency, so the throughput is bound by the number of requests in flight.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpProtocolBenchmark
+{
+    private static final int FAN_OUT = 100;
+
+    @Param({"http1.1", "h2c"})
+    public String protocol;
+
+    @Param({"8"})
+    public int connectionPoolSize;
+
+    private MockWebServer server;
+    private TDAsyncClient client;
+
+    @Setup(Level.Trial)
+    public void setUp()
+            throws IOException
+    {
+        TDHttpProtocol httpProtocol = TDHttpProtocol.fromValue(protocol);
+        server = new MockWebServer();
+        server.setServerSocketFactory(new MockServerBenchmark.NoDelayServerSocketFactory());
+        server.setProtocols(Collections.singletonList(httpProtocol == TDHttpProtocol.H2C ? Protocol.H2_PRIOR_KNOWLEDGE : Protocol.HTTP_1_1));
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+            {
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"job_id\":\"17\",\"status\":\"running\"}")
+                        .setHeadersDelay(10, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        client = TDAsyncClient.newBuilder(false)
+                .setApiKey(BenchmarkFixtures.API_KEY)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setProtocol(httpProtocol)
+                .setConnectionPoolSize(connectionPoolSize)
+                .setMaxRequests(FAN_OUT)
+                // HTTP/1.1 needs a connection per request in flight, while HTTP/2 multiplexes them
+                .setMaxRequestsPerHost(httpProtocol == TDHttpProtocol.H2C ? FAN_OUT : connectionPoolSize)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+            throws IOException
+    {
+        client.close();
+        server.shutdown();
+    }
+
+    @TearDown(Level.Iteration)
+    public void drainRecordedRequests()
+            throws InterruptedException
+    {
+        // MockWebServer keeps every request it received
+        while (server.takeRequest(0, TimeUnit.MILLISECONDS) != null) {
+            // Discard
+        }
+    }
+
+    /**
+     * One operation is a fan-out of {@value #FAN_OUT} jobStatus calls
+     */
+    @Benchmark
+    public TDJobSummary fanOutJobStatus()
+    {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[FAN_OUT];
+        for (int i = 0; i < FAN_OUT; i++) {
+            futures[i] = client.jobStatus("17");
+        }
+        CompletableFuture.allOf(futures).join();
+        return (TDJobSummary) futures[FAN_OUT - 1].join();
+    }
+}
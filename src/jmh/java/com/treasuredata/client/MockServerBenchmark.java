@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDJobList;
+import com.treasuredata.client.model.TDTable;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ServerSocketFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end API calls against a local MockWebServer serving the recorded responses.
+ * The allocation per call (gc.alloc.rate.norm) includes both the client and the server side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MockServerBenchmark
+{
+    private MockWebServer server;
+    private TDClient client;
+
+    @Setup(Level.Trial)
+    public void setUp()
+            throws IOException
+    {
+        server = new MockWebServer();
+        // MockWebServer writes the headers and the body separately. Without TCP_NODELAY, small responses
+        // are delayed by Nagle's algorithm and delayed ACK, which hides the client-side cost
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+            {
+                String path = request.getPath();
+                if (path.startsWith("/v3/job/list")) {
+                    return jsonResponse(BenchmarkFixtures.JOB_LIST);
+                }
+                else if (path.startsWith("/v3/table/list/")) {
+                    return jsonResponse(BenchmarkFixtures.TABLE_LIST);
+                }
+                else if (path.startsWith("/v3/system/server_status")) {
+                    return jsonResponse("{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8));
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+        client = TDClient.newBuilder(false)
+                .setApiKey(BenchmarkFixtures.API_KEY)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .build();
+    }
+
+    static class NoDelayServerSocketFactory
+            extends ServerSocketFactory
+    {
+        @Override
+        public ServerSocket createServerSocket()
+                throws IOException
+        {
+            return new ServerSocket()
+            {
+                @Override
+                public Socket accept()
+                        throws IOException
+                {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port)
+                throws IOException
+        {
+            return createServerSocket(port, 50, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog)
+                throws IOException
+        {
+            return createServerSocket(port, backlog, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress ifAddress)
+                throws IOException
+        {
+            ServerSocket serverSocket = createServerSocket();
+            try {
+                serverSocket.bind(new InetSocketAddress(ifAddress, port), backlog);
+            }
+            catch (IOException e) {
+                serverSocket.close();
+                throw e;
+            }
+            return serverSocket;
+        }
+    }
+
+    private static MockResponse jsonResponse(byte[] body)
+    {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(new Buffer().write(body));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+            throws IOException
+    {
+        client.close();
+        server.shutdown();
+    }
+
+    @TearDown(Level.Iteration)
+    public void drainRecordedRequests()
+            throws InterruptedException
+    {
+        // MockWebServer keeps every request it received
+        while (server.takeRequest(0, TimeUnit.MILLISECONDS) != null) {
+            // Discard
+        }
+    }
+
+    @Benchmark
+    public String serverStatus()
+    {
+        return client.serverStatus();
+    }
+
+    @Benchmark
+    public TDJobList listJobs()
+    {
+        return client.listJobs(0, 199);
+    }
+
+    @Benchmark
+    public List<TDTable> listTables()
+    {
+        return client.listTables("sample_datasets");
+    }
+}
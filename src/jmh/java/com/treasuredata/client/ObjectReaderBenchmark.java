@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.treasuredata.client.model.TDDatabase;
+import com.treasuredata.client.model.TDJobSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building an ObjectReader for each response with looking it up from the per-client cache.
+ * Run with -prof gc to see the allocation per call (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectReaderBenchmark
+{
+    private static final byte[] JOB_STATUS_JSON = ("{\"job_id\":\"12345\",\"status\":\"success\",\"created_at\":\"2024-01-01 00:00:00 UTC\","
+            + "\"start_at\":\"2024-01-01 00:00:01 UTC\",\"end_at\":\"2024-01-01 00:00:10 UTC\",\"duration\":9}").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATABASE_LIST_JSON = ("{\"databases\":[{\"name\":\"sample_datasets\",\"count\":8812278,\"permission\":\"administrator\"},"
+            + "{\"name\":\"www_access\",\"count\":5000,\"permission\":\"full_access\"}]}").getBytes(StandardCharsets.UTF_8);
+
+    private TDClient client;
+    private TDHttpClient httpClient;
+    private JavaType jobSummaryType;
+    private JavaType databaseListType;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        client = TDClient.newBuilder(false).setApiKey("1/0123456789abcdef0123456789abcdef01234567").build();
+        httpClient = client.httpClient;
+        jobSummaryType = httpClient.getObjectMapper().getTypeFactory().constructType(TDJobSummary.class);
+        databaseListType = httpClient.getObjectMapper().getTypeFactory().constructType(new TypeReference<List<TDDatabase>>() {});
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        client.close();
+    }
+
+    @Benchmark
+    public ObjectReader newReader()
+    {
+        return TDHttpClient.newJsonReader(httpClient.getObjectMapper(), jobSummaryType);
+    }
+
+    @Benchmark
+    public ObjectReader cachedReader()
+    {
+        return httpClient.getJsonReader(jobSummaryType);
+    }
+
+    @Benchmark
+    public TDJobSummary bindJobStatusWithNewReader()
+            throws IOException
+    {
+        return TDHttpClient.newJsonReader(httpClient.getObjectMapper(), jobSummaryType).readValue(JOB_STATUS_JSON);
+    }
+
+    @Benchmark
+    public TDJobSummary bindJobStatusWithCachedReader()
+            throws IOException
+    {
+        return httpClient.getJsonReader(jobSummaryType).readValue(JOB_STATUS_JSON);
+    }
+
+    @Benchmark
+    public List<TDDatabase> bindDatabaseListWithNewReader()
+            throws IOException
+    {
+        return TDHttpClient.newJsonReader(httpClient.getObjectMapper(), databaseListType).readValue(DATABASE_LIST_JSON);
+    }
+
+    @Benchmark
+    public List<TDDatabase> bindDatabaseListWithCachedReader()
+            throws IOException
+    {
+        return httpClient.getJsonReader(databaseListType).readValue(DATABASE_LIST_JSON);
+    }
+}
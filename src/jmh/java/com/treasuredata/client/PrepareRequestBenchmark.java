@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of building an OkHttp request from a TDApiRequest, which runs for every attempt of every API call
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrepareRequestBenchmark
+{
+    private TDClient client;
+    private TDHttpClient httpClient;
+    private TDApiRequest jobStatusRequest;
+    private TDApiRequest jobListRequest;
+    private TDApiRequest jobSubmitRequest;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        client = TDClient.newBuilder(false).setApiKey(BenchmarkFixtures.API_KEY).build();
+        httpClient = client.httpClient;
+        jobStatusRequest = TDApiRequest.Builder.GET("/v3/job/status/12345").build();
+        jobListRequest = TDApiRequest.Builder.GET("/v3/job/list")
+                .addQueryParam("from", "0")
+                .addQueryParam("to", "199")
+                .addQueryParam("status", "running")
+                .build();
+        jobSubmitRequest = TDApiRequest.Builder.POST(TDClient.buildUrl("/v3/job/issue", "presto", "sample_datasets"))
+                .addQueryParam("query", "SELECT code, COUNT(1) FROM www_access GROUP BY 1")
+                .addQueryParam("priority", "0")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        client.close();
+    }
+
+    @Benchmark
+    public Request get()
+    {
+        return httpClient.prepareRequest(jobStatusRequest, Optional.empty());
+    }
+
+    @Benchmark
+    public Request getWithQueryParams()
+    {
+        return httpClient.prepareRequest(jobListRequest, Optional.empty());
+    }
+
+    @Benchmark
+    public Request postForm()
+    {
+        return httpClient.prepareRequest(jobSubmitRequest, Optional.empty());
+    }
+}
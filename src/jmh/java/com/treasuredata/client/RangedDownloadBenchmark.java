@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.google.common.io.ByteStreams;
+import com.treasuredata.client.model.TDResultFormat;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloading a job result from a local MockWebServer that throttles each response stream, as a stand-in for
+ * the per-connection bandwidth limit of the result storage. Compares a single jobResult stream with
+ * downloadJobResult fetching chunks with parallel range requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RangedDownloadBenchmark
+{
+    private static final int RESULT_SIZE = 4 * 1024 * 1024;
+    private static final long CHUNK_SIZE = 512 * 1024;
+    // 64KB per 10ms (6.4MB/s) for each stream
+    private static final long THROTTLE_BYTES = 64 * 1024;
+    private static final long THROTTLE_MILLIS = 10;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    @Param({"1", "4", "8"})
+    public int parallelism;
+
+    private final byte[] result = new byte[RESULT_SIZE];
+    private MockWebServer server;
+    private TDClient client;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp()
+            throws IOException
+    {
+        new Random(0).nextBytes(result);
+        server = new MockWebServer();
+        server.setServerSocketFactory(new MockServerBenchmark.NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+            {
+                String range = request.getHeader("Range");
+                Matcher m = range == null ? null : RANGE.matcher(range);
+                MockResponse response;
+                if (m != null && m.matches()) {
+                    int start = Integer.parseInt(m.group(1));
+                    int end = Math.min(Integer.parseInt(m.group(2)), RESULT_SIZE - 1);
+                    response = new MockResponse()
+                            .setResponseCode(206)
+                            .setHeader("Content-Range", String.format("bytes %d-%d/%d", start, end, RESULT_SIZE))
+                            .setBody(new Buffer().write(result, start, end - start + 1));
+                }
+                else {
+                    response = new MockResponse().setBody(new Buffer().write(result));
+                }
+                return response.throttleBody(THROTTLE_BYTES, THROTTLE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        client = TDClient.newBuilder(false)
+                .setApiKey(BenchmarkFixtures.API_KEY)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .build();
+        file = File.createTempFile("td-client-benchmark", ".result");
+        file.deleteOnExit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+            throws IOException
+    {
+        client.close();
+        server.shutdown();
+        file.delete();
+    }
+
+    @TearDown(Level.Iteration)
+    public void drainRecordedRequests()
+            throws InterruptedException
+    {
+        // MockWebServer keeps every request it received
+        while (server.takeRequest(0, TimeUnit.MILLISECONDS) != null) {
+            // Discard
+        }
+    }
+
+    @Benchmark
+    public long singleStream()
+    {
+        return client.jobResult("17", TDResultFormat.MESSAGE_PACK_GZ, input -> {
+            try (OutputStream out = new FileOutputStream(file)) {
+                return ByteStreams.copy(input, out);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Benchmark
+    public long rangedDownload()
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return client.downloadJobResult("17", TDResultFormat.MESSAGE_PACK_GZ, channel, parallelism, CHUNK_SIZE);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.treasuredata.client.model.TDJobList;
+import com.treasuredata.client.model.TDTableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding recorded /v3/job/list and /v3/table/list responses the same way TDHttpClient.call does
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBindingBenchmark
+{
+    private TDClient client;
+    private TDHttpClient httpClient;
+    private JavaType jobListType;
+    private JavaType tableListType;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        client = TDClient.newBuilder(false).setApiKey(BenchmarkFixtures.API_KEY).build();
+        httpClient = client.httpClient;
+        jobListType = httpClient.getObjectMapper().getTypeFactory().constructType(TDJobList.class);
+        tableListType = httpClient.getObjectMapper().getTypeFactory().constructType(TDTableList.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        client.close();
+    }
+
+    @Benchmark
+    public TDJobList bindJobList()
+            throws IOException
+    {
+        return httpClient.getJsonReader(jobListType).readValue(new ByteArrayInputStream(BenchmarkFixtures.JOB_LIST));
+    }
+
+    @Benchmark
+    public TDTableList bindTableList()
+            throws IOException
+    {
+        return httpClient.getJsonReader(tableListType).readValue(new ByteArrayInputStream(BenchmarkFixtures.TABLE_LIST));
+    }
+}
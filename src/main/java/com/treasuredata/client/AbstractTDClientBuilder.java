@@ -26,15 +26,22 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Stream;
 
 import static com.treasuredata.client.TDClientConfig.ENV_TD_CLIENT_APIKEY;
 import static com.treasuredata.client.TDClientConfig.Type.APIKEY;
 import static com.treasuredata.client.TDClientConfig.Type.API_ENDPOINT;
 import static com.treasuredata.client.TDClientConfig.Type.API_PORT;
+import static com.treasuredata.client.TDClientConfig.Type.COALESCE_REQUESTS;
+import static com.treasuredata.client.TDClientConfig.Type.CONNECTION_KEEP_ALIVE_MILLIS;
 import static com.treasuredata.client.TDClientConfig.Type.CONNECTION_POOL_SIZE;
 import static com.treasuredata.client.TDClientConfig.Type.CONNECT_TIMEOUT_MILLIS;
+import static com.treasuredata.client.TDClientConfig.Type.MAX_IDLE_CONNECTIONS;
+import static com.treasuredata.client.TDClientConfig.Type.MAX_REQUESTS;
+import static com.treasuredata.client.TDClientConfig.Type.MAX_REQUESTS_PER_HOST;
 import static com.treasuredata.client.TDClientConfig.Type.PASSOWRD;
+import static com.treasuredata.client.TDClientConfig.Type.PROTOCOL;
 import static com.treasuredata.client.TDClientConfig.Type.PROXY_HOST;
 import static com.treasuredata.client.TDClientConfig.Type.PROXY_PASSWORD;
 import static com.treasuredata.client.TDClientConfig.Type.PROXY_PORT;
@@ -69,7 +76,17 @@ public abstract class AbstractTDClientBuilder<ClientImpl, BuilderImpl extends Ab
     protected int connectTimeoutMillis = 15000;
     protected int readTimeoutMillis = 60000;
     protected int connectionPoolSize = 64;
+    protected int connectionKeepAliveMillis = 300000;
+    protected Optional<Integer> maxIdleConnections = Optional.empty();
+    protected Optional<Integer> maxRequests = Optional.empty();
+    protected Optional<Integer> maxRequestsPerHost = Optional.empty();
+    protected TDHttpProtocol protocol = TDHttpProtocol.HTTP_2;
+    protected boolean coalesceRequests = false;
     protected Map<String, Collection<String>> headers = Collections.emptyMap();
+    protected Optional<ScheduledExecutorService> retryScheduler = Optional.empty();
+    protected Optional<TDMetadataCacheConfig> metadataCache = Optional.empty();
+    protected Optional<TDRateLimitConfig> rateLimit = Optional.empty();
+    protected Optional<TDClientMetrics> metrics = Optional.empty();
 
     private static Optional<String> getConfigProperty(Properties p, TDClientConfig.Type key)
     {
@@ -237,6 +254,21 @@ public abstract class AbstractTDClientBuilder<ClientImpl, BuilderImpl extends Ab
         this.connectTimeoutMillis = getConfigPropertyInt(p, CONNECT_TIMEOUT_MILLIS).orElse(connectTimeoutMillis);
         this.readTimeoutMillis = getConfigPropertyInt(p, READ_TIMEOUT_MILLIS).orElse(readTimeoutMillis);
         this.connectionPoolSize = getConfigPropertyInt(p, CONNECTION_POOL_SIZE).orElse(connectionPoolSize);
+        this.connectionKeepAliveMillis = getConfigPropertyInt(p, CONNECTION_KEEP_ALIVE_MILLIS).orElse(connectionKeepAliveMillis);
+        Optional<Integer> maxIdleConnections = getConfigPropertyInt(p, MAX_IDLE_CONNECTIONS);
+        if (maxIdleConnections.isPresent()) {
+            this.maxIdleConnections = maxIdleConnections;
+        }
+        Optional<Integer> maxRequests = getConfigPropertyInt(p, MAX_REQUESTS);
+        if (maxRequests.isPresent()) {
+            this.maxRequests = maxRequests;
+        }
+        Optional<Integer> maxRequestsPerHost = getConfigPropertyInt(p, MAX_REQUESTS_PER_HOST);
+        if (maxRequestsPerHost.isPresent()) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+        }
+        this.protocol = getConfigProperty(p, PROTOCOL).map(TDHttpProtocol::fromValue).orElse(protocol);
+        this.coalesceRequests = getConfigPropertyBoolean(p, COALESCE_REQUESTS).orElse(coalesceRequests);
 
         return self();
     }
@@ -331,6 +363,134 @@ public abstract class AbstractTDClientBuilder<ClientImpl, BuilderImpl extends Ab
         return self();
     }
 
+    /**
+     * Set how long idle connections are kept in the connection pool. The default is 5 minutes.
+     *
+     * @param connectionKeepAliveMillis
+     * @return
+     */
+    public BuilderImpl setConnectionKeepAliveMillis(int connectionKeepAliveMillis)
+    {
+        this.connectionKeepAliveMillis = connectionKeepAliveMillis;
+        return self();
+    }
+
+    /**
+     * Set the maximum number of idle connections kept in the connection pool. The default is the connection pool size.
+     *
+     * @param maxIdleConnections
+     * @return
+     */
+    public BuilderImpl setMaxIdleConnections(int maxIdleConnections)
+    {
+        this.maxIdleConnections = Optional.of(maxIdleConnections);
+        return self();
+    }
+
+    /**
+     * Set the maximum number of asynchronous requests running at the same time. The default is the connection pool size.
+     *
+     * @param maxRequests
+     * @return
+     */
+    public BuilderImpl setMaxRequests(int maxRequests)
+    {
+        this.maxRequests = Optional.of(maxRequests);
+        return self();
+    }
+
+    /**
+     * Set the maximum number of asynchronous requests running at the same time for the endpoint. The default is the connection pool size.
+     * With HTTP/2, these requests share a connection, so this can be larger than the connection pool size.
+     *
+     * @param maxRequestsPerHost
+     * @return
+     */
+    public BuilderImpl setMaxRequestsPerHost(int maxRequestsPerHost)
+    {
+        this.maxRequestsPerHost = Optional.of(maxRequestsPerHost);
+        return self();
+    }
+
+    /**
+     * Set the HTTP protocol for API requests. The default is {@link TDHttpProtocol#HTTP_2}, which falls back to HTTP/1.1
+     * if the server does not support HTTP/2.
+     *
+     * @param protocol
+     * @return
+     */
+    public BuilderImpl setProtocol(TDHttpProtocol protocol)
+    {
+        this.protocol = protocol;
+        return self();
+    }
+
+    /**
+     * Share a single API call among concurrent identical GET requests (the same path, query parameters, headers and API key).
+     * The shared response objects are returned to all of the callers, so they should not be modified.
+     *
+     * @param coalesceRequests
+     * @return
+     */
+    public BuilderImpl setCoalesceRequests(boolean coalesceRequests)
+    {
+        this.coalesceRequests = coalesceRequests;
+        return self();
+    }
+
+    /**
+     * Use the given executor for scheduling asynchronous request retries instead of a client-owned timer thread.
+     * This allows sharing a single timer among many clients. The executor will not be shut down when the client is closed.
+     *
+     * @param retryScheduler
+     * @return
+     */
+    public BuilderImpl setRetryScheduler(ScheduledExecutorService retryScheduler)
+    {
+        this.retryScheduler = Optional.of(retryScheduler);
+        return self();
+    }
+
+    /**
+     * Enable the metadata cache of databases and tables. Cached entries are invalidated when the client
+     * modifies the tables, but changes made by other clients are visible only after the TTL.
+     *
+     * @param metadataCache
+     * @return
+     */
+    public BuilderImpl setMetadataCache(TDMetadataCacheConfig metadataCache)
+    {
+        this.metadataCache = Optional.of(metadataCache);
+        return self();
+    }
+
+    /**
+     * Throttle requests with an adaptive rate limiter, which slows down all requests to the endpoint when
+     * the API responds with 429 Too Many Requests or a Retry-After header, and speeds up again as requests succeed.
+     * The limiter is shared by the clients created with withApiKey or withHeaders.
+     *
+     * @param rateLimit
+     * @return
+     */
+    public BuilderImpl setRateLimit(TDRateLimitConfig rateLimit)
+    {
+        this.rateLimit = Optional.of(rateLimit);
+        return self();
+    }
+
+    /**
+     * Report the start and end of API requests and their attempts to the given listener.
+     * Use {@link TDHistogramMetrics} for collecting per-API latency histograms.
+     *
+     * @param metrics
+     * @return
+     */
+    public BuilderImpl setMetrics(TDClientMetrics metrics)
+    {
+        this.metrics = Optional.of(metrics);
+        return self();
+    }
+
     /**
      * @deprecated Use {@link #setHeaders(Map)} instead.
      * @param headers
@@ -371,7 +531,17 @@ public abstract class AbstractTDClientBuilder<ClientImpl, BuilderImpl extends Ab
                 connectTimeoutMillis,
                 readTimeoutMillis,
                 connectionPoolSize,
-                headers);
+                connectionKeepAliveMillis,
+                maxIdleConnections.orElse(connectionPoolSize),
+                maxRequests.orElse(connectionPoolSize),
+                maxRequestsPerHost.orElse(connectionPoolSize),
+                protocol,
+                coalesceRequests,
+                headers,
+                retryScheduler,
+                metadataCache,
+                rateLimit,
+                metrics);
     }
 
     protected abstract BuilderImpl self();
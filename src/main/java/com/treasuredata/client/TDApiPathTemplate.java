@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Normalizes API request paths into templates (e.g., /v3/table/show/{db}/{table}), so that metrics
+ * of requests to the same API are aggregated regardless of the database or table names.
+ */
+final class TDApiPathTemplate
+{
+    private static final String PARAM = "{param}";
+
+    private static final List<String> TEMPLATES = Arrays.asList(
+            "/v3/bulk_import/commit/{session}",
+            "/v3/bulk_import/create/{session}/{db}/{table}",
+            "/v3/bulk_import/delete/{session}",
+            "/v3/bulk_import/delete_part/{session}/{part}",
+            "/v3/bulk_import/error_records/{session}",
+            "/v3/bulk_import/freeze/{session}",
+            "/v3/bulk_import/list",
+            "/v3/bulk_import/list_parts/{session}",
+            "/v3/bulk_import/perform/{session}",
+            "/v3/bulk_import/show/{session}",
+            "/v3/bulk_import/unfreeze/{session}",
+            "/v3/bulk_import/upload_part/{session}/{part}",
+            "/v3/bulk_loads/{name}/jobs",
+            "/v3/connections/lookup",
+            "/v3/database/create/{db}",
+            "/v3/database/delete/{db}",
+            "/v3/database/list",
+            "/v3/database/show/{db}",
+            "/v3/export/run/{db}/{table}",
+            "/v3/job/issue/{type}/{db}",
+            "/v3/job/kill/{job_id}",
+            "/v3/job/list",
+            "/v3/job/result/{job_id}",
+            "/v3/job/result_export/{job_id}",
+            "/v3/job/show/{job_id}",
+            "/v3/job/status/{job_id}",
+            "/v3/job/status_by_domain_key/{domain_key}",
+            "/v3/schedule/create/{name}",
+            "/v3/schedule/delete/{name}",
+            "/v3/schedule/history/{name}",
+            "/v3/schedule/list",
+            "/v3/schedule/run/{name}/{time}",
+            "/v3/schedule/update/{name}",
+            "/v3/system/server_status",
+            "/v3/table/append-schema/{db}/{table}",
+            "/v3/table/create/{db}/{table}/{type}",
+            "/v3/table/delete/{db}/{table}",
+            "/v3/table/distribution/{db}/{table}",
+            "/v3/table/import/{db}/{table}/{format}",
+            "/v3/table/import_with_id/{db}/{table}/{id}/{format}",
+            "/v3/table/list/{db}",
+            "/v3/table/rename/{db}/{table}/{new_table}",
+            "/v3/table/show/{db}/{table}",
+            "/v3/table/swap/{db}/{table1}/{table2}",
+            "/v3/table/update/{db}/{table}",
+            "/v3/table/update-schema/{db}/{table}",
+            "/v3/user/apikey/validate",
+            "/v3/user/authenticate",
+            "/v3/user/list",
+            "/v3/user/show",
+            "/v4/federated_query_configs",
+            "/v4/queries/{id}/jobs");
+
+    // Templates grouped by their static prefix segments before the first parameter (e.g., "/v3/table/show")
+    private static final Map<String, List<Template>> TEMPLATES_BY_PREFIX = new HashMap<>();
+
+    static {
+        for (String template : TEMPLATES) {
+            String[] segments = split(template);
+            StringBuilder prefix = new StringBuilder();
+            for (String segment : segments) {
+                if (segment.startsWith("{")) {
+                    break;
+                }
+                prefix.append('/').append(segment);
+            }
+            TEMPLATES_BY_PREFIX.computeIfAbsent(prefix.toString(), p -> new ArrayList<>()).add(new Template(template, segments));
+        }
+    }
+
+    private static class Template
+    {
+        private final String path;
+        private final String[] segments;
+
+        Template(String path, String[] segments)
+        {
+            this.path = path;
+            this.segments = segments;
+        }
+
+        boolean matches(String[] requestSegments)
+        {
+            if (segments.length != requestSegments.length) {
+                return false;
+            }
+            for (int i = 0; i < segments.length; i++) {
+                if (!segments[i].startsWith("{") && !segments[i].equals(requestSegments[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private TDApiPathTemplate()
+    {
+    }
+
+    /**
+     * Get the template of the given request path. Unknown paths are normalized by keeping
+     * the first three segments (e.g., /v3/table/show) and replacing the others with {param}.
+     */
+    static String normalize(String path)
+    {
+        String[] segments = split(stripUrl(path));
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < segments.length && i < 3; i++) {
+            prefix.append('/').append(segments[i]);
+            List<Template> templates = TEMPLATES_BY_PREFIX.get(prefix.toString());
+            if (templates != null) {
+                for (Template template : templates) {
+                    if (template.matches(segments)) {
+                        return template.path;
+                    }
+                }
+            }
+        }
+
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            s.append('/').append(i < 3 ? segments[i] : PARAM);
+        }
+        return s.length() == 0 ? "/" : s.toString();
+    }
+
+    private static String stripUrl(String path)
+    {
+        // Redirected requests have an absolute URL
+        int schemeEnd = path.indexOf("://");
+        if (schemeEnd >= 0) {
+            int pathStart = path.indexOf('/', schemeEnd + 3);
+            path = pathStart < 0 ? "/" : path.substring(pathStart);
+        }
+        int queryStart = path.indexOf('?');
+        return queryStart < 0 ? path : path.substring(0, queryStart);
+    }
+
+    private static String[] split(String path)
+    {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+}
@@ -26,6 +26,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -53,6 +55,10 @@ public class TDApiRequest
     private final Optional<Boolean> followRedirects;
     private final int contentOffset;
     private final int contentLength;
+    private final Optional<ByteBuffer> contentBuffer;
+    private final Optional<FileChannel> fileChannel;
+    private final long fileChannelPosition;
+    private final long fileChannelLength;
 
     TDApiRequest(
             TDHttpMethod method,
@@ -64,6 +70,10 @@ public class TDApiRequest
             Optional<byte[]> content,
             int contentOffset,
             int contentLength,
+            Optional<ByteBuffer> contentBuffer,
+            Optional<FileChannel> fileChannel,
+            long fileChannelPosition,
+            long fileChannelLength,
             Optional<Boolean> followRedirects
     )
     {
@@ -76,12 +86,16 @@ public class TDApiRequest
         this.content = requireNonNull(content, "content is null");
         this.contentOffset = contentOffset;
         this.contentLength = contentLength;
+        this.contentBuffer = requireNonNull(contentBuffer, "contentBuffer is null");
+        this.fileChannel = requireNonNull(fileChannel, "fileChannel is null");
+        this.fileChannelPosition = fileChannelPosition;
+        this.fileChannelLength = fileChannelLength;
         this.followRedirects = requireNonNull(followRedirects, "followRedirects is null");
     }
 
     public TDApiRequest withUri(String uri)
     {
-        return new TDApiRequest(method, uri, Collections.unmodifiableMap(new HashMap<>(queryParams)), Collections.unmodifiableMap(new HashMap<>(headerParams)), postJson, putFile, content, contentOffset, contentLength, followRedirects);
+        return new TDApiRequest(method, uri, Collections.unmodifiableMap(new HashMap<>(queryParams)), Collections.unmodifiableMap(new HashMap<>(headerParams)), postJson, putFile, content, contentOffset, contentLength, contentBuffer, fileChannel, fileChannelPosition, fileChannelLength, followRedirects);
     }
 
     public String getPath()
@@ -143,6 +157,30 @@ public class TDApiRequest
         return contentLength;
     }
 
+    /**
+     * The content to upload from the position to the limit of the buffer. The buffer is read-only and shared by retries,
+     * so read a duplicate of it.
+     */
+    public Optional<ByteBuffer> getContentBuffer()
+    {
+        return contentBuffer;
+    }
+
+    public Optional<FileChannel> getFileChannel()
+    {
+        return fileChannel;
+    }
+
+    public long getFileChannelPosition()
+    {
+        return fileChannelPosition;
+    }
+
+    public long getFileChannelLength()
+    {
+        return fileChannelLength;
+    }
+
     public Optional<Boolean> getFollowRedirects()
     {
         return followRedirects;
@@ -161,6 +199,10 @@ public class TDApiRequest
         private Optional<byte[]> content = Optional.empty();
         private int contentOffset;
         private int contentLength;
+        private Optional<ByteBuffer> contentBuffer = Optional.empty();
+        private Optional<FileChannel> fileChannel = Optional.empty();
+        private long fileChannelPosition;
+        private long fileChannelLength;
         private Optional<Boolean> followRedirects = Optional.empty();
 
         Builder(TDHttpMethod method, String path)
@@ -267,6 +309,31 @@ public class TDApiRequest
             return this;
         }
 
+        /**
+         * Set the content from the position to the limit of the buffer without copying it. Direct and memory-mapped buffers
+         * are also supported. The position of the given buffer is not changed.
+         */
+        public Builder setContent(ByteBuffer content)
+        {
+            this.contentBuffer = Optional.of(content.asReadOnlyBuffer());
+            return this;
+        }
+
+        /**
+         * Set the content to the region of the file channel. The region is read with positional reads,
+         * so the position of the channel is not changed and the channel can be shared by concurrent requests.
+         */
+        public Builder setFileChannel(FileChannel channel, long position, long length)
+        {
+            if (position < 0 || length < 0) {
+                throw new TDClientException(TDClientException.ErrorType.INVALID_INPUT, String.format("Invalid file channel region: position=%d, length=%d", position, length));
+            }
+            this.fileChannel = Optional.of(channel);
+            this.fileChannelPosition = position;
+            this.fileChannelLength = length;
+            return this;
+        }
+
         public Builder setFollowRedirects(boolean followRedirects)
         {
             this.followRedirects = Optional.of(followRedirects);
@@ -285,6 +352,10 @@ public class TDApiRequest
                     content,
                     contentOffset,
                     contentLength,
+                    contentBuffer,
+                    fileChannel,
+                    fileChannelPosition,
+                    fileChannelLength,
                     followRedirects
             );
         }
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event of a TD API request, from the submission until the success or the final failure including retries
+ */
+@Name("com.treasuredata.client.ApiRequest")
+@Label("TD API Request")
+@Category({"Treasure Data", "TD Client"})
+@Description("A TD API request including its retries")
+class TDApiRequestEvent
+        extends jdk.jfr.Event
+{
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Path Template")
+    String pathTemplate;
+
+    @Label("Status Code")
+    @Description("The http status code of the last response, or -1 if no response was received")
+    int statusCode;
+
+    @Label("Attempts")
+    int attempts;
+
+    @Label("Error")
+    String error;
+}
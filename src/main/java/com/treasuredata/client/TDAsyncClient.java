@@ -0,0 +1,706 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.treasuredata.client.model.TDBulkImportParts;
+import com.treasuredata.client.model.TDBulkImportSession;
+import com.treasuredata.client.model.TDBulkImportSession.ImportStatus;
+import com.treasuredata.client.model.TDDatabase;
+import com.treasuredata.client.model.TDJob;
+import com.treasuredata.client.model.TDJobList;
+import com.treasuredata.client.model.TDJobRequest;
+import com.treasuredata.client.model.TDJobSubmitResult;
+import com.treasuredata.client.model.TDJobSummary;
+import com.treasuredata.client.model.TDResultFormat;
+import com.treasuredata.client.model.TDTable;
+import com.treasuredata.client.model.TDTableDistribution;
+import com.treasuredata.client.model.TDTableList;
+import com.treasuredata.client.model.TDTableType;
+import com.treasuredata.client.model.TDUser;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.treasuredata.client.TDClient.buildUrl;
+import static com.treasuredata.client.TDClientException.ErrorType.EXECUTION_FAILURE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An asynchronous TD API client. Use {@link TDClient#async()} to obtain one from an existing {@link TDClient}.
+ */
+public class TDAsyncClient
+        implements TDAsyncClientApi<TDAsyncClient>
+{
+    public static TDAsyncClient newClient()
+    {
+        return new TDAsyncClientBuilder(true).build();
+    }
+
+    public static TDAsyncClientBuilder newBuilder()
+    {
+        return new TDAsyncClientBuilder(true);
+    }
+
+    public static TDAsyncClientBuilder newBuilder(boolean loadTDConf)
+    {
+        return new TDAsyncClientBuilder(loadTDConf);
+    }
+
+    protected final TDClientConfig config;
+    protected final TDHttpClient httpClient;
+    protected final Optional<String> apiKeyCache;
+
+    public TDAsyncClient(TDClientConfig config)
+    {
+        this(config, new TDHttpClient(config), config.apiKey);
+    }
+
+    protected TDAsyncClient(TDClientConfig config, TDHttpClient httpClient, Optional<String> apiKeyCache)
+    {
+        this.config = config;
+        this.httpClient = httpClient;
+        this.apiKeyCache = apiKeyCache;
+    }
+
+    @Override
+    public TDAsyncClient withApiKey(String newApiKey)
+    {
+        return new TDAsyncClient(config, httpClient, Optional.of(newApiKey));
+    }
+
+    @Override
+    public TDAsyncClient withHeaders(Map<String, ? extends Collection<String>> headers)
+    {
+        return new TDAsyncClient(config, httpClient.withHeaders(headers), apiKeyCache);
+    }
+
+    /**
+     * Return a blocking view of this client sharing the same http client.
+     *
+     * @return
+     */
+    public TDClient sync()
+    {
+        return new TDClient(config, httpClient, apiKeyCache);
+    }
+
+    @Override
+    public void close()
+    {
+        httpClient.close();
+    }
+
+    protected <ResultType> CompletableFuture<ResultType> doGet(String path, Class<ResultType> resultTypeClass)
+    {
+        requireNonNull(path, "path is null");
+        requireNonNull(resultTypeClass, "resultTypeClass is null");
+
+        TDApiRequest request = TDApiRequest.Builder.GET(path).build();
+        return httpClient.callAsync(request, apiKeyCache, resultTypeClass);
+    }
+
+    protected <ResultType> CompletableFuture<ResultType> doGet(String path, TypeReference<ResultType> resultTypeReference)
+    {
+        requireNonNull(path, "path is null");
+        requireNonNull(resultTypeReference, "resultTypeReference is null");
+
+        TDApiRequest request = TDApiRequest.Builder.GET(path).build();
+        return httpClient.callAsync(request, apiKeyCache, resultTypeReference);
+    }
+
+    protected <ResultType> CompletableFuture<ResultType> doPost(String path, Map<String, String> queryParam, Optional<String> jsonBody, Class<ResultType> resultTypeClass)
+    {
+        requireNonNull(path, "path is null");
+        requireNonNull(queryParam, "param is null");
+        requireNonNull(jsonBody, "body is null");
+        requireNonNull(resultTypeClass, "resultTypeClass is null");
+
+        TDApiRequest.Builder request = TDApiRequest.Builder.POST(path);
+        for (Map.Entry<String, String> e : queryParam.entrySet()) {
+            request.addQueryParam(e.getKey(), e.getValue());
+        }
+        if (jsonBody.isPresent()) {
+            request.setPostJson(jsonBody.get());
+        }
+        return httpClient.callAsync(request.build(), apiKeyCache, resultTypeClass);
+    }
+
+    protected CompletableFuture<Void> doPost(String path)
+    {
+        requireNonNull(path, "path is null");
+
+        TDApiRequest request = TDApiRequest.Builder.POST(path).build();
+        return discardResult(httpClient.callAsync(request, apiKeyCache));
+    }
+
+    /**
+     * Map the result of the request into null. Cancelling the returned future cancels the request.
+     */
+    private static CompletableFuture<Void> discardResult(CompletableFuture<?> request)
+    {
+        CompletableFuture<Void> future = request.thenApply(result -> null);
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                request.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Map the future failed with the given http status code into a value.
+     */
+    private static <T> CompletableFuture<T> recoverStatus(CompletableFuture<T> future, int statusCode, T value)
+    {
+        return future.handle((result, error) -> {
+            if (error == null) {
+                return result;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TDClientHttpException && ((TDClientHttpException) cause).getStatusCode() == statusCode) {
+                return value;
+            }
+            throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(cause);
+        });
+    }
+
+    @Override
+    public CompletableFuture<TDUser> getUser()
+    {
+        return doGet("/v3/user/show", TDUser.class);
+    }
+
+    @Override
+    public CompletableFuture<String> serverStatus()
+    {
+        // No API key is requried for server_status
+        return httpClient.callAsync(TDApiRequest.Builder.GET("/v3/system/server_status").build(), Optional.empty());
+    }
+
+    @Override
+    public CompletableFuture<List<String>> listDatabaseNames()
+    {
+        return listDatabases().thenApply(databases -> {
+            List<String> names = new ArrayList<>(databases.size());
+            for (TDDatabase db : databases) {
+                names.add(db.getName());
+            }
+            return names;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<TDDatabase>> listDatabases()
+    {
+        return doGet("/v3/database/list", new TypeReference<List<TDDatabase>>() {});
+    }
+
+    @Override
+    public CompletableFuture<TDDatabase> showDatabase(String databaseName)
+    {
+        return doGet(buildUrl("/v3/database/show", databaseName), TDDatabase.class);
+    }
+
+    @Override
+    public CompletableFuture<Void> createDatabase(String databaseName)
+    {
+        return doPost(buildUrl("/v3/database/create", TDClient.validateDatabaseName(databaseName)));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteDatabase(String databaseName)
+    {
+        return doPost(buildUrl("/v3/database/delete", TDClient.validateDatabaseName(databaseName)));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsDatabase(String databaseName)
+    {
+        return recoverStatus(showDatabase(databaseName).thenApply(database -> true), HttpStatus.NOT_FOUND_404, false);
+    }
+
+    @Override
+    public CompletableFuture<TDTable> showTable(String databaseName, String tableName)
+    {
+        return doGet(buildUrl("/v3/table/show", databaseName, tableName), TDTable.class);
+    }
+
+    @Override
+    public CompletableFuture<List<TDTable>> listTables(String databaseName)
+    {
+        return doGet(buildUrl("/v3/table/list", databaseName), TDTableList.class).thenApply(TDTableList::getTables);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsTable(String databaseName, String tableName)
+    {
+        return recoverStatus(showTable(databaseName, tableName).thenApply(table -> true), HttpStatus.NOT_FOUND_404, false);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Boolean>> existsTables(String databaseName, Collection<String> tableNames)
+    {
+        CompletableFuture<List<TDTable>> tables = recoverStatus(listTables(databaseName), HttpStatus.NOT_FOUND_404, Collections.emptyList());
+        return tables.thenApply(list -> TDClient.toTableExistence(list, tableNames));
+    }
+
+    @Override
+    public CompletableFuture<Void> createTable(String databaseName, String tableName)
+    {
+        return doPost(buildUrl("/v3/table/create", databaseName, TDClient.validateTableName(tableName), TDTableType.LOG.getTypeName()));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteTable(String databaseName, String tableName)
+    {
+        return doPost(buildUrl("/v3/table/delete", databaseName, tableName));
+    }
+
+    @Override
+    public CompletableFuture<Optional<TDTableDistribution>> tableDistribution(String databaseName, String tableName)
+    {
+        CompletableFuture<Optional<TDTableDistribution>> distribution =
+                doGet(buildUrl(String.format("/v3/table/distribution/%s/%s", databaseName, tableName)), TDTableDistribution.class)
+                        .thenApply(Optional::of);
+        return recoverStatus(distribution, HttpStatus.NOT_FOUND_404, Optional.empty());
+    }
+
+    @Override
+    public CompletableFuture<String> submit(TDJobRequest jobRequest)
+    {
+        return doPost(
+                TDClient.buildJobSubmitUrl(jobRequest),
+                TDClient.buildJobSubmitParams(jobRequest),
+                TDClient.buildJobSubmitBody(jobRequest),
+                TDJobSubmitResult.class)
+                .thenApply(TDJobSubmitResult::getJobId);
+    }
+
+    @Override
+    public CompletableFuture<TDJobList> listJobs()
+    {
+        return doGet("/v3/job/list", TDJobList.class);
+    }
+
+    @Override
+    public CompletableFuture<TDJobList> listJobs(long from, long to)
+    {
+        return doGet(String.format("/v3/job/list?from=%d&to=%d", from, to), TDJobList.class);
+    }
+
+    @Override
+    public CompletableFuture<Void> killJob(String jobId)
+    {
+        return doPost(buildUrl("/v3/job/kill", jobId));
+    }
+
+    @Override
+    public CompletableFuture<TDJobSummary> jobStatus(String jobId)
+    {
+        return pollJob(() -> doGet(buildUrl("/v3/job/status", jobId), TDJobSummary.class), TDJobSummary::getJobId, TDJobSummary::getStatus);
+    }
+
+    @Override
+    public CompletableFuture<TDJobSummary> jobStatusByDomainKey(String domainKey)
+    {
+        return pollJob(() -> doGet(buildUrl("/v3/job/status_by_domain_key", domainKey), TDJobSummary.class), TDJobSummary::getJobId, TDJobSummary::getStatus);
+    }
+
+    @Override
+    public CompletableFuture<TDJob> jobInfo(String jobId)
+    {
+        return pollJob(() -> doGet(buildUrl("/v3/job/show", jobId), TDJob.class), TDJob::getJobId, TDJob::getStatus);
+    }
+
+    @Override
+    public CompletableFuture<TDJobSummary> waitForJob(String jobId, Duration timeout)
+    {
+        return waitForJob(jobId, timeout, new TDJobPollingConfig.TDJobPollingConfigBuilder().createTDJobPollingConfig());
+    }
+
+    @Override
+    public CompletableFuture<TDJobSummary> waitForJob(String jobId, Duration timeout, TDJobPollingConfig polling)
+    {
+        requireNonNull(jobId, "jobId is null");
+        requireNonNull(timeout, "timeout is null");
+        requireNonNull(polling, "polling is null");
+
+        CompletableFuture<TDJobSummary> future = new CompletableFuture<>();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        waitForJob(jobId, timeout, polling, deadline, 0, future);
+        return future;
+    }
+
+    private void waitForJob(String jobId, Duration timeout, TDJobPollingConfig polling, long deadline, int pollCount, CompletableFuture<TDJobSummary> future)
+    {
+        if (future.isDone()) {
+            // Cancelled by the caller
+            return;
+        }
+        jobStatus(jobId).whenComplete((summary, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            if (summary.getStatus().isFinished()) {
+                future.complete(summary);
+                return;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                future.completeExceptionally(new TDClientTimeoutException(String.format("job %s has not finished within %s: %s", jobId, timeout, summary.getStatus())));
+                return;
+            }
+            // Poll once more at the deadline
+            long waitMillis = Math.min(polling.nextIntervalMillis(pollCount + 1, summary.getDuration()), remainingMillis);
+            try {
+                httpClient.schedule(() -> waitForJob(jobId, timeout, polling, deadline, pollCount + 1, future), waitMillis);
+            }
+            catch (RuntimeException e) {
+                // The scheduler has been shut down
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Run a job status lookup while recording a {@link TDJobPollEvent} if it is enabled.
+     */
+    private static <T> CompletableFuture<T> pollJob(Supplier<CompletableFuture<T>> lookup, Function<T, String> jobId, Function<T, TDJob.Status> status)
+    {
+        TDFlightRecorder flightRecorder = TDFlightRecorder.getInstance();
+        Object event = flightRecorder.beginJobPoll();
+        if (event == null) {
+            return lookup.get();
+        }
+        return lookup.get().whenComplete((result, error) -> {
+            if (error == null) {
+                flightRecorder.endJobPoll(event, jobId.apply(result), status.apply(result), null);
+            }
+            else {
+                flightRecorder.endJobPoll(event, null, null, error);
+            }
+        });
+    }
+
+    @Override
+    public <Result> CompletableFuture<Result> jobResult(String jobId, TDResultFormat format, Function<InputStream, Result> resultStreamHandler)
+    {
+        TDApiRequest request = TDApiRequest.Builder
+                .GET(buildUrl("/v3/job/result", jobId))
+                .addQueryParam("format", format.getName())
+                .addQueryParam("header", Boolean.toString(false))
+                .build();
+        return httpClient.callAsync(request, apiKeyCache, resultStreamHandler);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> listBulkImportParts(String sessionName)
+    {
+        return doGet(buildUrl("/v3/bulk_import/list_parts", sessionName), TDBulkImportParts.class).thenApply(TDBulkImportParts::getParts);
+    }
+
+    @Override
+    public CompletableFuture<TDBulkImportSession> getBulkImportSession(String sessionName)
+    {
+        return doGet(buildUrl("/v3/bulk_import/show", sessionName), TDBulkImportSession.class);
+    }
+
+    @Override
+    public CompletableFuture<Void> createBulkImportSession(String sessionName, String databaseName, String tableName)
+    {
+        return doPost(buildUrl("/v3/bulk_import/create", sessionName, databaseName, tableName));
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadBulkImportPart(String sessionName, String uniquePartName, File path)
+    {
+        requireNonNull(path, "path is null");
+
+        TDApiRequest request = TDApiRequest.Builder.PUT(buildUrl("/v3/bulk_import/upload_part", sessionName, uniquePartName)).setFile(path).build();
+        return discardResult(httpClient.callAsync(request, apiKeyCache));
+    }
+
+    @Override
+    public CompletableFuture<Void> uploadBulkImportPart(String sessionName, String uniquePartName, ByteBuffer content)
+    {
+        requireNonNull(content, "content is null");
+
+        TDApiRequest request = TDApiRequest.Builder.PUT(buildUrl("/v3/bulk_import/upload_part", sessionName, uniquePartName)).setContent(content).build();
+        return discardResult(httpClient.callAsync(request, apiKeyCache));
+    }
+
+    @Override
+    public CompletableFuture<Void> freezeBulkImportSession(String sessionName)
+    {
+        return doPost(buildUrl("/v3/bulk_import/freeze", sessionName));
+    }
+
+    @Override
+    public CompletableFuture<Void> performBulkImportSession(String sessionName)
+    {
+        return discardResult(doPost(buildUrl("/v3/bulk_import/perform", sessionName), Collections.singletonMap("priority", Integer.toString(TDJob.Priority.NORMAL.toInt())), Optional.empty(), String.class));
+    }
+
+    @Override
+    public CompletableFuture<Void> commitBulkImportSession(String sessionName)
+    {
+        return doPost(buildUrl("/v3/bulk_import/commit", sessionName));
+    }
+
+    @Override
+    public CompletableFuture<TDBulkImportSession> performAndCommitBulkImportSession(String sessionName, Duration timeout)
+    {
+        return performAndCommitBulkImportSession(sessionName, timeout, new TDJobPollingConfig.TDJobPollingConfigBuilder().createTDJobPollingConfig(), session -> { });
+    }
+
+    @Override
+    public CompletableFuture<TDBulkImportSession> performAndCommitBulkImportSession(String sessionName, Duration timeout, TDJobPollingConfig polling, Consumer<TDBulkImportSession> statusListener)
+    {
+        requireNonNull(sessionName, "sessionName is null");
+        requireNonNull(timeout, "timeout is null");
+        requireNonNull(polling, "polling is null");
+        requireNonNull(statusListener, "statusListener is null");
+
+        CompletableFuture<TDBulkImportSession> future = new CompletableFuture<>();
+        performAndCommit(sessionName, timeout, polling, statusListener, new RunningSteps(future), future);
+        return future;
+    }
+
+    private void performAndCommit(String sessionName, Duration timeout, TDJobPollingConfig polling, Consumer<TDBulkImportSession> statusListener, RunningSteps steps, CompletableFuture<TDBulkImportSession> future)
+    {
+        BulkImportPolling wait = new BulkImportPolling(sessionName, timeout, polling, statusListener, steps);
+        steps.track(getBulkImportSession(sessionName))
+                .thenCompose(session -> {
+                    statusListener.accept(session);
+                    switch (session.getStatus()) {
+                        case UPLOADING:
+                            CompletableFuture<Void> frozen = session.isUploadFrozen() ? CompletableFuture.completedFuture(null) : steps.track(freezeBulkImportSession(sessionName));
+                            return frozen
+                                    .thenCompose(v -> steps.track(performBulkImportSession(sessionName)))
+                                    .thenCompose(v -> wait.whileIn(EnumSet.of(ImportStatus.UPLOADING, ImportStatus.PERFORMING)));
+                        case PERFORMING:
+                            return wait.whileIn(EnumSet.of(ImportStatus.PERFORMING));
+                        default:
+                            return CompletableFuture.completedFuture(session);
+                    }
+                })
+                .thenCompose(session -> {
+                    switch (session.getStatus()) {
+                        case READY:
+                            TDBulkImportUploader.checkPerformResult(session);
+                            return steps.track(commitBulkImportSession(sessionName))
+                                    .thenCompose(v -> wait.whileIn(EnumSet.of(ImportStatus.READY, ImportStatus.COMMITTING)));
+                        case COMMITTING:
+                            return wait.whileIn(EnumSet.of(ImportStatus.COMMITTING));
+                        default:
+                            return CompletableFuture.completedFuture(session);
+                    }
+                })
+                .whenComplete((session, error) -> {
+                    if (error != null) {
+                        future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    }
+                    else if (session.getStatus() != ImportStatus.COMMITTED) {
+                        future.completeExceptionally(new TDClientException(EXECUTION_FAILURE, String.format("Bulk import session %s has not been committed: %s", sessionName, session.getStatus())));
+                    }
+                    else {
+                        future.complete(session);
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<TDBulkImportSession> bulkImport(String sessionName, String databaseName, String tableName, Map<String, File> parts, Duration timeout)
+    {
+        return bulkImport(sessionName, databaseName, tableName, parts, timeout, new TDJobPollingConfig.TDJobPollingConfigBuilder().createTDJobPollingConfig(), session -> { });
+    }
+
+    @Override
+    public CompletableFuture<TDBulkImportSession> bulkImport(String sessionName, String databaseName, String tableName, Map<String, File> parts, Duration timeout, TDJobPollingConfig polling, Consumer<TDBulkImportSession> statusListener)
+    {
+        requireNonNull(parts, "parts is null");
+        requireNonNull(timeout, "timeout is null");
+        requireNonNull(polling, "polling is null");
+        requireNonNull(statusListener, "statusListener is null");
+
+        CompletableFuture<TDBulkImportSession> future = new CompletableFuture<>();
+        RunningSteps steps = new RunningSteps(future);
+        // Reuse the session created by a previous attempt
+        recoverStatus(steps.track(createBulkImportSession(sessionName, databaseName, tableName)), HttpStatus.CONFLICT_409, null)
+                .thenCompose(v -> steps.track(getBulkImportSession(sessionName)))
+                .thenCompose(session -> {
+                    if (session.getStatus() != ImportStatus.UPLOADING || session.isUploadFrozen()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return steps.track(listBulkImportParts(sessionName)).thenCompose(uploaded -> {
+                        Set<String> uploadedParts = new HashSet<>(uploaded);
+                        List<CompletableFuture<Void>> uploads = new ArrayList<>();
+                        for (Map.Entry<String, File> part : parts.entrySet()) {
+                            if (!uploadedParts.contains(part.getKey())) {
+                                uploads.add(steps.track(uploadBulkImportPart(sessionName, part.getKey(), part.getValue())));
+                            }
+                        }
+                        return CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[0]));
+                    });
+                })
+                .whenComplete((v, error) -> {
+                    if (error != null) {
+                        future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    }
+                    else {
+                        performAndCommit(sessionName, timeout, polling, statusListener, steps, future);
+                    }
+                });
+        return future;
+    }
+
+    /**
+     * Tracks the running requests of a multi-step operation, and cancels them when the future of the operation is cancelled.
+     */
+    private static class RunningSteps
+    {
+        private final CompletableFuture<?> owner;
+        private final Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+
+        RunningSteps(CompletableFuture<?> owner)
+        {
+            this.owner = owner;
+            owner.whenComplete((result, error) -> {
+                if (owner.isCancelled()) {
+                    running.forEach(step -> step.cancel(false));
+                }
+            });
+        }
+
+        /**
+         * Returns true if the operation has been completed or cancelled
+         */
+        boolean isDone()
+        {
+            return owner.isDone();
+        }
+
+        <T> CompletableFuture<T> track(CompletableFuture<T> step)
+        {
+            running.add(step);
+            step.whenComplete((result, error) -> running.remove(step));
+            // Check after adding so that a step started concurrently with the cancellation is not missed
+            if (owner.isCancelled()) {
+                step.cancel(false);
+            }
+            return step;
+        }
+    }
+
+    /**
+     * Polls the status of a bulk import session on the timer of the http client, until the overall deadline.
+     * The polling interval of each step is capped by the time since the start of the step.
+     */
+    private class BulkImportPolling
+    {
+        private final String sessionName;
+        private final Duration timeout;
+        private final long deadline;
+        private final TDJobPollingConfig polling;
+        private final Consumer<TDBulkImportSession> statusListener;
+        // Polling stops when the operation is completed or cancelled
+        private final RunningSteps steps;
+
+        BulkImportPolling(String sessionName, Duration timeout, TDJobPollingConfig polling, Consumer<TDBulkImportSession> statusListener, RunningSteps steps)
+        {
+            this.sessionName = sessionName;
+            this.timeout = timeout;
+            this.deadline = System.nanoTime() + timeout.toNanos();
+            this.polling = polling;
+            this.statusListener = statusListener;
+            this.steps = steps;
+        }
+
+        /**
+         * Poll the session while its status is one of the statuses
+         */
+        CompletableFuture<TDBulkImportSession> whileIn(Set<ImportStatus> statuses)
+        {
+            CompletableFuture<TDBulkImportSession> result = new CompletableFuture<>();
+            poll(statuses, System.nanoTime(), 0, result);
+            return result;
+        }
+
+        private void poll(Set<ImportStatus> statuses, long stepStartNanos, int pollCount, CompletableFuture<TDBulkImportSession> result)
+        {
+            if (steps.isDone()) {
+                // Cancelled by the caller
+                result.cancel(false);
+                return;
+            }
+            steps.track(getBulkImportSession(sessionName)).whenComplete((session, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    return;
+                }
+                try {
+                    statusListener.accept(session);
+                }
+                catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                if (!statuses.contains(session.getStatus())) {
+                    result.complete(session);
+                    return;
+                }
+                long now = System.nanoTime();
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - now);
+                if (remainingMillis <= 0) {
+                    result.completeExceptionally(new TDClientTimeoutException(String.format("bulk import session %s has not finished within %s: %s", sessionName, timeout, session.getStatus())));
+                    return;
+                }
+                // Poll once more at the deadline
+                long waitMillis = Math.min(polling.nextIntervalMillis(pollCount + 1, TimeUnit.NANOSECONDS.toSeconds(now - stepStartNanos)), remainingMillis);
+                try {
+                    httpClient.schedule(() -> poll(statuses, stepStartNanos, pollCount + 1, result), waitMillis);
+                }
+                catch (RuntimeException e) {
+                    // The scheduler has been shut down
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDBulkImportSession;
+import com.treasuredata.client.model.TDDatabase;
+import com.treasuredata.client.model.TDJob;
+import com.treasuredata.client.model.TDJobList;
+import com.treasuredata.client.model.TDJobRequest;
+import com.treasuredata.client.model.TDJobSummary;
+import com.treasuredata.client.model.TDResultFormat;
+import com.treasuredata.client.model.TDTable;
+import com.treasuredata.client.model.TDTableDistribution;
+import com.treasuredata.client.model.TDUser;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Asynchronous counterpart of {@link TDClientApi}.
+ * <p>
+ * The methods of this interface do not block the calling thread. API requests are sent with
+ * OkHttp's asynchronous calls, and request retries are scheduled on a timer instead of sleeping.
+ * The returned futures are completed exceptionally with a {@link TDClientException} upon errors.
+ * </p>
+ */
+public interface TDAsyncClientApi<ClientImpl>
+        extends AutoCloseable
+{
+    /**
+     * Return a TDAsyncClientApi implementation that uses the given api key.
+     * This instance will share the same internal http client, so closing the returned client will invalidate the current instance.
+     *
+     * @param newApiKey
+     * @return
+     */
+    ClientImpl withApiKey(String newApiKey);
+
+    /**
+     * Return a TDAsyncClientApi implementation that uses the provided headers when making api requests.
+     * This instance will share the same internal http client, so closing the returned client will invalidate the current instance.
+     *
+     * @param headers
+     * @return
+     */
+    ClientImpl withHeaders(Map<String, ? extends Collection<String>> headers);
+
+    /**
+     * Return information about the current user.
+     * @return A {@link TDUser} instance.
+     */
+    CompletableFuture<TDUser> getUser();
+
+    CompletableFuture<String> serverStatus();
+
+    // Database operations
+
+    /**
+     * Get the list of databases
+     *
+     * @return list of databases
+     */
+    CompletableFuture<List<String>> listDatabaseNames();
+
+    /**
+     * Get the detailed information of databases
+     *
+     * @return list of TDDatabase
+     */
+    CompletableFuture<List<TDDatabase>> listDatabases();
+
+    /**
+     * Get the detailed information of a database
+     *
+     * @return TDDatabase
+     */
+    CompletableFuture<TDDatabase> showDatabase(String databaseName);
+
+    CompletableFuture<Void> createDatabase(String databaseName);
+
+    CompletableFuture<Void> deleteDatabase(String databaseName);
+
+    CompletableFuture<Boolean> existsDatabase(String databaseName);
+
+    // Table operations
+
+    CompletableFuture<TDTable> showTable(String databaseName, String tableName);
+
+    CompletableFuture<List<TDTable>> listTables(String databaseName);
+
+    CompletableFuture<Boolean> existsTable(String databaseName, String tableName);
+
+    CompletableFuture<Map<String, Boolean>> existsTables(String databaseName, Collection<String> tableNames);
+
+    CompletableFuture<Void> createTable(String databaseName, String tableName);
+
+    CompletableFuture<Void> deleteTable(String databaseName, String tableName);
+
+    CompletableFuture<Optional<TDTableDistribution>> tableDistribution(String databaseName, String tableName);
+
+    // Query API
+
+    CompletableFuture<String> submit(TDJobRequest jobRequest);
+
+    CompletableFuture<TDJobList> listJobs();
+
+    CompletableFuture<TDJobList> listJobs(long from, long to);
+
+    CompletableFuture<Void> killJob(String jobId);
+
+    CompletableFuture<TDJobSummary> jobStatus(String jobId);
+
+    CompletableFuture<TDJobSummary> jobStatusByDomainKey(String domainKey);
+
+    CompletableFuture<TDJob> jobInfo(String jobId);
+
+    /**
+     * Wait until the job finishes by polling its status with the default {@link TDJobPollingConfig}.
+     * Cancelling the returned future stops the polling.
+     *
+     * @param jobId
+     * @param timeout
+     * @return a future completed with the status of the finished job, or with {@link TDClientTimeoutException} if the job does not finish within the timeout
+     */
+    CompletableFuture<TDJobSummary> waitForJob(String jobId, Duration timeout);
+
+    /**
+     * Wait until the job finishes by polling its status with the given schedule.
+     * Cancelling the returned future stops the polling.
+     *
+     * @param jobId
+     * @param timeout
+     * @param polling
+     * @return a future completed with the status of the finished job, or with {@link TDClientTimeoutException} if the job does not finish within the timeout
+     */
+    CompletableFuture<TDJobSummary> waitForJob(String jobId, Duration timeout, TDJobPollingConfig polling);
+
+    /**
+     * Open an input stream to retrieve the job result.
+     * The input stream will be closed after the result stream handler returns.
+     * The handler is called from the http client's dispatcher thread.
+     *
+     * @param jobId
+     * @param format
+     * @param resultStreamHandler
+     * @return
+     */
+    <Result> CompletableFuture<Result> jobResult(String jobId, TDResultFormat format, Function<InputStream, Result> resultStreamHandler);
+
+    // bulk import API
+
+    CompletableFuture<List<String>> listBulkImportParts(String sessionName);
+
+    CompletableFuture<TDBulkImportSession> getBulkImportSession(String sessionName);
+
+    CompletableFuture<Void> createBulkImportSession(String sessionName, String databaseName, String tableName);
+
+    CompletableFuture<Void> uploadBulkImportPart(String sessionName, String uniquePartName, File path);
+
+    /**
+     * Upload a bulk import part from the position to the limit of the buffer. The position of the given buffer is not changed.
+     */
+    CompletableFuture<Void> uploadBulkImportPart(String sessionName, String uniquePartName, ByteBuffer content);
+
+    CompletableFuture<Void> freezeBulkImportSession(String sessionName);
+
+    CompletableFuture<Void> performBulkImportSession(String sessionName);
+
+    CompletableFuture<Void> commitBulkImportSession(String sessionName);
+
+    /**
+     * Freeze, perform and commit the session, starting from its current status, by polling the session status with the default {@link TDJobPollingConfig}.
+     *
+     * @param sessionName
+     * @param timeout the maximum time to wait for the perform and the commit
+     * @return a future completed with the committed session
+     * @see #performAndCommitBulkImportSession(String, Duration, TDJobPollingConfig, Consumer)
+     */
+    CompletableFuture<TDBulkImportSession> performAndCommitBulkImportSession(String sessionName, Duration timeout);
+
+    /**
+     * Freeze, perform and commit the session, starting from its current status.
+     * The session status is polled with the given schedule while the session is performed and committed,
+     * and the interval is capped by the time since the start of the step multiplied by the duration ratio.
+     * No thread is blocked while waiting, and cancelling the returned future stops the polling.
+     * <p>
+     * The future fails with {@link TDClientException} if the perform has imported no records or has found invalid parts.
+     * Invalid records are only logged, and can be read with {@link TDClientApi#getBulkImportErrorRecords}.
+     * </p>
+     *
+     * @param sessionName
+     * @param timeout the maximum time to wait for the perform and the commit
+     * @param polling
+     * @param statusListener receives the session status, including the valid and error record counts, at each poll.
+     * It is called from the http client's dispatcher thread and must not block
+     * @return a future completed with the committed session, or with {@link TDClientTimeoutException} if the session is not committed within the timeout
+     */
+    CompletableFuture<TDBulkImportSession> performAndCommitBulkImportSession(String sessionName, Duration timeout, TDJobPollingConfig polling, Consumer<TDBulkImportSession> statusListener);
+
+    /**
+     * Run a bulk import end-to-end with the default {@link TDJobPollingConfig}.
+     *
+     * @see #bulkImport(String, String, String, Map, Duration, TDJobPollingConfig, Consumer)
+     */
+    CompletableFuture<TDBulkImportSession> bulkImport(String sessionName, String databaseName, String tableName, Map<String, File> parts, Duration timeout);
+
+    /**
+     * Run a bulk import end-to-end: create the session, upload the parts in parallel, then freeze, perform and commit the session
+     * as {@link #performAndCommitBulkImportSession(String, Duration, TDJobPollingConfig, Consumer)} does.
+     * <p>
+     * The bulk import can be resumed by calling this method again with the same arguments. An existing session is reused,
+     * the parts already listed in the session are not uploaded again, and the upload is skipped if it has been frozen.
+     * </p>
+     *
+     * @param sessionName
+     * @param databaseName
+     * @param tableName
+     * @param parts msgpack.gz files to upload, keyed by the part names
+     * @param timeout the maximum time to wait for the perform and the commit
+     * @param polling
+     * @param statusListener receives the session status at each poll. It is called from the http client's dispatcher thread and must not block
+     * @return a future completed with the committed session
+     */
+    CompletableFuture<TDBulkImportSession> bulkImport(String sessionName, String databaseName, String tableName, Map<String, File> parts, Duration timeout, TDJobPollingConfig polling, Consumer<TDBulkImportSession> statusListener);
+}
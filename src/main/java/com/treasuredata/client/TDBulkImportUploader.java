@@ -0,0 +1,573 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.treasuredata.client.model.TDBulkImportSession;
+import com.treasuredata.client.model.TDBulkImportSession.ImportStatus;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.treasuredata.client.TDClientException.ErrorType.EXECUTION_FAILURE;
+import static com.treasuredata.client.TDClientException.ErrorType.INVALID_INPUT;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Uploads large msgpack or msgpack.gz inputs into bulk import sessions as parts of a limited size.
+ * <p>
+ * An input is split into parts on record boundaries, and the parts are compressed and uploaded in parallel by
+ * a pool of uploader threads. See {@link TDBulkImportUploaderConfig}. Parts are named (prefix)_(part number),
+ * and the parts already listed by {@link TDClient#listBulkImportParts(String)} are skipped, so a failed upload
+ * can be resumed by uploading the same input again.
+ * {@link #uploadAndCommit(String, String, File, Duration)} also freezes, performs and commits the session,
+ * resuming from the current status of the session.
+ * </p>
+ * <pre>
+ * try (TDBulkImportUploader uploader = new TDBulkImportUploader(client)) {
+ *     client.createBulkImportSession("session_name", "mydb", "mytable");
+ *     TDBulkImportSession session = uploader.uploadAndCommit("session_name", "data", new File("data.msgpack.gz"), Duration.ofHours(1));
+ * }
+ * </pre>
+ */
+public class TDBulkImportUploader
+        implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(TDBulkImportUploader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives the progress of an upload after each part is uploaded or skipped.
+     * Calls are serialized, but they can be made from the uploader threads.
+     */
+    public interface ProgressListener
+    {
+        void onPartCompleted(Progress progress);
+    }
+
+    public static class Progress
+    {
+        private final String sessionName;
+        private final String partName;
+        private final boolean skipped;
+        private final long partRecords;
+        private final long partBytes;
+        private final long completedParts;
+        private final long completedRecords;
+        private final long uploadedBytes;
+
+        Progress(String sessionName, String partName, boolean skipped, long partRecords, long partBytes, long completedParts, long completedRecords, long uploadedBytes)
+        {
+            this.sessionName = sessionName;
+            this.partName = partName;
+            this.skipped = skipped;
+            this.partRecords = partRecords;
+            this.partBytes = partBytes;
+            this.completedParts = completedParts;
+            this.completedRecords = completedRecords;
+            this.uploadedBytes = uploadedBytes;
+        }
+
+        public String getSessionName()
+        {
+            return sessionName;
+        }
+
+        public String getPartName()
+        {
+            return partName;
+        }
+
+        /**
+         * True if the part has been uploaded before and is skipped
+         */
+        public boolean isSkipped()
+        {
+            return skipped;
+        }
+
+        public long getPartRecords()
+        {
+            return partRecords;
+        }
+
+        /**
+         * The compressed size of the part. 0 if the part is skipped
+         */
+        public long getPartBytes()
+        {
+            return partBytes;
+        }
+
+        /**
+         * The number of parts uploaded or skipped so far
+         */
+        public long getCompletedParts()
+        {
+            return completedParts;
+        }
+
+        /**
+         * The number of records in the parts uploaded or skipped so far
+         */
+        public long getCompletedRecords()
+        {
+            return completedRecords;
+        }
+
+        /**
+         * The compressed size of the parts uploaded so far
+         */
+        public long getUploadedBytes()
+        {
+            return uploadedBytes;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Progress{" +
+                    "sessionName='" + sessionName + '\'' +
+                    ", partName='" + partName + '\'' +
+                    ", skipped=" + skipped +
+                    ", partRecords=" + partRecords +
+                    ", partBytes=" + partBytes +
+                    ", completedParts=" + completedParts +
+                    ", completedRecords=" + completedRecords +
+                    ", uploadedBytes=" + uploadedBytes +
+                    '}';
+        }
+    }
+
+    private final TDClient client;
+    private final TDBulkImportUploaderConfig config;
+    private final ProgressListener progressListener;
+    private final ExecutorService uploader;
+
+    /**
+     * Create an uploader with the default {@link TDBulkImportUploaderConfig}. The client is not closed by the uploader.
+     *
+     * @param client
+     */
+    public TDBulkImportUploader(TDClient client)
+    {
+        this(client, new TDBulkImportUploaderConfig.TDBulkImportUploaderConfigBuilder().createTDBulkImportUploaderConfig());
+    }
+
+    public TDBulkImportUploader(TDClient client, TDBulkImportUploaderConfig config)
+    {
+        this(client, config, progress -> logger.debug("Bulk import progress: {}", progress));
+    }
+
+    public TDBulkImportUploader(TDClient client, TDBulkImportUploaderConfig config, ProgressListener progressListener)
+    {
+        this.client = requireNonNull(client, "client is null");
+        this.config = requireNonNull(config, "config is null");
+        this.progressListener = requireNonNull(progressListener, "progressListener is null");
+        this.uploader = Executors.newFixedThreadPool(config.getUploadThreads(), new ThreadFactoryBuilder()
+                .setNameFormat("td-client-bulk-import-uploader-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Upload a msgpack or msgpack.gz file, using the file name as the part name prefix
+     *
+     * @return the names of all of the parts of the file, including the skipped ones
+     */
+    public List<String> upload(String sessionName, File file)
+    {
+        return upload(sessionName, defaultPartNamePrefix(requireNonNull(file, "file is null")), file);
+    }
+
+    /**
+     * Upload a msgpack or msgpack.gz file
+     *
+     * @return the names of all of the parts of the file, including the skipped ones
+     */
+    public List<String> upload(String sessionName, String partNamePrefix, File file)
+    {
+        requireNonNull(file, "file is null");
+        try (InputStream in = new FileInputStream(file)) {
+            return upload(sessionName, partNamePrefix, in);
+        }
+        catch (IOException e) {
+            throw new TDClientException(INVALID_INPUT, "Failed to read " + file, e);
+        }
+    }
+
+    /**
+     * Upload a msgpack or msgpack.gz stream. The stream is not closed by this method.
+     *
+     * @return the names of all of the parts of the stream, including the skipped ones
+     */
+    public List<String> upload(String sessionName, String partNamePrefix, InputStream in)
+    {
+        requireNonNull(sessionName, "sessionName is null");
+        requireNonNull(partNamePrefix, "partNamePrefix is null");
+        requireNonNull(in, "in is null");
+
+        Upload upload = new Upload(sessionName, new HashSet<>(client.listBulkImportParts(sessionName)));
+        List<String> partNames = new ArrayList<>();
+        try {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(decompress(in));
+            Part part = null;
+            while (upload.error.get() == null && unpacker.hasNext()) {
+                if (part == null) {
+                    String partName = String.format("%s_%05d", partNamePrefix, partNames.size());
+                    part = new Part(partName, upload.uploadedParts.contains(partName));
+                    partNames.add(partName);
+                }
+                long offset = unpacker.getTotalReadBytes();
+                if (part.skipped) {
+                    unpacker.skipValue();
+                }
+                else {
+                    unpacker.unpackValue().writeTo(part.packer);
+                }
+                part.recordCount++;
+                part.size += unpacker.getTotalReadBytes() - offset;
+                if (part.size >= config.getPartSizeBytes()) {
+                    upload.submit(part);
+                    part = null;
+                }
+            }
+            if (part != null) {
+                upload.submit(part);
+            }
+        }
+        catch (IOException e) {
+            upload.fail(new TDClientException(INVALID_INPUT, "Failed to read msgpack records to upload into bulk import session " + sessionName, e));
+        }
+        finally {
+            upload.await();
+        }
+        TDClientException error = upload.error.get();
+        if (error != null) {
+            throw error;
+        }
+        return partNames;
+    }
+
+    /**
+     * Upload a msgpack or msgpack.gz file, then freeze, perform and commit the session.
+     * If the upload has been frozen, the upload is skipped and the session is performed and committed from its current status.
+     *
+     * @param timeout the maximum time to wait for the perform and the commit
+     * @return the committed session
+     */
+    public TDBulkImportSession uploadAndCommit(String sessionName, String partNamePrefix, File file, Duration timeout)
+    {
+        TDBulkImportSession session = client.getBulkImportSession(requireNonNull(sessionName, "sessionName is null"));
+        if (session.getStatus() == ImportStatus.UPLOADING && !session.isUploadFrozen()) {
+            upload(sessionName, partNamePrefix, file);
+        }
+        return performAndCommit(sessionName, timeout);
+    }
+
+    /**
+     * Freeze, perform and commit the session, starting from its current status, and wait until the session is committed.
+     * The session fails if the perform has imported no records or has found invalid parts.
+     * Invalid records are only logged, and can be read with {@link TDClient#getBulkImportErrorRecords}.
+     *
+     * @param timeout the maximum time to wait for the perform and the commit
+     * @return the committed session
+     */
+    public TDBulkImportSession performAndCommit(String sessionName, Duration timeout)
+    {
+        requireNonNull(sessionName, "sessionName is null");
+        requireNonNull(timeout, "timeout is null");
+
+        long startNanos = System.nanoTime();
+        TDBulkImportSession session = client.getBulkImportSession(sessionName);
+        if (session.getStatus() == ImportStatus.UPLOADING) {
+            if (!session.isUploadFrozen()) {
+                client.freezeBulkImportSession(sessionName);
+            }
+            client.performBulkImportSession(sessionName);
+            session = waitWhile(sessionName, EnumSet.of(ImportStatus.UPLOADING, ImportStatus.PERFORMING), startNanos, timeout);
+        }
+        else if (session.getStatus() == ImportStatus.PERFORMING) {
+            session = waitWhile(sessionName, EnumSet.of(ImportStatus.PERFORMING), startNanos, timeout);
+        }
+
+        if (session.getStatus() == ImportStatus.READY) {
+            checkPerformResult(session);
+            client.commitBulkImportSession(sessionName);
+            session = waitWhile(sessionName, EnumSet.of(ImportStatus.READY, ImportStatus.COMMITTING), startNanos, timeout);
+        }
+        else if (session.getStatus() == ImportStatus.COMMITTING) {
+            session = waitWhile(sessionName, EnumSet.of(ImportStatus.COMMITTING), startNanos, timeout);
+        }
+
+        if (session.getStatus() != ImportStatus.COMMITTED) {
+            throw new TDClientException(EXECUTION_FAILURE, String.format("Bulk import session %s has not been committed: %s", sessionName, session.getStatus()));
+        }
+        return session;
+    }
+
+    /**
+     * Check that the performed session can be committed. Invalid records are only logged
+     *
+     * @throws TDClientException if the perform has imported no records or has found invalid parts
+     */
+    static void checkPerformResult(TDBulkImportSession session)
+    {
+        if (session.getValidRecords() == 0 || session.getErrorParts() > 0) {
+            throw new TDClientException(EXECUTION_FAILURE, String.format("Bulk import session %s has failed to perform: %s", session.getName(), session.getErrorMessage()));
+        }
+        if (session.getErrorRecords() > 0) {
+            logger.warn("Committing bulk import session {} with {} invalid records", session.getName(), session.getErrorRecords());
+        }
+    }
+
+    /**
+     * Poll the session status while it is one of the statuses
+     */
+    private TDBulkImportSession waitWhile(String sessionName, Set<ImportStatus> statuses, long startNanos, Duration timeout)
+    {
+        long deadline = startNanos + timeout.toNanos();
+        int pollCount = 0;
+        while (true) {
+            TDBulkImportSession session = client.getBulkImportSession(sessionName);
+            pollCount++;
+            if (!statuses.contains(session.getStatus())) {
+                return session;
+            }
+            long now = System.nanoTime();
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - now);
+            if (remainingMillis <= 0) {
+                throw new TDClientTimeoutException(String.format("bulk import session %s has not finished within %s: %s", sessionName, timeout, session.getStatus()));
+            }
+            // Poll once more at the deadline
+            long waitMillis = Math.min(config.getStatusPolling().nextIntervalMillis(pollCount, TimeUnit.NANOSECONDS.toSeconds(now - startNanos)), remainingMillis);
+            logger.debug("Waiting {} ms for bulk import session {}: {}", waitMillis, sessionName, session.getStatus());
+            try {
+                Thread.sleep(waitMillis);
+            }
+            catch (InterruptedException e) {
+                throw new TDClientInterruptedException(e);
+            }
+        }
+    }
+
+    private static InputStream decompress(InputStream in)
+            throws IOException
+    {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    private static String defaultPartNamePrefix(File file)
+    {
+        String name = file.getName();
+        int extension = name.indexOf('.');
+        if (extension > 0) {
+            name = name.substring(0, extension);
+        }
+        return name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    @Override
+    public void close()
+    {
+        uploader.shutdown();
+    }
+
+    /**
+     * The state of an upload() call
+     */
+    private class Upload
+    {
+        private final String sessionName;
+        private final Set<String> uploadedParts;
+        // Parts held in memory. Guarding the memory usage when the uploaders fall behind
+        private final Semaphore permits = new Semaphore(config.getUploadThreads() * 2);
+        private final List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        private final AtomicReference<TDClientException> error = new AtomicReference<>();
+        // Guarded by this
+        private long completedParts;
+        private long completedRecords;
+        private long uploadedBytes;
+
+        Upload(String sessionName, Set<String> uploadedParts)
+        {
+            this.sessionName = sessionName;
+            this.uploadedParts = uploadedParts;
+        }
+
+        void submit(Part part)
+        {
+            if (part.skipped) {
+                logger.debug("Skipping part {} of bulk import session {}, which has been uploaded", part.name, sessionName);
+                complete(part, 0);
+                return;
+            }
+            ByteBuffer content = part.finish();
+            try {
+                permits.acquire();
+            }
+            catch (InterruptedException e) {
+                throw new TDClientInterruptedException(e);
+            }
+            try {
+                uploads.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        int size = content.remaining();
+                        client.uploadBulkImportPart(sessionName, part.name, content);
+                        complete(part, size);
+                    }
+                    catch (RuntimeException e) {
+                        logger.error("Failed to upload part {} of bulk import session {}", part.name, sessionName, e);
+                        fail(new TDClientException(EXECUTION_FAILURE, String.format("Failed to upload part %s of bulk import session %s", part.name, sessionName), e));
+                    }
+                    finally {
+                        permits.release();
+                    }
+                }, uploader));
+            }
+            catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        synchronized void complete(Part part, long size)
+        {
+            completedParts++;
+            completedRecords += part.recordCount;
+            uploadedBytes += size;
+            progressListener.onPartCompleted(new Progress(sessionName, part.name, part.skipped, part.recordCount, size, completedParts, completedRecords, uploadedBytes));
+        }
+
+        void fail(TDClientException e)
+        {
+            if (!error.compareAndSet(null, e)) {
+                error.get().addSuppressed(e);
+            }
+        }
+
+        void await()
+        {
+            for (CompletableFuture<Void> upload : uploads) {
+                try {
+                    upload.get();
+                }
+                catch (InterruptedException e) {
+                    throw new TDClientInterruptedException(e);
+                }
+                catch (ExecutionException e) {
+                    // Upload failures are reported through error
+                }
+            }
+        }
+    }
+
+    /**
+     * Records of a part encoded into gzipped msgpack. Skipped parts only count the records
+     */
+    private static class Part
+    {
+        private final String name;
+        private final boolean skipped;
+        private final PartBuffer buffer;
+        private final MessagePacker packer;
+        private long recordCount;
+        // The msgpack size of the records before compression
+        private long size;
+
+        Part(String name, boolean skipped)
+        {
+            this.name = name;
+            this.skipped = skipped;
+            if (skipped) {
+                this.buffer = null;
+                this.packer = null;
+                return;
+            }
+            this.buffer = new PartBuffer();
+            try {
+                this.packer = MessagePack.newDefaultPacker(new GZIPOutputStream(buffer, BUFFER_SIZE));
+            }
+            catch (IOException e) {
+                throw new TDClientException(EXECUTION_FAILURE, e);
+            }
+        }
+
+        ByteBuffer finish()
+        {
+            try {
+                // Finish the gzip stream
+                packer.close();
+            }
+            catch (IOException e) {
+                throw new TDClientException(EXECUTION_FAILURE, e);
+            }
+            return buffer.asByteBuffer();
+        }
+    }
+
+    /**
+     * Exposes the written bytes without copying them
+     */
+    private static class PartBuffer
+            extends ByteArrayOutputStream
+    {
+        PartBuffer()
+        {
+            super(BUFFER_SIZE);
+        }
+
+        synchronized ByteBuffer asByteBuffer()
+        {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
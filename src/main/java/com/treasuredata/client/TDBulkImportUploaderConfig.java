@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+/**
+ * Configuration of {@link TDBulkImportUploader}.
+ * <p>
+ * An input is split into parts of about the part size, measured by the msgpack size of records before compression.
+ * Parts are compressed and uploaded by the upload threads, and at most (upload threads) * 2 parts are held in memory.
+ * Keep the part size and the part name prefix unchanged when resuming an upload, so that the input is split into the same parts.
+ * The status of the session is polled with the status polling schedule while it is performed and committed.
+ */
+public class TDBulkImportUploaderConfig
+{
+    private final long partSizeBytes;
+    private final int uploadThreads;
+    private final TDJobPollingConfig statusPolling;
+
+    public TDBulkImportUploaderConfig(long partSizeBytes, int uploadThreads, TDJobPollingConfig statusPolling)
+    {
+        if (!(partSizeBytes > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "partSizeBytes of bulk import uploader must be positive: " + partSizeBytes);
+        }
+        if (!(uploadThreads > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "uploadThreads of bulk import uploader must be positive: " + uploadThreads);
+        }
+        if (statusPolling == null) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "statusPolling of bulk import uploader is null");
+        }
+        this.partSizeBytes = partSizeBytes;
+        this.uploadThreads = uploadThreads;
+        this.statusPolling = statusPolling;
+    }
+
+    /**
+     * The msgpack size of records in a part before compression
+     */
+    public long getPartSizeBytes()
+    {
+        return partSizeBytes;
+    }
+
+    /**
+     * The number of threads uploading parts in parallel
+     */
+    public int getUploadThreads()
+    {
+        return uploadThreads;
+    }
+
+    /**
+     * The schedule to poll the session status. The session duration is used in place of the job duration
+     */
+    public TDJobPollingConfig getStatusPolling()
+    {
+        return statusPolling;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TDBulkImportUploaderConfig{" +
+                "partSizeBytes=" + partSizeBytes +
+                ", uploadThreads=" + uploadThreads +
+                ", statusPolling=" + statusPolling +
+                '}';
+    }
+
+    public static class TDBulkImportUploaderConfigBuilder
+    {
+        private long partSizeBytes = 64L * 1024 * 1024;
+        private int uploadThreads = 4;
+        private TDJobPollingConfig statusPolling = new TDJobPollingConfig.TDJobPollingConfigBuilder().createTDJobPollingConfig();
+
+        public TDBulkImportUploaderConfigBuilder()
+        {
+        }
+
+        public TDBulkImportUploaderConfigBuilder setPartSizeBytes(long partSizeBytes)
+        {
+            this.partSizeBytes = partSizeBytes;
+            return this;
+        }
+
+        public TDBulkImportUploaderConfigBuilder setUploadThreads(int uploadThreads)
+        {
+            this.uploadThreads = uploadThreads;
+            return this;
+        }
+
+        public TDBulkImportUploaderConfigBuilder setStatusPolling(TDJobPollingConfig statusPolling)
+        {
+            this.statusPolling = statusPolling;
+            return this;
+        }
+
+        public TDBulkImportUploaderConfig createTDBulkImportUploaderConfig()
+        {
+            return new TDBulkImportUploaderConfig(partSizeBytes, uploadThreads, statusPolling);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import static com.treasuredata.client.TDCallTimings.Phase.BODY_READ;
+import static com.treasuredata.client.TDCallTimings.Phase.CONNECT;
+import static com.treasuredata.client.TDCallTimings.Phase.CONNECTION_ACQUIRE;
+import static com.treasuredata.client.TDCallTimings.Phase.DNS;
+import static com.treasuredata.client.TDCallTimings.Phase.REQUEST_WRITE;
+import static com.treasuredata.client.TDCallTimings.Phase.TIME_TO_FIRST_BYTE;
+import static com.treasuredata.client.TDCallTimings.Phase.TLS;
+
+/**
+ * Records OkHttp call events into the {@link TDCallTimings} attached to the request as a tag
+ */
+class TDCallTimingListener
+        extends EventListener
+{
+    static final EventListener.Factory FACTORY = call -> {
+        TDCallTimings timings = call.request().tag(TDCallTimings.class);
+        return timings == null ? EventListener.NONE : new TDCallTimingListener(timings);
+    };
+
+    private final TDCallTimings timings;
+
+    private TDCallTimingListener(TDCallTimings timings)
+    {
+        this.timings = timings;
+    }
+
+    @Override
+    public void callStart(Call call)
+    {
+        timings.start(CONNECTION_ACQUIRE);
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName)
+    {
+        timings.start(DNS);
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList)
+    {
+        timings.end(DNS);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy)
+    {
+        timings.setNewConnection();
+        timings.start(CONNECT);
+    }
+
+    @Override
+    public void secureConnectStart(Call call)
+    {
+        timings.start(TLS);
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake)
+    {
+        timings.end(TLS);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol)
+    {
+        timings.end(CONNECT);
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe)
+    {
+        timings.end(CONNECT);
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection)
+    {
+        timings.end(CONNECTION_ACQUIRE);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call)
+    {
+        timings.start(REQUEST_WRITE);
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request)
+    {
+        // Overwritten by requestBodyEnd if the request has a body
+        timings.end(REQUEST_WRITE);
+        timings.start(TIME_TO_FIRST_BYTE);
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount)
+    {
+        timings.end(REQUEST_WRITE);
+        timings.start(TIME_TO_FIRST_BYTE);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call)
+    {
+        timings.end(TIME_TO_FIRST_BYTE);
+    }
+
+    @Override
+    public void responseBodyStart(Call call)
+    {
+        timings.start(BODY_READ);
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount)
+    {
+        timings.end(BODY_READ);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Connection-level timings of a single http call, recorded from OkHttp events.
+ * Timings are collected only when a {@link TDClientMetrics} is registered to the client.
+ */
+public class TDCallTimings
+{
+    public enum Phase
+    {
+        /**
+         * Resolving the host name
+         */
+        DNS,
+        /**
+         * Establishing a new connection, including the TLS handshake
+         */
+        CONNECT,
+        /**
+         * The TLS handshake
+         */
+        TLS,
+        /**
+         * From the start of the call until a pooled or new connection is acquired
+         */
+        CONNECTION_ACQUIRE,
+        /**
+         * Writing the request headers and body
+         */
+        REQUEST_WRITE,
+        /**
+         * From the end of writing the request until the response headers start arriving
+         */
+        TIME_TO_FIRST_BYTE,
+        /**
+         * Reading the response body
+         */
+        BODY_READ
+    }
+
+    private static final int PHASES = Phase.values().length;
+
+    // Start and end times of the phases. 0 if not recorded
+    private final AtomicLongArray startNanos = new AtomicLongArray(PHASES);
+    private final AtomicLongArray endNanos = new AtomicLongArray(PHASES);
+    private volatile boolean connectionReused = true;
+
+    void start(Phase phase)
+    {
+        startNanos.set(phase.ordinal(), System.nanoTime());
+    }
+
+    void end(Phase phase)
+    {
+        endNanos.set(phase.ordinal(), System.nanoTime());
+    }
+
+    void setNewConnection()
+    {
+        this.connectionReused = false;
+    }
+
+    /**
+     * The time spent in the phase in nanoseconds, or -1 if the phase did not happen
+     * (e.g., DNS lookup and connect are skipped when a pooled connection is reused)
+     */
+    public long getNanos(Phase phase)
+    {
+        long start = startNanos.get(phase.ordinal());
+        long end = endNanos.get(phase.ordinal());
+        if (start == 0 || end == 0 || end - start < 0) {
+            return -1;
+        }
+        return end - start;
+    }
+
+    /**
+     * True if the call used a pooled connection
+     */
+    public boolean isConnectionReused()
+    {
+        return connectionReused;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder s = new StringBuilder("TDCallTimings{");
+        for (Phase phase : Phase.values()) {
+            long nanos = getNanos(phase);
+            if (nanos >= 0) {
+                s.append(phase.name().toLowerCase()).append('=').append(TimeUnit.NANOSECONDS.toMicros(nanos)).append("us, ");
+            }
+        }
+        return s.append("connectionReused=").append(connectionReused).append('}').toString();
+    }
+}
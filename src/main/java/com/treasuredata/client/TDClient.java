@@ -63,19 +63,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import static java.util.Objects.requireNonNull;
@@ -87,6 +97,8 @@ public class TDClient
         implements TDClientApi<TDClient>
 {
     private static final Logger logger = LoggerFactory.getLogger(TDClient.class);
+    private static final int DEFAULT_DOWNLOAD_PARALLELISM = 4;
+    private static final long DEFAULT_DOWNLOAD_CHUNK_SIZE = 16L * 1024 * 1024;
     private static final String version;
 
     public static String getVersion()
@@ -141,7 +153,7 @@ public class TDClient
     @Override
     public TDClient withApiKey(String newApiKey)
     {
-        return new TDClient(config, httpClient, Optional.of(newApiKey));
+        return new TDClient(config, httpClient, Optional.of(newApiKey), metadataCache);
     }
 
     /**
@@ -153,13 +165,13 @@ public class TDClient
     @Override
     public TDClient withHeaders(Multimap<String, String> headers)
     {
-        return new TDClient(config, httpClient.withHeaders(headers), apiKeyCache);
+        return new TDClient(config, httpClient.withHeaders(headers), apiKeyCache, metadataCache);
     }
 
     @Override
     public TDClient withHeaders(Map<String, ? extends Collection<String>> headers)
     {
-        return new TDClient(config, httpClient.withHeaders(headers), apiKeyCache);
+        return new TDClient(config, httpClient.withHeaders(headers), apiKeyCache, metadataCache);
     }
 
     /**
@@ -174,16 +186,51 @@ public class TDClient
 
     protected final Optional<String> apiKeyCache;
 
+    // Shared among the copies created with withApiKey and withHeaders
+    private final Optional<TDMetadataCache> metadataCache;
+
     public TDClient(TDClientConfig config)
     {
         this(config, new TDHttpClient(config), config.apiKey);
     }
 
     protected TDClient(TDClientConfig config, TDHttpClient httpClient, Optional<String> apiKeyCache)
+    {
+        this(config, httpClient, apiKeyCache, config.metadataCache.map(TDMetadataCache::new));
+    }
+
+    private TDClient(TDClientConfig config, TDHttpClient httpClient, Optional<String> apiKeyCache, Optional<TDMetadataCache> metadataCache)
     {
         this.config = config;
         this.httpClient = httpClient;
         this.apiKeyCache = apiKeyCache;
+        this.metadataCache = metadataCache;
+    }
+
+    private <V> V loadMetadata(TDMetadataCache.EntryType type, String databaseName, String tableName, Supplier<V> loader)
+    {
+        if (!metadataCache.isPresent()) {
+            return loader.get();
+        }
+        return metadataCache.get().get(type, apiKeyCache.orElse(""), databaseName, tableName, loader);
+    }
+
+    private void invalidateTableMetadata(String databaseName, String tableName)
+    {
+        metadataCache.ifPresent(cache -> cache.invalidateTable(databaseName, tableName));
+    }
+
+    private void invalidateDatabaseMetadata(String databaseName)
+    {
+        metadataCache.ifPresent(cache -> cache.invalidateDatabase(databaseName));
+    }
+
+    /**
+     * Discard all cached database and table metadata. This does nothing if the metadata cache is not enabled.
+     */
+    public void invalidateMetadataCache()
+    {
+        metadataCache.ifPresent(TDMetadataCache::invalidateAll);
     }
 
     public void close()
@@ -191,6 +238,17 @@ public class TDClient
         httpClient.close();
     }
 
+    /**
+     * Return an asynchronous view of this client. The returned client shares the same http client,
+     * so closing either of them invalidates the other.
+     *
+     * @return
+     */
+    public TDAsyncClient async()
+    {
+        return new TDAsyncClient(config, httpClient, apiKeyCache);
+    }
+
     protected static String buildUrl(String urlPrefix, String... args)
     {
         StringBuilder s = new StringBuilder();
@@ -284,6 +342,28 @@ public class TDClient
         return httpClient.call(request.build(), apiKeyCache, resultTypeClass);
     }
 
+    protected <ResultType> ResultType doPut(String path, Map<String, String> queryParam, ByteBuffer content, Class<ResultType> resultTypeClass)
+            throws TDClientException
+    {
+        requireNonNull(content, "content is null");
+        requireNonNull(resultTypeClass, "resultTypeClass is null");
+
+        TDApiRequest.Builder request = buildPutRequest(path, queryParam);
+        request.setContent(content);
+        return httpClient.call(request.build(), apiKeyCache, resultTypeClass);
+    }
+
+    protected <ResultType> ResultType doPut(String path, Map<String, String> queryParam, FileChannel channel, long position, long length, Class<ResultType> resultTypeClass)
+            throws TDClientException
+    {
+        requireNonNull(channel, "channel is null");
+        requireNonNull(resultTypeClass, "resultTypeClass is null");
+
+        TDApiRequest.Builder request = buildPutRequest(path, queryParam);
+        request.setFileChannel(channel, position, length);
+        return httpClient.call(request.build(), apiKeyCache, resultTypeClass);
+    }
+
     private TDApiRequest.Builder buildPutRequest(String path, Map<String, String> queryParam)
     {
         requireNonNull(path, "path is null");
@@ -358,6 +438,19 @@ public class TDClient
         return doGet("/v3/user/list", TDUserList.class);
     }
 
+    /**
+     * Open connections to the API endpoint in advance, so that latency-sensitive requests
+     * can skip the TCP and TLS handshakes. See {@link TDHttpClient#warmUp(int)}.
+     *
+     * @param connections the number of connections to open
+     * @return the number of idle connections in the pool
+     * @throws TDClientException INVALID_INPUT if connections is negative
+     */
+    public int warmUp(int connections)
+    {
+        return httpClient.warmUp(connections);
+    }
+
     @Override
     public String serverStatus()
     {
@@ -387,7 +480,8 @@ public class TDClient
     public TDDatabase showDatabase(String databaseName)
             throws TDClientException
     {
-        return doGet(buildUrl("/v3/database/show", databaseName), TDDatabase.class);
+        return loadMetadata(TDMetadataCache.EntryType.DATABASE, databaseName, null,
+                () -> doGet(buildUrl("/v3/database/show", databaseName), TDDatabase.class));
     }
 
     private static Pattern acceptableNamePattern = Pattern.compile("^([a-z0-9_]+)$");
@@ -422,7 +516,12 @@ public class TDClient
     public void createDatabase(String databaseName)
             throws TDClientException
     {
-        doPost(buildUrl("/v3/database/create", validateDatabaseName(databaseName)));
+        try {
+            doPost(buildUrl("/v3/database/create", validateDatabaseName(databaseName)));
+        }
+        finally {
+            invalidateDatabaseMetadata(databaseName);
+        }
     }
 
     @Override
@@ -441,7 +540,12 @@ public class TDClient
     public void deleteDatabase(String databaseName)
             throws TDClientException
     {
-        doPost(buildUrl("/v3/database/delete", validateDatabaseName(databaseName)));
+        try {
+            doPost(buildUrl("/v3/database/delete", validateDatabaseName(databaseName)));
+        }
+        finally {
+            invalidateDatabaseMetadata(databaseName);
+        }
     }
 
     @Override
@@ -459,51 +563,93 @@ public class TDClient
     @Override
     public TDTable showTable(String databaseName, String tableName)
     {
-        return doGet(buildUrl("/v3/table/show", databaseName, tableName), TDTable.class);
+        return loadMetadata(TDMetadataCache.EntryType.TABLE, databaseName, tableName,
+                () -> doGet(buildUrl("/v3/table/show", databaseName, tableName), TDTable.class));
     }
 
+    /**
+     * Get the list of the tables in the specified database.
+     * If the metadata cache is enabled, the returned list is unmodifiable.
+     */
     @Override
     public List<TDTable> listTables(String databaseName)
             throws TDClientException
     {
-        TDTableList tableList = doGet(buildUrl("/v3/table/list", databaseName), TDTableList.class);
-        return tableList.getTables();
+        if (!metadataCache.isPresent()) {
+            return doGet(buildUrl("/v3/table/list", databaseName), TDTableList.class).getTables();
+        }
+        return loadMetadata(TDMetadataCache.EntryType.TABLE_LIST, databaseName, null,
+                () -> Collections.unmodifiableList(doGet(buildUrl("/v3/table/list", databaseName), TDTableList.class).getTables()));
     }
 
     @Override
     public boolean existsDatabase(String databaseName)
             throws TDClientException
     {
-        return listDatabaseNames().contains(databaseName);
+        return loadMetadata(TDMetadataCache.EntryType.DATABASE_EXISTENCE, databaseName, null, () -> {
+            try {
+                showDatabase(databaseName);
+                return true;
+            }
+            catch (TDClientHttpNotFoundException e) {
+                return false;
+            }
+        });
     }
 
     @Override
     public boolean existsTable(String databaseName, String tableName)
             throws TDClientException
     {
-        try {
-            for (TDTable table : listTables(databaseName)) {
-                if (table.getName().equals(tableName)) {
-                    return true;
-                }
+        return loadMetadata(TDMetadataCache.EntryType.TABLE_EXISTENCE, databaseName, tableName, () -> {
+            try {
+                showTable(databaseName, tableName);
+                return true;
             }
-            return false;
-        }
-        catch (TDClientHttpException e) {
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND_404) {
+            catch (TDClientHttpNotFoundException e) {
+                // The table or the database does not exist
                 return false;
             }
-            else {
-                throw e;
-            }
+        });
+    }
+
+    @Override
+    public Map<String, Boolean> existsTables(String databaseName, Collection<String> tableNames)
+            throws TDClientException
+    {
+        List<TDTable> tables;
+        try {
+            tables = listTables(databaseName);
+        }
+        catch (TDClientHttpNotFoundException e) {
+            tables = Collections.emptyList();
         }
+        return toTableExistence(tables, tableNames);
+    }
+
+    static Map<String, Boolean> toTableExistence(List<TDTable> tables, Collection<String> tableNames)
+    {
+        Set<String> existingTables = new HashSet<>(tables.size());
+        for (TDTable table : tables) {
+            existingTables.add(table.getName());
+        }
+        Map<String, Boolean> existence = new LinkedHashMap<>(tableNames.size());
+        for (String tableName : tableNames) {
+            existence.put(tableName, existingTables.contains(tableName));
+        }
+        return existence;
     }
 
     @Override
     public void createTable(String databaseName, String tableName)
             throws TDClientException
     {
-        doPost(buildUrl("/v3/table/create", databaseName, validateTableName(tableName), TDTableType.LOG.getTypeName()));
+        try {
+            doPost(buildUrl("/v3/table/create", databaseName, validateTableName(tableName), TDTableType.LOG.getTypeName()));
+        }
+        finally {
+            invalidateTableMetadata(databaseName, tableName);
+        }
     }
 
     @Override
@@ -511,8 +657,13 @@ public class TDClient
             throws TDClientException
     {
         // Idempotent key support is EXPERIMENTAL.
-        doPost(buildUrl("/v3/table/create", databaseName, validateTableName(tableName), TDTableType.LOG.getTypeName()),
-                Collections.singletonMap("idempotent_key", idempotentKey));
+        try {
+            doPost(buildUrl("/v3/table/create", databaseName, validateTableName(tableName), TDTableType.LOG.getTypeName()),
+                    Collections.singletonMap("idempotent_key", idempotentKey));
+        }
+        finally {
+            invalidateTableMetadata(databaseName, tableName);
+        }
     }
 
     @Override
@@ -538,17 +689,28 @@ public class TDClient
     public void renameTable(String databaseName, String tableName, String newTableName, boolean overwrite)
             throws TDClientException
     {
-        doPost(buildUrl("/v3/table/rename", databaseName, tableName, validateTableName(newTableName)),
-                Collections.singletonMap("overwrite", Boolean.toString(overwrite)),
-                TDUpdateTableResult.class
-        );
+        try {
+            doPost(buildUrl("/v3/table/rename", databaseName, tableName, validateTableName(newTableName)),
+                    Collections.singletonMap("overwrite", Boolean.toString(overwrite)),
+                    TDUpdateTableResult.class
+            );
+        }
+        finally {
+            invalidateTableMetadata(databaseName, tableName);
+            invalidateTableMetadata(databaseName, newTableName);
+        }
     }
 
     @Override
     public void deleteTable(String databaseName, String tableName)
             throws TDClientException
     {
-        doPost(buildUrl("/v3/table/delete", databaseName, tableName));
+        try {
+            doPost(buildUrl("/v3/table/delete", databaseName, tableName));
+        }
+        finally {
+            invalidateTableMetadata(databaseName, tableName);
+        }
     }
 
     @Override
@@ -566,7 +728,13 @@ public class TDClient
     @Override
     public void swapTables(String databaseName, String tableName1, String tableName2)
     {
-        doPost(buildUrl("/v3/table/swap", databaseName, tableName1, tableName2));
+        try {
+            doPost(buildUrl("/v3/table/swap", databaseName, tableName1, tableName2));
+        }
+        finally {
+            invalidateTableMetadata(databaseName, tableName1);
+            invalidateTableMetadata(databaseName, tableName2);
+        }
     }
 
     @Override
@@ -590,7 +758,12 @@ public class TDClient
         m.put("schema", Collections.unmodifiableList(builder));
         m.put("ignore_duplicate_schema", ignoreDuplicate);
         String schemaJson = toJSONString(m);
-        doPost(buildUrl("/v3/table/update-schema", databaseName, tableName), Collections.emptyMap(), Optional.of(schemaJson), String.class);
+        try {
+            doPost(buildUrl("/v3/table/update-schema", databaseName, tableName), Collections.emptyMap(), Optional.of(schemaJson), String.class);
+        }
+        finally {
+            invalidateTableMetadata(databaseName, tableName);
+        }
     }
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
@@ -619,7 +792,12 @@ public class TDClient
             builder.add(Arrays.asList(appendedColumn.getKeyString(), appendedColumn.getType().toString()));
         }
         String schemaJson = toJSONString(Collections.singletonMap("schema", Collections.unmodifiableList(builder)));
-        doPost(buildUrl("/v3/table/append-schema", databaseName, tableName), Collections.emptyMap(), Optional.of(schemaJson), String.class);
+        try {
+            doPost(buildUrl("/v3/table/append-schema", databaseName, tableName), Collections.emptyMap(), Optional.of(schemaJson), String.class);
+        }
+        finally {
+            invalidateTableMetadata(databaseName, tableName);
+        }
     }
 
     @Override
@@ -628,15 +806,40 @@ public class TDClient
         requireNonNull(databaseName, "databaseName is null");
         requireNonNull(tableName, "tableName is null");
 
-        doPost(buildUrl("/v3/table/update", databaseName, tableName),
-                Collections.singletonMap("expire_days", Integer.toString(expireDays)),
-                TDUpdateTableResult.class
-        );
+        try {
+            doPost(buildUrl("/v3/table/update", databaseName, tableName),
+                    Collections.singletonMap("expire_days", Integer.toString(expireDays)),
+                    TDUpdateTableResult.class
+            );
+        }
+        finally {
+            invalidateTableMetadata(databaseName, tableName);
+        }
     }
 
     @Override
     public String submit(TDJobRequest jobRequest)
             throws TDClientException
+    {
+        if (logger.isDebugEnabled()) {
+            logger.debug("submit job: " + jobRequest);
+        }
+
+        TDJobSubmitResult result =
+                doPost(
+                        buildJobSubmitUrl(jobRequest),
+                        buildJobSubmitParams(jobRequest),
+                        buildJobSubmitBody(jobRequest),
+                        TDJobSubmitResult.class);
+        return result.getJobId();
+    }
+
+    static String buildJobSubmitUrl(TDJobRequest jobRequest)
+    {
+        return buildUrl("/v3/job/issue", jobRequest.getType().getType(), jobRequest.getDatabase());
+    }
+
+    static Map<String, String> buildJobSubmitParams(TDJobRequest jobRequest)
     {
         Map<String, String> queryParam = new HashMap<>();
         queryParam.put("query", jobRequest.getQuery());
@@ -670,22 +873,16 @@ public class TDClient
         if (jobRequest.getEngineVersion().isPresent()) {
             queryParam.put("engine_version", jobRequest.getEngineVersion().get().getEngineVersion());
         }
+        return queryParam;
+    }
 
-        if (logger.isDebugEnabled()) {
-            logger.debug("submit job: " + jobRequest);
-        }
-
-        TDJobSubmitResult result =
-                doPost(
-                        buildUrl("/v3/job/issue", jobRequest.getType().getType(), jobRequest.getDatabase()),
-                        queryParam,
-                        jobRequest.getConfig().map((config) -> {
-                            ObjectNode body = config.objectNode();
-                            body.set("config", config);
-                            return body.toString();
-                        }),
-                        TDJobSubmitResult.class);
-        return result.getJobId();
+    static Optional<String> buildJobSubmitBody(TDJobRequest jobRequest)
+    {
+        return jobRequest.getConfig().map((config) -> {
+            ObjectNode body = config.objectNode();
+            body.set("config", config);
+            return body.toString();
+        });
     }
 
     @Override
@@ -713,20 +910,78 @@ public class TDClient
     public TDJobSummary jobStatus(String jobId)
             throws TDClientException
     {
-        return doGet(buildUrl("/v3/job/status", jobId), TDJobSummary.class);
+        return pollJob(() -> doGet(buildUrl("/v3/job/status", jobId), TDJobSummary.class), TDJobSummary::getJobId, TDJobSummary::getStatus);
     }
 
     @Override
     public TDJobSummary jobStatusByDomainKey(String domainKey)
     {
-        return doGet(buildUrl("/v3/job/status_by_domain_key", domainKey), TDJobSummary.class);
+        return pollJob(() -> doGet(buildUrl("/v3/job/status_by_domain_key", domainKey), TDJobSummary.class), TDJobSummary::getJobId, TDJobSummary::getStatus);
     }
 
     @Override
     public TDJob jobInfo(String jobId)
             throws TDClientException
     {
-        return doGet(buildUrl("/v3/job/show", jobId), TDJob.class);
+        return pollJob(() -> doGet(buildUrl("/v3/job/show", jobId), TDJob.class), TDJob::getJobId, TDJob::getStatus);
+    }
+
+    @Override
+    public TDJobSummary waitForJob(String jobId, Duration timeout)
+    {
+        return waitForJob(jobId, timeout, new TDJobPollingConfig.TDJobPollingConfigBuilder().createTDJobPollingConfig());
+    }
+
+    @Override
+    public TDJobSummary waitForJob(String jobId, Duration timeout, TDJobPollingConfig polling)
+    {
+        requireNonNull(jobId, "jobId is null");
+        requireNonNull(timeout, "timeout is null");
+        requireNonNull(polling, "polling is null");
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int pollCount = 0;
+        while (true) {
+            TDJobSummary summary = jobStatus(jobId);
+            pollCount++;
+            if (summary.getStatus().isFinished()) {
+                return summary;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                throw new TDClientTimeoutException(String.format("job %s has not finished within %s: %s", jobId, timeout, summary.getStatus()));
+            }
+            // Poll once more at the deadline
+            long waitMillis = Math.min(polling.nextIntervalMillis(pollCount, summary.getDuration()), remainingMillis);
+            logger.debug("Waiting {} ms for job {} to finish: {}", waitMillis, jobId, summary.getStatus());
+            try {
+                Thread.sleep(waitMillis);
+            }
+            catch (InterruptedException e) {
+                throw new TDClientInterruptedException(e);
+            }
+        }
+    }
+
+    /**
+     * Run a job status lookup while recording a {@link TDJobPollEvent} if it is enabled.
+     */
+    private static <T> T pollJob(Supplier<T> lookup, Function<T, String> jobId, Function<T, TDJob.Status> status)
+    {
+        TDFlightRecorder flightRecorder = TDFlightRecorder.getInstance();
+        Object event = flightRecorder.beginJobPoll();
+        if (event == null) {
+            return lookup.get();
+        }
+        try {
+            T result = lookup.get();
+            flightRecorder.endJobPoll(event, jobId.apply(result), status.apply(result), null);
+            return result;
+        }
+        catch (RuntimeException | Error e) {
+            flightRecorder.endJobPoll(event, null, null, e);
+            throw e;
+        }
     }
 
     @Override
@@ -740,12 +995,68 @@ public class TDClient
     public <Result> Result jobResult(String jobId, TDResultFormat format, boolean includeHeader, Function<InputStream, Result> resultStreamHandler)
             throws TDClientException
     {
-        TDApiRequest request = TDApiRequest.Builder
+        // Resume the download from the last read position upon a connection failure in the middle of the result
+        try (TDResumableInputStream in = new TDResumableInputStream(httpClient, jobResultRequest(jobId, format, includeHeader), apiKeyCache)) {
+            return resultStreamHandler.apply(in);
+        }
+    }
+
+    @Override
+    public <Result> Result jobResultRows(String jobId, Function<TDResultIterator, Result> rowHandler)
+            throws TDClientException
+    {
+        String resultSchema = jobInfo(jobId).getResultSchema()
+                .orElseThrow(() -> new TDClientException(TDClientException.ErrorType.INVALID_INPUT, "No result schema is available for job " + jobId));
+        return jobResultRows(jobId, TDResultIterator.parseResultSchema(resultSchema), rowHandler);
+    }
+
+    @Override
+    public <Result> Result jobResultRows(String jobId, List<TDColumn> schema, Function<TDResultIterator, Result> rowHandler)
+            throws TDClientException
+    {
+        // A typed handler to call the java.util.function.Function overload, not the deprecated Guava one
+        Function<InputStream, Result> resultStreamHandler = input -> {
+            try (TDResultIterator rows = new TDResultIterator(input, TDResultFormat.MESSAGE_PACK_GZ, schema)) {
+                return rowHandler.apply(rows);
+            }
+        };
+        return jobResult(jobId, TDResultFormat.MESSAGE_PACK_GZ, resultStreamHandler);
+    }
+
+    private TDApiRequest jobResultRequest(String jobId, TDResultFormat format, boolean includeHeader)
+    {
+        return TDApiRequest.Builder
                 .GET(buildUrl("/v3/job/result", jobId))
                 .addQueryParam("format", format.getName())
                 .addQueryParam("header", Boolean.toString(includeHeader))
                 .build();
-        return httpClient.<Result>call(request, apiKeyCache, resultStreamHandler);
+    }
+
+    @Override
+    public long downloadJobResult(String jobId, TDResultFormat format, File file)
+            throws TDClientException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return downloadJobResult(jobId, format, channel, DEFAULT_DOWNLOAD_PARALLELISM);
+        }
+        catch (IOException e) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_INPUT, "Failed to open " + file, e);
+        }
+    }
+
+    @Override
+    public long downloadJobResult(String jobId, TDResultFormat format, FileChannel channel, int parallelism)
+            throws TDClientException
+    {
+        return downloadJobResult(jobId, format, channel, parallelism, DEFAULT_DOWNLOAD_CHUNK_SIZE);
+    }
+
+    @Override
+    public long downloadJobResult(String jobId, TDResultFormat format, FileChannel channel, int parallelism, long chunkSizeBytes)
+            throws TDClientException
+    {
+        TDApiRequest request = jobResultRequest(jobId, format, false);
+        return new TDRangedDownloader(httpClient, apiKeyCache, request, channel, chunkSizeBytes).download(parallelism);
     }
 
     @Override
@@ -778,6 +1089,22 @@ public class TDClient
         doPut(buildUrl("/v3/bulk_import/upload_part", sessionName, uniquePartName), path);
     }
 
+    @Override
+    public void uploadBulkImportPart(String sessionName, String uniquePartName, ByteBuffer content)
+    {
+        requireNonNull(content, "content is null");
+        TDApiRequest request = TDApiRequest.Builder.PUT(buildUrl("/v3/bulk_import/upload_part", sessionName, uniquePartName)).setContent(content).build();
+        httpClient.call(request, apiKeyCache);
+    }
+
+    @Override
+    public void uploadBulkImportPart(String sessionName, String uniquePartName, FileChannel channel, long position, long length)
+    {
+        requireNonNull(channel, "channel is null");
+        TDApiRequest request = TDApiRequest.Builder.PUT(buildUrl("/v3/bulk_import/upload_part", sessionName, uniquePartName)).setFileChannel(channel, position, length).build();
+        httpClient.call(request, apiKeyCache);
+    }
+
     public void deleteBulkImportPart(String sessionName, String uniquePartName)
     {
         doPost(buildUrl("/v3/bulk_import/delete_part", sessionName, uniquePartName));
@@ -1086,13 +1413,15 @@ public class TDClient
     @Override
     public Optional<TDTableDistribution> tableDistribution(String databaseName, String tableName)
     {
-        try {
-            TDTableDistribution distribution = doGet(buildUrl(String.format("/v3/table/distribution/%s/%s", databaseName, tableName)), TDTableDistribution.class);
-            return Optional.of(distribution);
-        }
-        catch (TDClientHttpNotFoundException e) {
-            return Optional.empty();
-        }
+        return loadMetadata(TDMetadataCache.EntryType.TABLE_DISTRIBUTION, databaseName, tableName, () -> {
+            try {
+                TDTableDistribution distribution = doGet(buildUrl(String.format("/v3/table/distribution/%s/%s", databaseName, tableName)), TDTableDistribution.class);
+                return Optional.of(distribution);
+            }
+            catch (TDClientHttpNotFoundException e) {
+                return Optional.empty();
+            }
+        });
     }
 
     @Override
@@ -1131,6 +1460,30 @@ public class TDClient
         return doPut(buildUrl(String.format("/v3/table/import_with_id/%s/%s/%s/%s", databaseName, tableName, id, "msgpack.gz")), Collections.emptyMap(), content, offset, length, TDImportResult.class);
     }
 
+    @Override
+    public TDImportResult importBytes(String databaseName, String tableName, ByteBuffer content)
+    {
+        return doPut(buildUrl(String.format("/v3/table/import/%s/%s/%s", databaseName, tableName, "msgpack.gz")), Collections.emptyMap(), content, TDImportResult.class);
+    }
+
+    @Override
+    public TDImportResult importBytes(String databaseName, String tableName, ByteBuffer content, String id)
+    {
+        return doPut(buildUrl(String.format("/v3/table/import_with_id/%s/%s/%s/%s", databaseName, tableName, id, "msgpack.gz")), Collections.emptyMap(), content, TDImportResult.class);
+    }
+
+    @Override
+    public TDImportResult importFile(String databaseName, String tableName, FileChannel channel, long position, long length)
+    {
+        return doPut(buildUrl(String.format("/v3/table/import/%s/%s/%s", databaseName, tableName, "msgpack.gz")), Collections.emptyMap(), channel, position, length, TDImportResult.class);
+    }
+
+    @Override
+    public TDImportResult importFile(String databaseName, String tableName, FileChannel channel, long position, long length, String id)
+    {
+        return doPut(buildUrl(String.format("/v3/table/import_with_id/%s/%s/%s/%s", databaseName, tableName, id, "msgpack.gz")), Collections.emptyMap(), channel, position, length, TDImportResult.class);
+    }
+
     @Override
     public List<TDFederatedQueryConfig> getFederatedQueryConfigs()
         throws TDClientException
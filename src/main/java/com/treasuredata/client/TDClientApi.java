@@ -46,6 +46,9 @@ import com.treasuredata.client.model.TDUserList;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -183,10 +186,34 @@ public interface TDClientApi<ClientImpl>
      */
     List<TDTable> listTables(String databaseName);
 
+    /**
+     * Check the existence of a database. This looks up only the specified database.
+     *
+     * @param databaseName
+     * @return true if the database exists
+     */
     boolean existsDatabase(String databaseName);
 
+    /**
+     * Check the existence of a table. This looks up only the specified table, so it is cheap even in a database with many tables.
+     *
+     * @param databaseName
+     * @param table
+     * @return true if the table exists. false if the table or the database does not exist.
+     */
     boolean existsTable(String databaseName, String table);
 
+    /**
+     * Check the existence of the given tables with a single table listing request.
+     * This is faster than calling {@link #existsTable(String, String)} for each table when checking many tables.
+     *
+     * @param databaseName
+     * @param tableNames
+     * @return a map from each of the given table names to its existence, in the order of tableNames.
+     * All values are false if the database does not exist.
+     */
+    Map<String, Boolean> existsTables(String databaseName, Collection<String> tableNames);
+
     /**
      * Create a new table
      *
@@ -247,6 +274,29 @@ public interface TDClientApi<ClientImpl>
 
     TDJob jobInfo(String jobId);
 
+    /**
+     * Wait until the job finishes by polling its status with the default {@link TDJobPollingConfig}.
+     *
+     * @param jobId
+     * @param timeout
+     * @return the status of the finished job
+     * @throws TDClientTimeoutException if the job does not finish within the timeout
+     * @throws TDClientInterruptedException if the thread is interrupted while waiting
+     */
+    TDJobSummary waitForJob(String jobId, Duration timeout);
+
+    /**
+     * Wait until the job finishes by polling its status with the given schedule.
+     *
+     * @param jobId
+     * @param timeout
+     * @param polling
+     * @return the status of the finished job
+     * @throws TDClientTimeoutException if the job does not finish within the timeout
+     * @throws TDClientInterruptedException if the thread is interrupted while waiting
+     */
+    TDJobSummary waitForJob(String jobId, Duration timeout, TDJobPollingConfig polling);
+
     /**
      * Open an input stream to retrieve the job result.
      * The input stream will be closed after this method
@@ -270,6 +320,8 @@ public interface TDClientApi<ClientImpl>
      * The input stream will be closed after this method
      *
      * You will receive an empty stream if the query has not finished yet.
+     * If the connection fails in the middle of the result, the stream transparently resumes reading from the failed position
+     * with an HTTP Range request.
      *
      * @param jobId
      * @param format
@@ -283,6 +335,8 @@ public interface TDClientApi<ClientImpl>
      * The input stream will be closed after this method
      *
      * You will receive an empty stream if the query has not finished yet.
+     * If the connection fails in the middle of the result, the stream transparently resumes reading from the failed position
+     * with an HTTP Range request.
      *
      * @param jobId
      * @param format
@@ -292,6 +346,63 @@ public interface TDClientApi<ClientImpl>
      */
     <Result> Result jobResult(String jobId, TDResultFormat format,  boolean includeHeader, Function<InputStream, Result> resultStreamHandler);
 
+    /**
+     * Iterate over the rows of the job result, typed according to the result schema of the job.
+     * The result is streamed in msgpack.gz format, and the iterator will be closed after this method.
+     *
+     * @param jobId
+     * @param rowHandler
+     * @return
+     */
+    <Result> Result jobResultRows(String jobId, Function<TDResultIterator, Result> rowHandler);
+
+    /**
+     * Iterate over the rows of the job result, typed according to the given schema.
+     * The result is streamed in msgpack.gz format, and the iterator will be closed after this method.
+     *
+     * @param jobId
+     * @param schema
+     * @param rowHandler
+     * @return
+     */
+    <Result> Result jobResultRows(String jobId, List<TDColumn> schema, Function<TDResultIterator, Result> rowHandler);
+
+    /**
+     * Download the job result into a file using 4 parallel HTTP Range requests of 16MB chunks.
+     * If the server does not support range requests, the result is downloaded with a single stream.
+     *
+     * @param jobId
+     * @param format
+     * @param file the destination file. Existing content will be overwritten
+     * @return the size of the downloaded result in bytes
+     */
+    long downloadJobResult(String jobId, TDResultFormat format, File file);
+
+    /**
+     * Download the job result into a channel using parallel HTTP Range requests of 16MB chunks.
+     *
+     * @param jobId
+     * @param format
+     * @param channel the destination channel. The result is written from position 0
+     * @param parallelism the maximum number of concurrent range requests
+     * @return the size of the downloaded result in bytes
+     */
+    long downloadJobResult(String jobId, TDResultFormat format, FileChannel channel, int parallelism);
+
+    /**
+     * Download the job result into a channel using parallel HTTP Range requests.
+     * Each chunk is written at its own position in the channel, and a failed chunk is retried individually.
+     * If the server does not support range requests, the result is downloaded with a single stream.
+     *
+     * @param jobId
+     * @param format
+     * @param channel the destination channel. The result is written from position 0
+     * @param parallelism the maximum number of concurrent range requests
+     * @param chunkSizeBytes the size of each range request
+     * @return the size of the downloaded result in bytes
+     */
+    long downloadJobResult(String jobId, TDResultFormat format, FileChannel channel, int parallelism, long chunkSizeBytes);
+
     // bulk import API
     List<TDBulkImportSession> listBulkImportSessions();
 
@@ -303,6 +414,18 @@ public interface TDClientApi<ClientImpl>
 
     void uploadBulkImportPart(String sessionName, String uniquePartName, File path);
 
+    /**
+     * Upload a bulk import part from the position to the limit of the buffer without copying it to the heap.
+     * Direct and memory-mapped buffers are also supported. The position of the given buffer is not changed.
+     */
+    void uploadBulkImportPart(String sessionName, String uniquePartName, ByteBuffer content);
+
+    /**
+     * Upload a region of the file channel as a bulk import part. The region is read with positional reads,
+     * so multiple parts of the same file can be uploaded concurrently.
+     */
+    void uploadBulkImportPart(String sessionName, String uniquePartName, FileChannel channel, long position, long length);
+
     void freezeBulkImportSession(String sessionName);
 
     void unfreezeBulkImportSession(String sessionName);
@@ -513,6 +636,50 @@ public interface TDClientApi<ClientImpl>
      */
     TDImportResult importBytes(String database, String table, byte[] content, int offset, int length, String id);
 
+    /**
+     * Import msgpack.gz formatted bytes from the position to the limit of the buffer upon target table.
+     * Direct and memory-mapped buffers are sent without being copied to the heap.
+     * @param database target database
+     * @param table target table
+     * @param content source msgpack.gz formatted bytes. The position of the buffer is not changed
+     * @return TDImportResult which contains a unique import id and md5
+     */
+    TDImportResult importBytes(String database, String table, ByteBuffer content);
+
+    /**
+     * Import msgpack.gz formatted bytes from the position to the limit of the buffer upon target table.
+     * Direct and memory-mapped buffers are sent without being copied to the heap.
+     * @param database target database
+     * @param table target table
+     * @param content source msgpack.gz formatted bytes. The position of the buffer is not changed
+     * @param id unique import id, ex uuid, which can be used at idempotent import
+     * @return TDImportResult which contains a unique import id and md5
+     */
+    TDImportResult importBytes(String database, String table, ByteBuffer content, String id);
+
+    /**
+     * Import a region of a msgpack.gz file upon target table
+     * @param database target database
+     * @param table target table
+     * @param channel source file channel. The region is read with positional reads
+     * @param position start position of the region
+     * @param length length of the region
+     * @return TDImportResult which contains a unique import id and md5
+     */
+    TDImportResult importFile(String database, String table, FileChannel channel, long position, long length);
+
+    /**
+     * Import a region of a msgpack.gz file upon target table
+     * @param database target database
+     * @param table target table
+     * @param channel source file channel. The region is read with positional reads
+     * @param position start position of the region
+     * @param length length of the region
+     * @param id unique import id, ex uuid, which can be used at idempotent import
+     * @return TDImportResult which contains a unique import id and md5
+     */
+    TDImportResult importFile(String database, String table, FileChannel channel, long position, long length, String id);
+
     /**
      * Fetch a list of federated query configurations
      * @return List<TDFederatedQueryConfig> which contains a list of federated query configs
@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * TD Client configuration
@@ -63,6 +64,12 @@ public class TDClientConfig
         CONNECT_TIMEOUT_MILLIS("td.client.connect-timeout", "connection timeout before reaching the API"),
         READ_TIMEOUT_MILLIS("td.client.read-timeout", "connection read timeout from API"),
         CONNECTION_POOL_SIZE("td.client.connection-pool-size", "connection pool size"),
+        CONNECTION_KEEP_ALIVE_MILLIS("td.client.connection-keep-alive", "How long idle connections are kept in the connection pool"),
+        MAX_IDLE_CONNECTIONS("td.client.max-idle-connections", "The maximum number of idle connections kept in the connection pool"),
+        MAX_REQUESTS("td.client.max-requests", "The maximum number of concurrent asynchronous requests"),
+        MAX_REQUESTS_PER_HOST("td.client.max-requests-per-host", "The maximum number of concurrent asynchronous requests to the endpoint"),
+        PROTOCOL("td.client.protocol", "HTTP protocol (http2, http1.1 or h2c)"),
+        COALESCE_REQUESTS("td.client.coalesce-requests", "Share a single response among concurrent identical GET requests"),
         PROXY_HOST("td.client.proxy.host", "Proxy host (e.g., myproxy.com)"),
         PROXY_PORT("td.client.proxy.port", "Proxy port number"),
         PROXY_USER("td.client.proxy.user", "Proxy user name"),
@@ -102,6 +109,43 @@ public class TDClientConfig
     public final int connectTimeoutMillis;
     public final int readTimeoutMillis;
     public final int connectionPoolSize;
+    /**
+     * Idle connections in the pool are closed after this duration
+     */
+    public final int connectionKeepAliveMillis;
+    /**
+     * The maximum number of idle connections kept in the pool. Connections beyond this limit are closed when they become idle
+     */
+    public final int maxIdleConnections;
+    /**
+     * The maximum number of asynchronous requests running at the same time. The other requests wait in the dispatcher queue
+     */
+    public final int maxRequests;
+    /**
+     * The maximum number of asynchronous requests running at the same time for the endpoint
+     */
+    public final int maxRequestsPerHost;
+    public final TDHttpProtocol protocol;
+    /**
+     * If true, concurrent identical GET requests that bind JSON responses share a single API call
+     */
+    public final boolean coalesceRequests;
+    /**
+     * A user-provided executor for scheduling asynchronous request retries. If absent, the client starts its own timer thread.
+     */
+    public final Optional<ScheduledExecutorService> retryScheduler;
+    /**
+     * If present, TDClient caches database and table metadata with this configuration
+     */
+    public final Optional<TDMetadataCacheConfig> metadataCache;
+    /**
+     * If present, requests are throttled by an adaptive rate limiter with this configuration
+     */
+    public final Optional<TDRateLimitConfig> rateLimit;
+    /**
+     * A listener of API request events for collecting metrics
+     */
+    public final Optional<TDClientMetrics> metrics;
 
     @Deprecated
     public final Multimap<String, String> headers;
@@ -125,7 +169,17 @@ public class TDClientConfig
             int connectTimeoutMillis,
             int readTimeoutMillis,
             int connectionPoolSize,
-            Map<String, Collection<String>> headers)
+            int connectionKeepAliveMillis,
+            int maxIdleConnections,
+            int maxRequests,
+            int maxRequestsPerHost,
+            TDHttpProtocol protocol,
+            boolean coalesceRequests,
+            Map<String, Collection<String>> headers,
+            Optional<ScheduledExecutorService> retryScheduler,
+            Optional<TDMetadataCacheConfig> metadataCache,
+            Optional<TDRateLimitConfig> rateLimit,
+            Optional<TDClientMetrics> metrics)
     {
         this.endpoint = endpoint.orElse("api.treasuredata.com");
         this.port = port;
@@ -142,7 +196,17 @@ public class TDClientConfig
         this.connectTimeoutMillis = connectTimeoutMillis;
         this.readTimeoutMillis = readTimeoutMillis;
         this.connectionPoolSize = connectionPoolSize;
+        this.connectionKeepAliveMillis = connectionKeepAliveMillis;
+        this.maxIdleConnections = maxIdleConnections;
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.protocol = protocol;
+        this.coalesceRequests = coalesceRequests;
         this.headersV2 = headers;
+        this.retryScheduler = retryScheduler;
+        this.metadataCache = metadataCache;
+        this.rateLimit = rateLimit;
+        this.metrics = metrics;
         ImmutableMultimap.Builder<String, String> headersBuilder = ImmutableMultimap.builder();
         for (Map.Entry<String, Collection<String>> e : headers.entrySet()) {
             headersBuilder.putAll(e.getKey(), e.getValue());
@@ -173,7 +237,17 @@ public class TDClientConfig
                 connectTimeoutMillis,
                 readTimeoutMillis,
                 connectionPoolSize,
-                headersV2
+                connectionKeepAliveMillis,
+                maxIdleConnections,
+                maxRequests,
+                maxRequestsPerHost,
+                protocol,
+                coalesceRequests,
+                headersV2,
+                retryScheduler,
+                metadataCache,
+                rateLimit,
+                metrics
         );
     }
 
@@ -223,6 +297,12 @@ public class TDClientConfig
         saveProperty(p, Type.RETRY_MULTIPLIER, retryMultiplier);
         saveProperty(p, Type.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis);
         saveProperty(p, Type.CONNECTION_POOL_SIZE, connectionPoolSize);
+        saveProperty(p, Type.CONNECTION_KEEP_ALIVE_MILLIS, connectionKeepAliveMillis);
+        saveProperty(p, Type.MAX_IDLE_CONNECTIONS, maxIdleConnections);
+        saveProperty(p, Type.MAX_REQUESTS, maxRequests);
+        saveProperty(p, Type.MAX_REQUESTS_PER_HOST, maxRequestsPerHost);
+        saveProperty(p, Type.PROTOCOL, protocol.getValue());
+        saveProperty(p, Type.COALESCE_REQUESTS, coalesceRequests);
         return p;
     }
 
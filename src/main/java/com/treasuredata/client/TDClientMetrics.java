@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import java.util.Optional;
+
+/**
+ * A listener of API request events for collecting client metrics. Register an implementation with
+ * {@link AbstractTDClientBuilder#setMetrics(TDClientMetrics)}. {@link TDHistogramMetrics} is a built-in implementation.
+ * <p>
+ * Requests are identified by their path templates (e.g., /v3/table/show/{db}/{table}), so that requests of the same API
+ * can be aggregated. The methods are called from the threads sending requests, so implementations must be thread-safe
+ * and should return quickly. Exceptions thrown from the methods are logged and ignored.
+ */
+public interface TDClientMetrics
+{
+    /**
+     * Called when an API request is submitted
+     *
+     * @param method http method name (e.g., GET)
+     * @param pathTemplate the normalized path of the request
+     */
+    default void requestStarted(String method, String pathTemplate)
+    {
+    }
+
+    /**
+     * Called after each attempt of a request, including retries. The attempt provides the attempt number,
+     * backoff wait, status code, response size, error, elapsed time, and connection-level timings
+     * ({@link TDRetryTimeline.Attempt#getCallTimings()}).
+     *
+     * @param pathTemplate the normalized path of the request
+     * @param attempt the finished attempt
+     */
+    default void attemptFinished(String pathTemplate, TDRetryTimeline.Attempt attempt)
+    {
+    }
+
+    /**
+     * Called when a request has succeeded or finally failed
+     *
+     * @param pathTemplate the normalized path of the request
+     * @param timeline the attempts made for the request
+     * @param elapsedNanos the time from the submission to the completion, including backoff waits
+     * @param error the error if the request failed
+     */
+    default void requestFinished(String pathTemplate, TDRetryTimeline timeline, long elapsedNanos, Optional<Throwable> error)
+    {
+    }
+}
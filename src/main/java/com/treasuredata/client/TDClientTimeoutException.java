@@ -28,4 +28,9 @@ public class TDClientTimeoutException
     {
         super(ErrorType.REQUEST_TIMEOUT, cause);
     }
+
+    public TDClientTimeoutException(String message)
+    {
+        super(ErrorType.REQUEST_TIMEOUT, message);
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A Content-Range header of a 206 Partial Content response (e.g., bytes 0-1023/4096)
+ */
+class TDContentRange
+{
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final long start;
+    private final long end;
+    private final long totalLength;
+
+    TDContentRange(long start, long end, long totalLength)
+    {
+        this.start = start;
+        this.end = end;
+        this.totalLength = totalLength;
+    }
+
+    static Optional<TDContentRange> parse(String header)
+    {
+        if (header == null) {
+            return Optional.empty();
+        }
+        Matcher m = CONTENT_RANGE.matcher(header.trim());
+        if (!m.matches()) {
+            return Optional.empty();
+        }
+        long totalLength = m.group(3).equals("*") ? -1 : Long.parseLong(m.group(3));
+        return Optional.of(new TDContentRange(Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), totalLength));
+    }
+
+    /**
+     * The first byte position (inclusive)
+     */
+    long getStart()
+    {
+        return start;
+    }
+
+    /**
+     * The last byte position (inclusive)
+     */
+    long getEnd()
+    {
+        return end;
+    }
+
+    long getLength()
+    {
+        return end - start + 1;
+    }
+
+    /**
+     * The length of the whole content, or -1 if unknown
+     */
+    long getTotalLength()
+    {
+        return totalLength;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("bytes %d-%d/%s", start, end, totalLength < 0 ? "*" : Long.toString(totalLength));
+    }
+}
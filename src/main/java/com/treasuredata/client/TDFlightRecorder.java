@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits Java Flight Recorder events of API requests, retries and job polling.
+ * <p>
+ * JFR events are available since JDK 11 and JDK 8u262. On the other JVMs, this falls back to a no-op implementation,
+ * so the event classes are loaded only through reflection. Each begin method returns null if the event is disabled,
+ * and the end methods do nothing for null events.
+ */
+abstract class TDFlightRecorder
+{
+    private static final Logger logger = LoggerFactory.getLogger(TDFlightRecorder.class);
+
+    private static final TDFlightRecorder instance = load();
+
+    static TDFlightRecorder getInstance()
+    {
+        return instance;
+    }
+
+    private static TDFlightRecorder load()
+    {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (TDFlightRecorder) Class.forName("com.treasuredata.client.TDJfrFlightRecorder").getDeclaredConstructor().newInstance();
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+            logger.debug("JFR is not available in this JVM");
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Failed to initialize JFR events", e);
+        }
+        return new TDFlightRecorder()
+        {
+        };
+    }
+
+    Object beginApiRequest()
+    {
+        return null;
+    }
+
+    void endApiRequest(Object event, TDApiRequest apiRequest, TDRetryTimeline timeline, Throwable error)
+    {
+    }
+
+    Object beginRetry()
+    {
+        return null;
+    }
+
+    void endRetry(Object event, String path, int attempt, Throwable cause)
+    {
+    }
+
+    Object beginJobPoll()
+    {
+        return null;
+    }
+
+    void endJobPoll(Object event, String jobId, TDJob.Status status, Throwable error)
+    {
+    }
+}
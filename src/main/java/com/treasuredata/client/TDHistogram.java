@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative long values (e.g., latencies in microseconds).
+ * <p>
+ * Values are counted in log-linear buckets: values below 16 have their own buckets, and each power of 2 range
+ * above is split into 8 buckets. Percentiles are reported by the upper bound of the bucket, so they can be
+ * larger than the actual value by at most 12.5%.
+ */
+public class TDHistogram
+{
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 4 = log2(LINEAR_BUCKETS)
+    private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 1 - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value)
+    {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucketIndex(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    static int bucketIndex(long value)
+    {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * The largest value that falls into the bucket
+     */
+    static long bucketUpperBound(int index)
+    {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowerBound = (1L << exponent) + subBucket * width;
+        return lowerBound + (width - 1);
+    }
+
+    /**
+     * Take a snapshot of the recorded values. Values recorded while taking the snapshot may be partially included.
+     */
+    public Snapshot snapshot()
+    {
+        long[] bucketCounts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = counts.get(i);
+            total += bucketCounts[i];
+        }
+        return new Snapshot(bucketCounts, total, sum.sum(), max.get());
+    }
+
+    public static class Snapshot
+    {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] bucketCounts, long count, long sum, long max)
+        {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public long getSum()
+        {
+            return sum;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+
+        public double getMean()
+        {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Get the value at the given percentile (e.g., 0.99 for the 99th percentile), or 0 if no value is recorded
+         */
+        public long getPercentile(double percentile)
+        {
+            if (percentile < 0 || percentile > 1) {
+                throw new IllegalArgumentException("percentile must be between 0 and 1: " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile * count));
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("count=%d, mean=%.1f, p50=%d, p90=%d, p99=%d, max=%d",
+                    count, getMean(), getPercentile(0.5), getPercentile(0.9), getPercentile(0.99), max);
+        }
+    }
+}
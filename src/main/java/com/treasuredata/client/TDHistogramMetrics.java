@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A built-in {@link TDClientMetrics} that aggregates request counts, errors, retries, response sizes and
+ * latency histograms for each API path template without locking.
+ *
+ * <pre>{@code
+ * TDHistogramMetrics metrics = new TDHistogramMetrics();
+ * TDClient client = TDClient.newBuilder().setMetrics(metrics).build();
+ * ...
+ * for (Map.Entry<String, TDHistogramMetrics.Snapshot> e : metrics.snapshot().entrySet()) {
+ *     System.out.println(e.getKey() + ": " + e.getValue());
+ * }
+ * }</pre>
+ */
+public class TDHistogramMetrics
+        implements TDClientMetrics
+{
+    private final ConcurrentMap<String, Stats> statsByPath = new ConcurrentHashMap<>();
+
+    private Stats getStats(String pathTemplate)
+    {
+        Stats stats = statsByPath.get(pathTemplate);
+        if (stats == null) {
+            stats = statsByPath.computeIfAbsent(pathTemplate, p -> new Stats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void requestStarted(String method, String pathTemplate)
+    {
+        getStats(pathTemplate).inflight.increment();
+    }
+
+    @Override
+    public void attemptFinished(String pathTemplate, TDRetryTimeline.Attempt attempt)
+    {
+        Stats stats = getStats(pathTemplate);
+        stats.attempts.increment();
+        stats.backoffWaitMillis.add(attempt.getWaitTimeMillis());
+        stats.attemptLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(attempt.getElapsedNanos()));
+        attempt.getResponseBytes().ifPresent(stats.responseBytes::add);
+        attempt.getStatusCode().ifPresent(code -> increment(stats.statusCodes, code));
+        attempt.getError().ifPresent(e -> increment(stats.errorTypes, e.getClass().getName()));
+        attempt.getCallTimings().ifPresent(timings -> {
+            for (Map.Entry<TDCallTimings.Phase, TDHistogram> e : stats.phaseLatencyMicros.entrySet()) {
+                long nanos = timings.getNanos(e.getKey());
+                if (nanos >= 0) {
+                    e.getValue().record(TimeUnit.NANOSECONDS.toMicros(nanos));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void requestFinished(String pathTemplate, TDRetryTimeline timeline, long elapsedNanos, Optional<Throwable> error)
+    {
+        Stats stats = getStats(pathTemplate);
+        stats.inflight.decrement();
+        stats.requests.increment();
+        if (error.isPresent()) {
+            stats.failures.increment();
+        }
+        stats.requestLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    private static <K> void increment(ConcurrentMap<K, LongAdder> counters, K key)
+    {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Take snapshots of the metrics for each path template, sorted by the path template
+     */
+    public Map<String, Snapshot> snapshot()
+    {
+        Map<String, Snapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, Stats> e : statsByPath.entrySet()) {
+            snapshots.put(e.getKey(), e.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * Discard all recorded metrics
+     */
+    public void reset()
+    {
+        statsByPath.clear();
+    }
+
+    private static class Stats
+    {
+        private final LongAdder inflight = new LongAdder();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder backoffWaitMillis = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final ConcurrentMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> errorTypes = new ConcurrentHashMap<>();
+        private final TDHistogram requestLatencyMicros = new TDHistogram();
+        private final TDHistogram attemptLatencyMicros = new TDHistogram();
+        // Not modified after the construction
+        private final Map<TDCallTimings.Phase, TDHistogram> phaseLatencyMicros = new EnumMap<>(TDCallTimings.Phase.class);
+
+        Stats()
+        {
+            for (TDCallTimings.Phase phase : TDCallTimings.Phase.values()) {
+                phaseLatencyMicros.put(phase, new TDHistogram());
+            }
+        }
+
+        Snapshot snapshot()
+        {
+            Map<TDCallTimings.Phase, TDHistogram.Snapshot> phases = new EnumMap<>(TDCallTimings.Phase.class);
+            for (Map.Entry<TDCallTimings.Phase, TDHistogram> e : phaseLatencyMicros.entrySet()) {
+                phases.put(e.getKey(), e.getValue().snapshot());
+            }
+            return new Snapshot(
+                    inflight.sum(),
+                    requests.sum(),
+                    failures.sum(),
+                    attempts.sum(),
+                    backoffWaitMillis.sum(),
+                    responseBytes.sum(),
+                    sum(statusCodes),
+                    sum(errorTypes),
+                    requestLatencyMicros.snapshot(),
+                    attemptLatencyMicros.snapshot(),
+                    Collections.unmodifiableMap(phases));
+        }
+
+        private static <K> Map<K, Long> sum(ConcurrentMap<K, LongAdder> counters)
+        {
+            Map<K, Long> m = new TreeMap<>();
+            for (Map.Entry<K, LongAdder> e : counters.entrySet()) {
+                m.put(e.getKey(), e.getValue().sum());
+            }
+            return Collections.unmodifiableMap(m);
+        }
+    }
+
+    /**
+     * Metrics of the requests to an API path template
+     */
+    public static class Snapshot
+    {
+        private final long inflightRequests;
+        private final long requests;
+        private final long failedRequests;
+        private final long attempts;
+        private final long backoffWaitMillis;
+        private final long responseBytes;
+        private final Map<Integer, Long> statusCodes;
+        private final Map<String, Long> errorTypes;
+        private final TDHistogram.Snapshot requestLatencyMicros;
+        private final TDHistogram.Snapshot attemptLatencyMicros;
+        private final Map<TDCallTimings.Phase, TDHistogram.Snapshot> phaseLatencyMicros;
+
+        Snapshot(long inflightRequests, long requests, long failedRequests, long attempts, long backoffWaitMillis, long responseBytes,
+                Map<Integer, Long> statusCodes, Map<String, Long> errorTypes, TDHistogram.Snapshot requestLatencyMicros, TDHistogram.Snapshot attemptLatencyMicros,
+                Map<TDCallTimings.Phase, TDHistogram.Snapshot> phaseLatencyMicros)
+        {
+            this.inflightRequests = inflightRequests;
+            this.requests = requests;
+            this.failedRequests = failedRequests;
+            this.attempts = attempts;
+            this.backoffWaitMillis = backoffWaitMillis;
+            this.responseBytes = responseBytes;
+            this.statusCodes = statusCodes;
+            this.errorTypes = errorTypes;
+            this.requestLatencyMicros = requestLatencyMicros;
+            this.attemptLatencyMicros = attemptLatencyMicros;
+            this.phaseLatencyMicros = phaseLatencyMicros;
+        }
+
+        /**
+         * The number of requests in progress
+         */
+        public long getInflightRequests()
+        {
+            return inflightRequests;
+        }
+
+        /**
+         * The number of completed requests
+         */
+        public long getRequests()
+        {
+            return requests;
+        }
+
+        /**
+         * The number of requests that finally failed
+         */
+        public long getFailedRequests()
+        {
+            return failedRequests;
+        }
+
+        /**
+         * The number of attempts including retries and followed redirects
+         */
+        public long getAttempts()
+        {
+            return attempts;
+        }
+
+        /**
+         * The total backoff wait before retries
+         */
+        public long getBackoffWaitMillis()
+        {
+            return backoffWaitMillis;
+        }
+
+        /**
+         * The total size of the response bodies read by the client
+         */
+        public long getResponseBytes()
+        {
+            return responseBytes;
+        }
+
+        /**
+         * The number of responses for each http status code
+         */
+        public Map<Integer, Long> getStatusCodes()
+        {
+            return statusCodes;
+        }
+
+        /**
+         * The number of failed attempts for each exception class name
+         */
+        public Map<String, Long> getErrorTypes()
+        {
+            return errorTypes;
+        }
+
+        /**
+         * Latency of requests in microseconds, from the submission to the completion including retries
+         */
+        public TDHistogram.Snapshot getRequestLatencyMicros()
+        {
+            return requestLatencyMicros;
+        }
+
+        /**
+         * Latency of each attempt in microseconds
+         */
+        public TDHistogram.Snapshot getAttemptLatencyMicros()
+        {
+            return attemptLatencyMicros;
+        }
+
+        /**
+         * Latency of each connection-level phase (e.g., DNS lookup, TLS handshake, time to first byte) in microseconds.
+         * Phases skipped by an attempt, such as connect for a pooled connection, are not counted.
+         */
+        public Map<TDCallTimings.Phase, TDHistogram.Snapshot> getPhaseLatencyMicros()
+        {
+            return phaseLatencyMicros;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Snapshot{" +
+                    "inflightRequests=" + inflightRequests +
+                    ", requests=" + requests +
+                    ", failedRequests=" + failedRequests +
+                    ", attempts=" + attempts +
+                    ", backoffWaitMillis=" + backoffWaitMillis +
+                    ", responseBytes=" + responseBytes +
+                    ", statusCodes=" + statusCodes +
+                    ", errorTypes=" + errorTypes +
+                    ", requestLatencyMicros={" + requestLatencyMicros + "}" +
+                    ", attemptLatencyMicros={" + attemptLatencyMicros + "}" +
+                    ", phaseLatencyMicros=" + phaseLatencyMicros +
+                    '}';
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package com.treasuredata.client;
 
 import com.fasterxml.jackson.annotation.JsonRootName;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
@@ -30,19 +31,33 @@ import com.fasterxml.jackson.datatype.jsonorg.JsonOrgModule;
 import com.google.common.collect.Multimap;
 import com.treasuredata.client.impl.ProxyAuthenticator;
 import com.treasuredata.client.model.JsonCollectionRootName;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSource;
+import okio.Okio;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
@@ -54,17 +69,24 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 import static com.treasuredata.client.TDApiRequest.urlEncode;
 import static com.treasuredata.client.TDClientException.ErrorType.INVALID_JSON_RESPONSE;
 import static com.treasuredata.client.TDHttpRequestHandler.ResponseContext;
-import static com.treasuredata.client.TDHttpRequestHandlers.byteArrayContentHandler;
 import static com.treasuredata.client.TDHttpRequestHandlers.newByteStreamHandler;
 import static com.treasuredata.client.TDHttpRequestHandlers.stringContentHandler;
 
@@ -75,12 +97,19 @@ public class TDHttpClient
         implements AutoCloseable
 {
     private static final Logger logger = LoggerFactory.getLogger(TDHttpClient.class);
+    private static final TDFlightRecorder flightRecorder = TDFlightRecorder.getInstance();
 
     private static final String AUTHORIZATION = "Authorization";
     private static final String CONTENT_LENGTH = "Content-Length";
     private static final String DATE = "Date";
     private static final String LOCATION = "Location";
     private static final String USER_AGENT = "User-Agent";
+    // The same limit as OkHttp's RetryAndFollowUpInterceptor
+    private static final int MAX_REDIRECTS = 20;
+    // The max size of a response body to show in the trace log
+    private static final int MAX_TRACE_LOG_BYTES = 64 * 1024;
+    // The result of a coalesced request whose leader was interrupted. The other callers send the request again
+    private static final Object INTERRUPTED_LEADER = new Object();
 
     // Used for reading JSON response
     static ObjectMapper defaultObjectMapper = new ObjectMapper()
@@ -95,6 +124,25 @@ public class TDHttpClient
     protected final TDClientConfig config;
     private final OkHttpClient httpClient;
     private final ObjectMapper objectMapper;
+    // ObjectReaders for each result type. Building a reader involves annotation lookups, so we reuse them
+    private final ConcurrentMap<JavaType, ObjectReader> jsonReaderCache;
+    private final TDRetryScheduler retryScheduler;
+    // In-flight GET requests shared by concurrent identical calls, or null if request coalescing is disabled
+    private final ConcurrentMap<CoalescingKey, CompletableFuture<Object>> inflightRequests;
+    // Shared by all requests of the client, or null if rate limiting is disabled
+    private final TDRateLimiter rateLimiter;
+    // The listener of request events, or null if metrics are not collected
+    private final TDClientMetrics metrics;
+    // The endpoint URL, or null if the endpoint is not a valid host name. Then an error will be reported for each request
+    private final HttpUrl baseUrl;
+    // The encoded path of baseUrl without the trailing slash. Request paths are appended to this
+    private final String basePath;
+    // The Authorization header value for config.apiKey
+    private final Optional<String> configAuthorization;
+    // The Authorization header value for the last seen apiKeyCache
+    private volatile ResolvedApiKey lastResolvedApiKey;
+    // Built on first use because getClientName() can be overridden by subclasses
+    private volatile String userAgent;
 
     /**
      * Visible for testing.
@@ -121,29 +169,73 @@ public class TDHttpClient
                 builder.proxyAuthenticator(new ProxyAuthenticator(proxyConfig));
             }
         }
+        // Record connection-level timings of the requests tagged with TDCallTimings
+        if (config.metrics.isPresent()) {
+            builder.eventListenerFactory(TDCallTimingListener.FACTORY);
+        }
+
         // connection pool
-        ConnectionPool connectionPool = new ConnectionPool(config.connectionPoolSize, 5, TimeUnit.MINUTES);
+        ConnectionPool connectionPool = new ConnectionPool(config.maxIdleConnections, config.connectionKeepAliveMillis, TimeUnit.MILLISECONDS);
         builder.connectionPool(connectionPool);
 
+        // The limits of concurrent asynchronous requests. These default to the connection pool size for HTTP/1.1, where each request needs a connection
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.maxRequests);
+        dispatcher.setMaxRequestsPerHost(config.maxRequestsPerHost);
+        builder.dispatcher(dispatcher);
+
+        if (config.protocol == TDHttpProtocol.H2C && config.useSSL) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "h2c protocol cannot be used with SSL");
+        }
+        builder.protocols(config.protocol.getProtocols());
+
         // Build OkHttpClient
         this.httpClient = builder.build();
         this.headers = config.headersV2;
 
         // Prepare jackson json-object mapper
         this.objectMapper = defaultObjectMapper;
+        this.jsonReaderCache = new ConcurrentHashMap<>();
+        this.retryScheduler = new TDRetryScheduler(config.retryScheduler);
+        this.inflightRequests = config.coalesceRequests ? new ConcurrentHashMap<>() : null;
+        this.rateLimiter = config.rateLimit.map(TDRateLimiter::new).orElse(null);
+        this.metrics = config.metrics.orElse(null);
+        this.baseUrl = buildBaseUrl(config);
+        this.basePath = baseUrl != null ? stripTrailingSlash(baseUrl.encodedPath()) : "";
+        this.configAuthorization = config.apiKey.map(TDHttpClient::toAuthorization);
     }
 
     protected TDHttpClient(TDHttpClient reference)
     {
-        this(reference.config, reference.httpClient, reference.objectMapper, reference.headers);
+        this(reference.config, reference.httpClient, reference.objectMapper, reference.jsonReaderCache, reference.headers, reference.retryScheduler, reference.inflightRequests, reference.rateLimiter);
     }
 
-    private TDHttpClient(TDClientConfig config, OkHttpClient httpClient, ObjectMapper objectMapper, Map<String, Collection<String>> headers)
+    private TDHttpClient(TDClientConfig config, OkHttpClient httpClient, ObjectMapper objectMapper, ConcurrentMap<JavaType, ObjectReader> jsonReaderCache, Map<String, Collection<String>> headers, TDRetryScheduler retryScheduler,
+            ConcurrentMap<CoalescingKey, CompletableFuture<Object>> inflightRequests, TDRateLimiter rateLimiter)
     {
         this.config = config;
         this.httpClient = httpClient;
         this.objectMapper = objectMapper;
+        this.jsonReaderCache = jsonReaderCache;
         this.headers = headers;
+        this.retryScheduler = retryScheduler;
+        this.inflightRequests = inflightRequests;
+        this.rateLimiter = rateLimiter;
+        this.metrics = config.metrics.orElse(null);
+        this.baseUrl = buildBaseUrl(config);
+        this.basePath = baseUrl != null ? stripTrailingSlash(baseUrl.encodedPath()) : "";
+        this.configAuthorization = config.apiKey.map(TDHttpClient::toAuthorization);
+    }
+
+    private static HttpUrl buildBaseUrl(TDClientConfig config)
+    {
+        String portStr = config.port.map((input) -> ":" + input).orElse("");
+        return HttpUrl.parse(String.format("%s://%s%s", config.useSSL ? "https" : "http", config.endpoint, portStr));
+    }
+
+    private static String stripTrailingSlash(String path)
+    {
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
     }
 
     /**
@@ -171,7 +263,7 @@ public class TDHttpClient
     {
         Map<String, Collection<String>> mergedHeaders = new HashMap<>(this.headers);
         mergedHeaders.putAll(headers);
-        return new TDHttpClient(config, httpClient, objectMapper, Collections.unmodifiableMap(mergedHeaders));
+        return new TDHttpClient(config, httpClient, objectMapper, jsonReaderCache, Collections.unmodifiableMap(mergedHeaders), retryScheduler, inflightRequests, rateLimiter);
     }
 
     ObjectMapper getObjectMapper()
@@ -179,13 +271,107 @@ public class TDHttpClient
         return objectMapper;
     }
 
+    /**
+     * Run a task after the delay on the timer used for asynchronous retries
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delayMillis)
+    {
+        return retryScheduler.schedule(task, delayMillis);
+    }
+
     public void close()
     {
         // Cleanup the internal thread manager and connections
+        retryScheduler.close();
         httpClient.dispatcher().executorService().shutdown();
         httpClient.connectionPool().evictAll();
     }
 
+    /**
+     * Open connections to the API endpoint in advance and keep them in the connection pool, so that the following
+     * requests can skip the TCP and TLS handshakes. This sends concurrent server status requests, and holds each
+     * response until all of them arrive so that every request uses a different connection.
+     * The connections are closed after the keep-alive duration unless they are used by requests.
+     * <p>
+     * With HTTP/2, a single connection is shared by all of the requests, so this opens only one connection.
+     *
+     * @param connections the number of connections to open. This is capped by the max idle connections
+     * @return the number of idle connections in the pool after warming up
+     * @throws TDClientException INVALID_INPUT if connections is negative
+     * @throws TDClientInterruptedException if interrupted while waiting for the connections
+     */
+    public int warmUp(int connections)
+    {
+        if (connections < 0) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_INPUT, "connections must not be negative: " + connections);
+        }
+        int count = Math.min(connections, Math.min(config.maxIdleConnections, httpClient.dispatcher().getMaxRequestsPerHost()));
+        Request request = prepareRequest(TDApiRequest.Builder.GET("/v3/system/server_status").build(), Optional.empty());
+        CountDownLatch received = new CountDownLatch(count);
+        List<Call> calls = new ArrayList<>(count);
+        // Guarded by itself. Set to null after warming up
+        AtomicReference<Map<Call, Response>> responses = new AtomicReference<>(new HashMap<>());
+        try {
+            for (int i = 0; i < count; i++) {
+                Call call = httpClient.newCall(request);
+                calls.add(call);
+                call.enqueue(new Callback()
+                {
+                    @Override
+                    public void onFailure(Call call, IOException e)
+                    {
+                        logger.debug("Failed to open a connection to {}", request.url(), e);
+                        received.countDown();
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response)
+                    {
+                        synchronized (responses) {
+                            if (responses.get() == null) {
+                                // Arrived after the timeout
+                                response.close();
+                                return;
+                            }
+                            // Keep the response open for holding the connection
+                            responses.get().put(call, response);
+                        }
+                        received.countDown();
+                    }
+                });
+            }
+            if (!received.await(config.connectTimeoutMillis + config.readTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("Timed out while warming up connections to {}", request.url());
+            }
+        }
+        catch (InterruptedException e) {
+            throw new TDClientInterruptedException(e);
+        }
+        finally {
+            Map<Call, Response> receivedResponses;
+            synchronized (responses) {
+                receivedResponses = responses.getAndSet(null);
+            }
+            for (Call call : calls) {
+                if (!receivedResponses.containsKey(call)) {
+                    call.cancel();
+                }
+            }
+            for (Response response : receivedResponses.values()) {
+                // Read the whole body to return the connection to the pool
+                try (ResponseBody body = response.body()) {
+                    body.bytes();
+                }
+                catch (IOException e) {
+                    logger.debug("Failed to read the response from {}", request.url(), e);
+                }
+            }
+        }
+        int idleConnections = httpClient.connectionPool().idleConnectionCount();
+        logger.debug("Warmed up connections to {}: {} idle connections", request.url(), idleConnections);
+        return idleConnections;
+    }
+
     private static final ThreadLocal<SimpleDateFormat> RFC2822_FORMAT =
             new ThreadLocal<SimpleDateFormat>()
             {
@@ -218,38 +404,38 @@ public class TDHttpClient
 
     public Request prepareRequest(TDApiRequest apiRequest, Optional<String> apiKeyCache)
     {
+        HttpUrl.Builder url = newUrlBuilder(apiRequest.getPath());
         String queryStr = "";
-        String portStr = config.port.map((input) -> ":" + input).orElse("");
-        String requestUri = apiRequest.getPath().startsWith("http")
-                ? apiRequest.getPath()
-                : String.format("%s://%s%s%s", config.useSSL ? "https" : "http", config.endpoint, portStr, apiRequest.getPath());
-
         if (!apiRequest.getQueryParams().isEmpty()) {
-            List<String> queryParamList = new ArrayList<>(apiRequest.getQueryParams().size());
-            for (Map.Entry<String, String> queryParam : apiRequest.getQueryParams().entrySet()) {
-                queryParamList.add(String.format("%s=%s", urlEncode(queryParam.getKey()), urlEncode(queryParam.getValue())));
+            boolean isQueryInUrl = apiRequest.getMethod() == TDHttpMethod.GET ||
+                    (apiRequest.getMethod() == TDHttpMethod.POST && apiRequest.getPostJson().isPresent());
+            if (isQueryInUrl) {
+                for (Map.Entry<String, String> queryParam : apiRequest.getQueryParams().entrySet()) {
+                    url.addEncodedQueryParameter(urlEncode(queryParam.getKey()), urlEncode(queryParam.getValue()));
+                }
             }
-            queryStr = String.join("&", queryParamList);
-            if (apiRequest.getMethod() == TDHttpMethod.GET ||
-                    (apiRequest.getMethod() == TDHttpMethod.POST && apiRequest.getPostJson().isPresent())) {
-                requestUri += "?" + queryStr;
+            else {
+                // Sent as a form body
+                StringBuilder form = new StringBuilder();
+                for (Map.Entry<String, String> queryParam : apiRequest.getQueryParams().entrySet()) {
+                    if (form.length() > 0) {
+                        form.append('&');
+                    }
+                    form.append(urlEncode(queryParam.getKey())).append('=').append(urlEncode(queryParam.getValue()));
+                }
+                queryStr = form.toString();
             }
         }
 
+        HttpUrl requestUrl = url.build();
         if (logger.isDebugEnabled()) {
-            logger.debug("Sending API request to {}", requestUri);
+            logger.debug("Sending API request to {}", requestUrl);
         }
-        String dateHeader = RFC2822_FORMAT.get().format(new Date());
-        StringJoiner joiner = new StringJoiner(",");
-        joiner.add(getClientName());
-        for (String s : headers.getOrDefault(USER_AGENT, Collections.emptyList())) {
-            joiner.add(s);
-        }
-        String userAgent = joiner.toString();
+        String dateHeader = formatDateHeader(System.currentTimeMillis());
         Request.Builder request =
                 new Request.Builder()
-                        .url(requestUri)
-                        .header(USER_AGENT, userAgent)
+                        .url(requestUrl)
+                        .header(USER_AGENT, getUserAgent())
                         .header(DATE, dateHeader);
 
         request = setTDAuthHeaders(request, dateHeader);
@@ -270,18 +456,9 @@ public class TDHttpClient
         }
 
         // Set API Key after setting the other headers
-        Optional<String> apiKey = Stream.of(apiKeyCache, config.apiKey)
-                .flatMap((opt) -> opt.map(Stream::of).orElseGet(Stream::empty))
-                .findFirst();
-        if (apiKey.isPresent()) {
-            String auth;
-            if (isNakedTD1Key(apiKey.get())) {
-                auth = "TD1 " + apiKey.get();
-            }
-            else {
-                auth = apiKey.get();
-            }
-            request = request.header(AUTHORIZATION, auth);
+        Optional<String> authorization = apiKeyCache.isPresent() ? Optional.of(resolveAuthorization(apiKeyCache.get())) : configAuthorization;
+        if (authorization.isPresent()) {
+            request = request.header(AUTHORIZATION, authorization.get());
         }
 
         // Submit method specific headers
@@ -323,6 +500,12 @@ public class TDHttpClient
                         throw new TDClientException(TDClientException.ErrorType.INVALID_INPUT, "Failed to get Content");
                     }
                 }
+                else if (apiRequest.getContentBuffer().isPresent()) {
+                    request = request.put(new ByteBufferRequestBody(mediaTypeOctetStream, apiRequest.getContentBuffer().get()));
+                }
+                else if (apiRequest.getFileChannel().isPresent()) {
+                    request = request.put(new FileChannelRequestBody(mediaTypeOctetStream, apiRequest.getFileChannel().get(), apiRequest.getFileChannelPosition(), apiRequest.getFileChannelLength()));
+                }
                 else if (queryStr.length() > 0) {
                     request = request.put(createRequestBodyWithoutCharset(mediaTypeXwwwFormUrlencoded, queryStr));
                 }
@@ -353,17 +536,195 @@ public class TDHttpClient
         return RequestBody.create(contentType, bytes);
     }
 
+    /**
+     * A request body writing the remaining bytes of a buffer directly into the sink. The buffer is duplicated
+     * for each write so that the body can be re-sent on retries.
+     */
+    private static class ByteBufferRequestBody
+            extends RequestBody
+    {
+        private final MediaType contentType;
+        private final ByteBuffer buffer;
+
+        ByteBufferRequestBody(MediaType contentType, ByteBuffer buffer)
+        {
+            this.contentType = contentType;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public MediaType contentType()
+        {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength()
+        {
+            return buffer.remaining();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink)
+                throws IOException
+        {
+            ByteBuffer src = buffer.duplicate();
+            while (src.hasRemaining()) {
+                sink.write(src);
+            }
+        }
+    }
+
+    /**
+     * A request body transferring a region of a file channel into the sink with positional reads.
+     */
+    private static class FileChannelRequestBody
+            extends RequestBody
+    {
+        private final MediaType contentType;
+        private final FileChannel channel;
+        private final long position;
+        private final long length;
+
+        FileChannelRequestBody(MediaType contentType, FileChannel channel, long position, long length)
+        {
+            this.contentType = contentType;
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public MediaType contentType()
+        {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength()
+        {
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink)
+                throws IOException
+        {
+            long written = 0;
+            while (written < length) {
+                long n = channel.transferTo(position + written, length - written, sink);
+                if (n <= 0) {
+                    throw new EOFException(String.format("File channel ended at %,d bytes while %,d bytes were expected", position + written, position + length));
+                }
+                written += n;
+            }
+        }
+    }
+
     private static boolean isNakedTD1Key(String s)
     {
         return NAKED_TD1_KEY_PATTERN.matcher(s).matches();
     }
 
+    private static String toAuthorization(String apiKey)
+    {
+        return isNakedTD1Key(apiKey) ? "TD1 " + apiKey : apiKey;
+    }
+
+    private static class ResolvedApiKey
+    {
+        private final String apiKey;
+        private final String authorization;
+
+        ResolvedApiKey(String apiKey)
+        {
+            this.apiKey = apiKey;
+            this.authorization = toAuthorization(apiKey);
+        }
+    }
+
+    private String resolveAuthorization(String apiKey)
+    {
+        // A client mostly uses a single API key (See TDClient.withApiKey), so remembering the last one is enough
+        ResolvedApiKey resolved = lastResolvedApiKey;
+        if (resolved == null || !resolved.apiKey.equals(apiKey)) {
+            resolved = new ResolvedApiKey(apiKey);
+            lastResolvedApiKey = resolved;
+        }
+        return resolved.authorization;
+    }
+
+    private HttpUrl.Builder newUrlBuilder(String path)
+    {
+        if (!path.startsWith("http")) {
+            if (baseUrl != null && path.startsWith("/")) {
+                // Append the path to the endpoint path, so that a path prefix of the endpoint (e.g., a gateway) is kept
+                int queryStart = path.indexOf('?');
+                String requestPath = queryStart < 0 ? path : path.substring(0, queryStart);
+                HttpUrl.Builder builder = baseUrl.newBuilder().encodedPath(basePath + requestPath);
+                if (queryStart >= 0) {
+                    builder.encodedQuery(path.substring(queryStart + 1));
+                }
+                return builder;
+            }
+            // Report the invalid endpoint or path
+            String portStr = config.port.map((input) -> ":" + input).orElse("");
+            path = String.format("%s://%s%s%s", config.useSSL ? "https" : "http", config.endpoint, portStr, path);
+        }
+        return HttpUrl.get(path).newBuilder();
+    }
+
+    private String getUserAgent()
+    {
+        String ua = userAgent;
+        if (ua == null) {
+            StringJoiner joiner = new StringJoiner(",");
+            joiner.add(getClientName());
+            for (String s : headers.getOrDefault(USER_AGENT, Collections.emptyList())) {
+                joiner.add(s);
+            }
+            ua = joiner.toString();
+            userAgent = ua;
+        }
+        return ua;
+    }
+
+    private static class CachedDateHeader
+    {
+        private final long epochSecond;
+        private final String value;
+
+        CachedDateHeader(long epochSecond, String value)
+        {
+            this.epochSecond = epochSecond;
+            this.value = value;
+        }
+    }
+
+    private static volatile CachedDateHeader cachedDateHeader;
+
+    /**
+     * Format the Date header value. The header has a resolution of seconds, so the formatted value is reused within the same second.
+     */
+    static String formatDateHeader(long currentTimeMillis)
+    {
+        long epochSecond = Math.floorDiv(currentTimeMillis, 1000L);
+        CachedDateHeader cached = cachedDateHeader;
+        if (cached == null || cached.epochSecond != epochSecond) {
+            cached = new CachedDateHeader(epochSecond, RFC2822_FORMAT.get().format(new Date(epochSecond * 1000L)));
+            cachedDateHeader = cached;
+        }
+        return cached.value;
+    }
+
     protected static class RequestContext
     {
         private final BackOff backoff;
         public final TDApiRequest apiRequest;
         public final Optional<String> apiKeyCache;
         public final Optional<TDClientException> rootCause;
+        public final TDRetryTimeline timeline;
+        private final int redirectCount;
 
         public RequestContext(TDClientConfig config, TDApiRequest apiRequest, Optional<String> apiKeyCache)
         {
@@ -371,26 +732,91 @@ public class TDHttpClient
         }
 
         public RequestContext(BackOff backoff, TDApiRequest apiRequest, Optional<String> apiKeyCache, Optional<TDClientException> rootCause)
+        {
+            this(backoff, apiRequest, apiKeyCache, rootCause, new TDRetryTimeline(), 0);
+        }
+
+        private RequestContext(BackOff backoff, TDApiRequest apiRequest, Optional<String> apiKeyCache, Optional<TDClientException> rootCause, TDRetryTimeline timeline, int redirectCount)
         {
             this.backoff = backoff;
             this.apiRequest = apiRequest;
             this.apiKeyCache = apiKeyCache;
             this.rootCause = rootCause;
+            this.timeline = timeline;
+            this.redirectCount = redirectCount;
         }
 
         public RequestContext withTDApiRequest(TDApiRequest newApiRequest)
         {
-            return new RequestContext(backoff, newApiRequest, apiKeyCache, rootCause);
+            return new RequestContext(backoff, newApiRequest, apiKeyCache, rootCause, timeline, redirectCount);
         }
 
         public RequestContext withRootCause(TDClientException e)
         {
-            return new RequestContext(backoff, apiRequest, apiKeyCache, Optional.of(e));
+            return new RequestContext(backoff, apiRequest, apiKeyCache, Optional.of(e), timeline, redirectCount);
+        }
+
+        RequestContext withRedirect(String location)
+        {
+            return new RequestContext(backoff, apiRequest.withUri(location), apiKeyCache, rootCause, timeline, redirectCount + 1);
         }
     }
 
-    protected <Result> Result submitRequest(RequestContext context, TDHttpRequestHandler<Result> handler)
-            throws TDClientException, InterruptedException
+    /**
+     * A request handler returning the response itself, so that the caller can stream a large body outside of the retry loop.
+     * The synchronous submitRequest leaves the returned response open, and the caller must close it.
+     */
+    interface ResponseStreamHandler
+            extends TDHttpRequestHandler<Response>
+    {
+        @Override
+        default Response onSuccess(Response response)
+        {
+            return response;
+        }
+    }
+
+    /**
+     * The outcome of a single attempt: either the final result, or the context for the next attempt.
+     */
+    private static class AttemptResult<Result>
+    {
+        private final boolean done;
+        private final Result result;
+        private final RequestContext nextContext;
+        private final boolean redirect;
+
+        private AttemptResult(boolean done, Result result, RequestContext nextContext, boolean redirect)
+        {
+            this.done = done;
+            this.result = result;
+            this.nextContext = nextContext;
+            this.redirect = redirect;
+        }
+
+        static <Result> AttemptResult<Result> success(Result result)
+        {
+            return new AttemptResult<>(true, result, null, false);
+        }
+
+        static <Result> AttemptResult<Result> retry(RequestContext nextContext)
+        {
+            return new AttemptResult<>(false, null, nextContext, false);
+        }
+
+        static <Result> AttemptResult<Result> redirect(RequestContext nextContext)
+        {
+            return new AttemptResult<>(false, null, nextContext, true);
+        }
+    }
+
+    /**
+     * Count up the execution and return the time to wait before the next attempt, which is 0 for the first attempt.
+     *
+     * @throws TDClientException the last seen error if the retry limit is exceeded
+     */
+    private long nextWaitTimeMillis(RequestContext context)
+            throws TDClientException
     {
         int executionCount = context.backoff.getExecutionCount();
         if (executionCount > config.retryLimit) {
@@ -404,59 +830,329 @@ public class TDHttpClient
                 throw new IllegalStateException("rootCause must be present here");
             }
         }
+        else if (executionCount == 0) {
+            // First attempt
+            context.backoff.incrementExecutionCount();
+            return 0;
+        }
         else {
-            if (executionCount == 0) {
-                // First attempt
-                context.backoff.incrementExecutionCount();
+            // Requst retry
+            long waitTimeMillis = calculateWaitTimeMillis(context.backoff.nextWaitTimeMillis(), context.rootCause);
+            logger.warn(String.format("Retrying request to %s (%d/%d) in %.2f sec.", context.apiRequest.getPath(), executionCount, config.retryLimit, waitTimeMillis / 1000.0));
+            return waitTimeMillis;
+        }
+    }
+
+    private static void logRequestFailure(RequestContext context, Throwable e)
+    {
+        // TDClientHttpException is already handled in TDRequestErrorHandler, so we need to show warning for the other types of error messages
+        if (!TDClientHttpException.class.isAssignableFrom(e.getClass())) {
+            logger.warn(String.format("API request to %s failed: %s, cause: %s", context.apiRequest.getPath(), e.getClass(), e.getCause() == null ? e.getMessage() : e.getCause().getClass()), e);
+        }
+    }
+
+    private static TDRetryTimeline.Attempt newAttempt(RequestContext context, long waitTimeMillis)
+    {
+        return context.timeline.newAttempt(context.backoff.getExecutionCount(), context.apiRequest.getMethod().name(), context.apiRequest.getPath(), waitTimeMillis);
+    }
+
+    private void startRequest(RequestContext context)
+    {
+        String pathTemplate = TDApiPathTemplate.normalize(context.apiRequest.getPath());
+        context.timeline.setPathTemplate(pathTemplate);
+        try {
+            metrics.requestStarted(context.apiRequest.getMethod().name(), pathTemplate);
+        }
+        catch (RuntimeException e) {
+            logger.warn("Failed to record metrics", e);
+        }
+    }
+
+    private void finishAttempt(RequestContext context, TDRetryTimeline.Attempt attempt)
+    {
+        attempt.finish();
+        if (metrics != null && context.timeline.getPathTemplate() != null) {
+            try {
+                metrics.attemptFinished(context.timeline.getPathTemplate(), attempt);
             }
-            else {
-                // Requst retry
-                long waitTimeMillis = calculateWaitTimeMillis(context.backoff.nextWaitTimeMillis(), context.rootCause);
-                logger.warn(String.format("Retrying request to %s (%d/%d) in %.2f sec.", context.apiRequest.getPath(), executionCount, config.retryLimit, waitTimeMillis / 1000.0));
+            catch (RuntimeException e) {
+                logger.warn("Failed to record metrics", e);
+            }
+        }
+    }
+
+    private void finishRequest(RequestContext context, Object requestEvent, Throwable error)
+    {
+        flightRecorder.endApiRequest(requestEvent, context.apiRequest, context.timeline, error);
+        if (metrics == null) {
+            return;
+        }
+        try {
+            metrics.requestFinished(context.timeline.getPathTemplate(), context.timeline, context.timeline.getElapsedNanos(), Optional.ofNullable(error));
+        }
+        catch (RuntimeException e) {
+            logger.warn("Failed to record metrics", e);
+        }
+    }
+
+    private static void finishRetryWait(RequestContext context, Object retryEvent)
+    {
+        flightRecorder.endRetry(retryEvent, context.apiRequest.getPath(), context.backoff.getExecutionCount(), context.rootCause.orElse(null));
+    }
+
+    private Request tagCallTimings(Request request, TDRetryTimeline.Attempt attempt)
+    {
+        if (metrics == null) {
+            return request;
+        }
+        TDCallTimings callTimings = new TDCallTimings();
+        attempt.setCallTimings(callTimings);
+        return request.newBuilder().tag(TDCallTimings.class, callTimings).build();
+    }
+
+    /**
+     * Wrap the response body to count the bytes read by the request handler
+     */
+    private static Response countResponseBytes(Response response, TDRetryTimeline.Attempt attempt)
+    {
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        attempt.setResponseBytes(0);
+        ForwardingSource countingSource = new ForwardingSource(body.source())
+        {
+            private long totalBytes;
+
+            @Override
+            public long read(Buffer sink, long byteCount)
+                    throws IOException
+            {
+                long bytes = super.read(sink, byteCount);
+                if (bytes > 0) {
+                    totalBytes += bytes;
+                    attempt.setResponseBytes(totalBytes);
+                }
+                return bytes;
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(countingSource)))
+                .build();
+    }
+
+    private <Result> AttemptResult<Result> handleResponse(RequestContext context, TDHttpRequestHandler<Result> handler, Response originalResponse, TDRetryTimeline.Attempt attempt)
+            throws Exception
+    {
+        Response response = metrics != null ? countResponseBytes(originalResponse, attempt) : originalResponse;
+        int code = response.code();
+        attempt.setStatusCode(code);
+        if (rateLimiter != null) {
+            rateLimiter.onResponse(response.request().url(), code, TDRequestErrorHandler.parseRetryAfter(System.currentTimeMillis(), response));
+        }
+        // Retry upon proxy authentication request
+        // This is a workaround for this issue: https://github.com/square/okhttp/issues/3111
+        if ((code == HttpStatus.TEMPORARY_REDIRECT_307 || code == 308) && context.redirectCount < MAX_REDIRECTS) {
+            String location = response.header(LOCATION);
+            if (location != null) {
+                // Following a redirect does not consume the retry budget
+                return AttemptResult.redirect(context.withRedirect(location));
+            }
+        }
+
+        ResponseContext responseContext = new ResponseContext(context.apiRequest, response);
+        if (handler.isSuccess(responseContext)) {
+            // 2xx success
+            logger.debug(String.format("[%d:%s] API request to %s has succeeded", code, HttpStatus.getMessage(code), context.apiRequest.getPath()));
+            return AttemptResult.success(handler.onSuccess(response));
+        }
+        else {
+            // This may directly throw an TDClientException if we know this is unrecoverable error.
+            return AttemptResult.retry(context.withRootCause(handler.resolveHttpResponseError(responseContext)));
+        }
+    }
+
+    private <Result> AttemptResult<Result> handleError(RequestContext context, TDHttpRequestHandler<Result> handler, Throwable e, TDRetryTimeline.Attempt attempt)
+            throws TDClientException
+    {
+        attempt.setError(e);
+        logRequestFailure(context, e);
+        // This may throw TDClientException if the error is not recoverable
+        return AttemptResult.retry(context.withRootCause(handler.resolveError(e)));
+    }
+
+    protected <Result> Result submitRequest(RequestContext context, TDHttpRequestHandler<Result> handler)
+            throws TDClientException, InterruptedException
+    {
+        boolean followingRedirect = false;
+        while (true) {
+            long waitTimeMillis = followingRedirect ? 0 : nextWaitTimeMillis(context);
+            if (waitTimeMillis > 0) {
                 // Sleeping for a while. This may throw InterruptedException
+                Object retryEvent = flightRecorder.beginRetry();
                 Thread.sleep(waitTimeMillis);
+                finishRetryWait(context, retryEvent);
             }
+            TDRetryTimeline.Attempt attempt = newAttempt(context, waitTimeMillis);
 
+            AttemptResult<Result> attemptResult;
             try {
                 // Prepare http request
                 Request request = prepareRequest(context.apiRequest, context.apiKeyCache);
                 // Apply request customization
-                request = handler.prepareRequest(request);
+                request = tagCallTimings(handler.prepareRequest(request), attempt);
+                long throttleMillis = reserveRateLimit(request);
+                if (throttleMillis > 0) {
+                    Thread.sleep(throttleMillis);
+                }
 
                 // Get response
-                try (Response response = handler.send(httpClient, request)) {
-                    int code = response.code();
-                    // Retry upon proxy authentication request
-                    // This is a workaround for this issue: https://github.com/square/okhttp/issues/3111
-                    if (code == HttpStatus.TEMPORARY_REDIRECT_307 || code == 308) {
-                        String location = response.header(LOCATION);
-                        if (location != null) {
-                            context = context.withTDApiRequest(context.apiRequest.withUri(location));
-                            return submitRequest(context, handler);
-                        }
-                    }
-
-                    ResponseContext responseContext = new ResponseContext(context.apiRequest, response);
-                    if (handler.isSuccess(responseContext)) {
-                        // 2xx success
-                        logger.debug(String.format("[%d:%s] API request to %s has succeeded", code, HttpStatus.getMessage(code), context.apiRequest.getPath()));
-                        return handler.onSuccess(response);
-                    }
-                    else {
-                        // This may directly throw an TDClientException if we know this is unrecoverable error.
-                        context = context.withRootCause(handler.resolveHttpResponseError(responseContext));
+                Response response = handler.send(httpClient, request);
+                boolean keepOpen = false;
+                try {
+                    attemptResult = handleResponse(context, handler, response, attempt);
+                    // The caller of a ResponseStreamHandler reads the body after the request
+                    keepOpen = attemptResult.done && handler instanceof ResponseStreamHandler;
+                }
+                finally {
+                    if (!keepOpen) {
+                        response.close();
                     }
                 }
             }
+            catch (InterruptedException e) {
+                // Interrupted while waiting for the rate limiter
+                throw e;
+            }
             catch (Exception e) {
-                // TDClientHttpException is already handled in TDRequestErrorHandler, so we need to show warning for the other types of error messages
-                if (!TDClientHttpException.class.isAssignableFrom(e.getClass())) {
-                    logger.warn(String.format("API request to %s failed: %s, cause: %s", context.apiRequest.getPath(), e.getClass(), e.getCause() == null ? e.getMessage() : e.getCause().getClass()), e);
+                attemptResult = handleError(context, handler, e, attempt);
+            }
+            finally {
+                finishAttempt(context, attempt);
+            }
+
+            if (attemptResult.done) {
+                return attemptResult.result;
+            }
+            context = attemptResult.nextContext;
+            followingRedirect = attemptResult.redirect;
+        }
+    }
+
+    private <Result> void submitRequestAsync(RequestContext context, TDHttpRequestHandler<Result> handler, CompletableFuture<Result> future, boolean followingRedirect)
+    {
+        if (future.isDone()) {
+            // Cancelled by the caller
+            return;
+        }
+        try {
+            long waitTimeMillis = followingRedirect ? 0 : nextWaitTimeMillis(context);
+            if (waitTimeMillis > 0) {
+                // Hand the wait over to the timer instead of sleeping
+                Object retryEvent = flightRecorder.beginRetry();
+                retryScheduler.schedule(() -> {
+                    finishRetryWait(context, retryEvent);
+                    sendAsync(context, handler, future, waitTimeMillis);
+                }, waitTimeMillis);
+            }
+            else {
+                sendAsync(context, handler, future, waitTimeMillis);
+            }
+        }
+        catch (Exception e) {
+            completeExceptionally(future, e);
+        }
+    }
+
+    private <Result> void sendAsync(RequestContext context, TDHttpRequestHandler<Result> handler, CompletableFuture<Result> future, long waitTimeMillis)
+    {
+        TDRetryTimeline.Attempt attempt = newAttempt(context, waitTimeMillis);
+        Request request;
+        try {
+            request = tagCallTimings(handler.prepareRequest(prepareRequest(context.apiRequest, context.apiKeyCache)), attempt);
+        }
+        catch (Exception e) {
+            continueAsync(context, handler, future, null, e, attempt);
+            return;
+        }
+        long throttleMillis = reserveRateLimit(request);
+        if (throttleMillis > 0) {
+            retryScheduler.schedule(() -> sendAsync(context, handler, future, request, attempt), throttleMillis);
+        }
+        else {
+            sendAsync(context, handler, future, request, attempt);
+        }
+    }
+
+    private <Result> void sendAsync(RequestContext context, TDHttpRequestHandler<Result> handler, CompletableFuture<Result> future, Request request, TDRetryTimeline.Attempt attempt)
+    {
+        if (future.isDone()) {
+            // Cancelled by the caller while waiting for the rate limiter
+            return;
+        }
+        CompletableFuture<Response> responseFuture;
+        try {
+            responseFuture = handler.sendAsync(httpClient, request);
+        }
+        catch (Exception e) {
+            continueAsync(context, handler, future, null, e, attempt);
+            return;
+        }
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                responseFuture.cancel(false);
+            }
+        });
+        responseFuture.whenComplete((response, error) -> continueAsync(context, handler, future, response, error, attempt));
+    }
+
+    private <Result> void continueAsync(RequestContext context, TDHttpRequestHandler<Result> handler, CompletableFuture<Result> future, Response response, Throwable error, TDRetryTimeline.Attempt attempt)
+    {
+        AttemptResult<Result> attemptResult = null;
+        Exception failure = null;
+        try {
+            if (error != null) {
+                attemptResult = handleError(context, handler, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error, attempt);
+            }
+            else {
+                try (Response r = response) {
+                    attemptResult = handleResponse(context, handler, r, attempt);
+                }
+                catch (Exception e) {
+                    attemptResult = handleError(context, handler, e, attempt);
                 }
-                // This may throw TDClientException if the error is not recoverable
-                context = context.withRootCause(handler.resolveError(e));
             }
-            return submitRequest(context, handler);
+        }
+        catch (Exception e) {
+            failure = e;
+        }
+        // Report the attempt before completing the future so that listeners see the attempts in order
+        finishAttempt(context, attempt);
+        if (failure != null) {
+            completeExceptionally(future, failure);
+            return;
+        }
+
+        if (attemptResult.done) {
+            future.complete(attemptResult.result);
+        }
+        else {
+            submitRequestAsync(attemptResult.nextContext, handler, future, attemptResult.redirect);
+        }
+    }
+
+    private long reserveRateLimit(Request request)
+    {
+        return rateLimiter == null ? 0 : rateLimiter.reserve(request.url());
+    }
+
+    private static void completeExceptionally(CompletableFuture<?> future, Exception e)
+    {
+        if (e instanceof TDClientException) {
+            future.completeExceptionally(e);
+        }
+        else {
+            future.completeExceptionally(new TDClientException(INVALID_JSON_RESPONSE, e));
         }
     }
 
@@ -493,6 +1189,27 @@ public class TDHttpClient
             throws TDClientException
     {
         RequestContext requestContext = new RequestContext(config, apiRequest, apiKeyCache);
+        Object requestEvent = flightRecorder.beginApiRequest();
+        if (metrics == null && requestEvent == null) {
+            return executeRequest(requestContext, handler);
+        }
+        if (metrics != null) {
+            startRequest(requestContext);
+        }
+        try {
+            Result result = executeRequest(requestContext, handler);
+            finishRequest(requestContext, requestEvent, null);
+            return result;
+        }
+        catch (RuntimeException | Error e) {
+            finishRequest(requestContext, requestEvent, e);
+            throw e;
+        }
+    }
+
+    private <Result> Result executeRequest(RequestContext requestContext, TDHttpRequestHandler<Result> handler)
+            throws TDClientException
+    {
         try {
             return submitRequest(requestContext, handler);
         }
@@ -508,6 +1225,31 @@ public class TDHttpClient
         }
     }
 
+    /**
+     * A low-level method to submit a TD API request without blocking the calling thread.
+     * The request is sent with OkHttp's asynchronous call, and retries are scheduled on a timer instead of sleeping.
+     *
+     * @param apiRequest
+     * @param apiKeyCache
+     * @param handler
+     * @param <Result>
+     * @return a future completed with the result, or with a TDClientException
+     */
+    public <Result> CompletableFuture<Result> submitRequestAsync(TDApiRequest apiRequest, Optional<String> apiKeyCache, TDHttpRequestHandler<Result> handler)
+    {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        RequestContext requestContext = new RequestContext(config, apiRequest, apiKeyCache);
+        Object requestEvent = flightRecorder.beginApiRequest();
+        if (metrics != null) {
+            startRequest(requestContext);
+        }
+        if (metrics != null || requestEvent != null) {
+            future.whenComplete((result, error) -> finishRequest(requestContext, requestEvent, error));
+        }
+        submitRequestAsync(requestContext, handler, future, false);
+        return future;
+    }
+
     /**
      * Submit an API request and get the result as String value (e.g. json)
      *
@@ -598,28 +1340,357 @@ public class TDHttpClient
     public <Result> Result call(TDApiRequest apiRequest, Optional<String> apiKeyCache, final JavaType resultType)
             throws TDClientException
     {
-        try {
-            byte[] content = submitRequest(apiRequest, apiKeyCache, byteArrayContentHandler);
-            if (logger.isTraceEnabled()) {
-                logger.trace("response:\n{}", new String(content, StandardCharsets.UTF_8));
+        if (!isCoalescable(apiRequest)) {
+            return submitRequest(apiRequest, apiKeyCache, newJsonContentHandler(resultType));
+        }
+
+        CoalescingKey key = new CoalescingKey(apiRequest, apiKeyCache, headers, resultType);
+        while (true) {
+            CompletableFuture<Object> inflight = new CompletableFuture<>();
+            CompletableFuture<Object> shared = inflightRequests.putIfAbsent(key, inflight);
+            if (shared == null) {
+                return callAsLeader(apiRequest, apiKeyCache, resultType, key, inflight);
             }
-            if (resultType.getRawClass() == String.class) {
-                return (Result) new String(content, StandardCharsets.UTF_8);
+            Object result = awaitSharedResult(shared);
+            if (result != INTERRUPTED_LEADER) {
+                return (Result) result;
+            }
+            // The interrupt was for the leader thread only. Send the request again, or join another caller's request
+        }
+    }
+
+    private <Result> Result callAsLeader(TDApiRequest apiRequest, Optional<String> apiKeyCache, JavaType resultType, CoalescingKey key, CompletableFuture<Object> inflight)
+    {
+        try {
+            Result result = submitRequest(apiRequest, apiKeyCache, newJsonContentHandler(resultType));
+            // Remove the entry first so that subsequent calls will send a new request
+            inflightRequests.remove(key, inflight);
+            inflight.complete(result);
+            return result;
+        }
+        catch (RuntimeException | Error e) {
+            inflightRequests.remove(key, inflight);
+            if (isInterrupted(e)) {
+                // Do not pass the interrupt of this thread to the callers waiting for the result
+                inflight.complete(INTERRUPTED_LEADER);
             }
             else {
-                return getJsonReader(resultType).readValue(content);
+                inflight.completeExceptionally(e);
             }
+            throw e;
+        }
+    }
+
+    /**
+     * Return true if the failure of a request sent by the current thread is caused by an interrupt of the thread
+     */
+    static boolean isInterrupted(Throwable e)
+    {
+        // An interrupt while sleeping is reported as TDClientInterruptedException, and one during I/O leaves the interrupt flag set
+        return (e instanceof TDClientInterruptedException && e.getCause() instanceof InterruptedException) || Thread.currentThread().isInterrupted();
+    }
+
+    private boolean isCoalescable(TDApiRequest apiRequest)
+    {
+        return inflightRequests != null && apiRequest.getMethod() == TDHttpMethod.GET;
+    }
+
+    private static Object awaitSharedResult(CompletableFuture<Object> shared)
+    {
+        try {
+            return shared.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TDClientInterruptedException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TDClientException(INVALID_JSON_RESPONSE, (Exception) cause);
+        }
+    }
+
+    /**
+     * Identifies GET requests that return the same response: the same endpoint path, query parameters,
+     * headers and API key. The result type is also included because the response is shared as a bound object.
+     */
+    private static class CoalescingKey
+    {
+        private final String path;
+        private final Map<String, String> queryParams;
+        private final Map<String, Collection<String>> requestHeaders;
+        private final Map<String, Collection<String>> clientHeaders;
+        private final Optional<Boolean> followRedirects;
+        private final Optional<String> apiKeyCache;
+        private final JavaType resultType;
+
+        CoalescingKey(TDApiRequest apiRequest, Optional<String> apiKeyCache, Map<String, Collection<String>> clientHeaders, JavaType resultType)
+        {
+            this.path = apiRequest.getPath();
+            this.queryParams = apiRequest.getQueryParams();
+            this.requestHeaders = apiRequest.getAllHeaders();
+            this.clientHeaders = clientHeaders;
+            this.followRedirects = apiRequest.getFollowRedirects();
+            this.apiKeyCache = apiKeyCache;
+            this.resultType = resultType;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CoalescingKey that = (CoalescingKey) o;
+            return path.equals(that.path) &&
+                    queryParams.equals(that.queryParams) &&
+                    requestHeaders.equals(that.requestHeaders) &&
+                    clientHeaders.equals(that.clientHeaders) &&
+                    followRedirects.equals(that.followRedirects) &&
+                    apiKeyCache.equals(that.apiKeyCache) &&
+                    resultType.equals(that.resultType);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(path, queryParams, requestHeaders, clientHeaders, followRedirects, apiKeyCache, resultType);
+        }
+    }
+
+    /**
+     * Create a handler that binds the response JSON while reading the body stream, so that large responses
+     * (e.g., /v3/job/list) are not copied into an intermediate byte array.
+     */
+    @SuppressWarnings(value = "unchecked")
+    private <Result> TDHttpRequestHandler<Result> newJsonContentHandler(final JavaType resultType)
+    {
+        return response -> {
+            try (ResponseBody body = response.body()) {
+                if (resultType.getRawClass() == String.class) {
+                    String content = body.string();
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("response:\n{}", content);
+                    }
+                    return (Result) content;
+                }
+                return readJsonResponse(body.byteStream(), resultType);
+            }
+        };
+    }
+
+    private <Result> Result readJsonResponse(InputStream content, JavaType resultType)
+            throws IOException
+    {
+        TraceInputStream trace = logger.isTraceEnabled() ? new TraceInputStream(content, MAX_TRACE_LOG_BYTES) : null;
+        try {
+            return getJsonReader(resultType).readValue(trace != null ? trace : content);
         }
         catch (JsonMappingException e) {
+            if (e.getCause() instanceof IOException && !(e.getCause() instanceof JsonProcessingException)) {
+                // Jackson wraps I/O errors raised while reading the body stream. Leave them to the retry handler
+                throw (IOException) e.getCause();
+            }
             logger.error("Jackson mapping error", e);
             throw new TDClientException(INVALID_JSON_RESPONSE, e);
         }
-        catch (IOException e) {
+        catch (JsonProcessingException e) {
             throw new TDClientException(INVALID_JSON_RESPONSE, e);
         }
+        finally {
+            if (trace != null) {
+                logger.trace("response:\n{}", trace.getTracedContent());
+            }
+        }
+    }
+
+    /**
+     * An InputStream that keeps a copy of the first bytes read from the underlying stream for trace logging
+     */
+    private static class TraceInputStream
+            extends FilterInputStream
+    {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final int limit;
+        private long totalBytes;
+
+        TraceInputStream(InputStream in, int limit)
+        {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            int b = super.read();
+            if (b != -1) {
+                if (buffer.size() < limit) {
+                    buffer.write(b);
+                }
+                totalBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+                throws IOException
+        {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                buffer.write(b, off, Math.min(n, limit - buffer.size()));
+                totalBytes += n;
+            }
+            return n;
+        }
+
+        String getTracedContent()
+        {
+            String content = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+            if (totalBytes > buffer.size()) {
+                return content + String.format("... (%,d bytes in total)", totalBytes);
+            }
+            return content;
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #call(TDApiRequest, Optional)}.
+     *
+     * @param apiRequest
+     * @param apiKeyCache
+     * @return
+     */
+    public CompletableFuture<String> callAsync(TDApiRequest apiRequest, Optional<String> apiKeyCache)
+    {
+        CompletableFuture<String> future = submitRequestAsync(apiRequest, apiKeyCache, stringContentHandler);
+        if (logger.isTraceEnabled()) {
+            future.thenAccept(content -> logger.trace("response:\n{}", content));
+        }
+        // Return the request future itself so that cancelling it cancels the request
+        return future;
+    }
+
+    /**
+     * Asynchronous version of {@link #call(TDApiRequest, Optional, Function)}. The content stream handler
+     * is called from the http client's dispatcher thread.
+     *
+     * @param apiRequest
+     * @param apiKeyCache
+     * @param contentStreamHandler
+     * @param <Result>
+     * @return
+     */
+    public <Result> CompletableFuture<Result> callAsync(TDApiRequest apiRequest, Optional<String> apiKeyCache, final Function<InputStream, Result> contentStreamHandler)
+    {
+        return submitRequestAsync(apiRequest, apiKeyCache, newByteStreamHandler(contentStreamHandler));
+    }
+
+    /**
+     * Asynchronous version of {@link #call(TDApiRequest, Optional, Class)}.
+     *
+     * @param apiRequest
+     * @param apiKeyCache
+     * @param resultType
+     * @param <Result>
+     * @return
+     */
+    public <Result> CompletableFuture<Result> callAsync(TDApiRequest apiRequest, Optional<String> apiKeyCache, final Class<Result> resultType)
+    {
+        return callAsync(apiRequest, apiKeyCache, objectMapper.getTypeFactory().constructType(resultType));
+    }
+
+    /**
+     * Asynchronous version of {@link #call(TDApiRequest, Optional, TypeReference)}.
+     *
+     * @param apiRequest
+     * @param apiKeyCache
+     * @param resultType
+     * @param <Result>
+     * @return
+     */
+    public <Result> CompletableFuture<Result> callAsync(TDApiRequest apiRequest, Optional<String> apiKeyCache, final TypeReference<Result> resultType)
+    {
+        return callAsync(apiRequest, apiKeyCache, objectMapper.getTypeFactory().constructType(resultType));
+    }
+
+    /**
+     * Asynchronous version of {@link #call(TDApiRequest, Optional, JavaType)}.
+     *
+     * @param apiRequest
+     * @param apiKeyCache
+     * @param resultType
+     * @param <Result>
+     * @return
+     */
+    @SuppressWarnings(value = "unchecked")
+    public <Result> CompletableFuture<Result> callAsync(TDApiRequest apiRequest, Optional<String> apiKeyCache, final JavaType resultType)
+    {
+        if (!isCoalescable(apiRequest)) {
+            return submitRequestAsync(apiRequest, apiKeyCache, newJsonContentHandler(resultType));
+        }
+
+        CoalescingKey key = new CoalescingKey(apiRequest, apiKeyCache, headers, resultType);
+        CompletableFuture<Object> inflight = new CompletableFuture<>();
+        CompletableFuture<Object> shared = inflightRequests.putIfAbsent(key, inflight);
+        if (shared == null) {
+            shared = inflight;
+            submitRequestAsync(apiRequest, apiKeyCache, newJsonContentHandler(resultType)).whenComplete((result, error) -> {
+                inflightRequests.remove(key, inflight);
+                if (error != null) {
+                    inflight.completeExceptionally(error);
+                }
+                else {
+                    inflight.complete(result);
+                }
+            });
+        }
+        // Give each caller its own future so that cancelling it does not affect the other callers
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        shared.whenComplete((result, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            }
+            else if (result == INTERRUPTED_LEADER) {
+                // The synchronous caller sending the request was interrupted. Send the request again
+                this.<Result>callAsync(apiRequest, apiKeyCache, resultType).whenComplete((retryResult, retryError) -> {
+                    if (retryError != null) {
+                        future.completeExceptionally(retryError);
+                    }
+                    else {
+                        future.complete(retryResult);
+                    }
+                });
+            }
+            else {
+                future.complete((Result) result);
+            }
+        });
+        return future;
+    }
+
+    ObjectReader getJsonReader(final JavaType type)
+    {
+        // Look up first because computeIfAbsent of JDK8 takes a lock even if the key is present
+        ObjectReader reader = jsonReaderCache.get(type);
+        if (reader == null) {
+            reader = jsonReaderCache.computeIfAbsent(type, t -> newJsonReader(objectMapper, t));
+        }
+        return reader;
     }
 
-    private ObjectReader getJsonReader(final JavaType type)
+    static ObjectReader newJsonReader(ObjectMapper objectMapper, JavaType type)
     {
         ObjectReader reader = objectMapper.readerFor(type);
         if (type.getContentType() != null) {
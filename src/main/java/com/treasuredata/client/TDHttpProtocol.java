@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * HTTP protocols used for API requests.
+ * <p>
+ * With HTTP/2, concurrent requests to the endpoint are multiplexed over a single connection, so the number of
+ * concurrent requests is limited by the dispatcher (maxRequestsPerHost) rather than the connection pool size.
+ */
+public enum TDHttpProtocol
+{
+    /**
+     * Use HTTP/2 if the server supports it through TLS ALPN, otherwise HTTP/1.1. This is the default.
+     */
+    HTTP_2("http2", Protocol.HTTP_2, Protocol.HTTP_1_1),
+    /**
+     * Use HTTP/1.1 only. Each concurrent request needs its own connection.
+     */
+    HTTP_1_1("http1.1", Protocol.HTTP_1_1),
+    /**
+     * Use HTTP/2 over cleartext without the protocol negotiation (h2c with prior knowledge). This requires useSSL = false,
+     * and is mainly for local test servers.
+     */
+    H2C("h2c", Protocol.H2_PRIOR_KNOWLEDGE);
+
+    private final String value;
+    private final List<Protocol> protocols;
+
+    TDHttpProtocol(String value, Protocol... protocols)
+    {
+        this.value = value;
+        this.protocols = Collections.unmodifiableList(Arrays.asList(protocols));
+    }
+
+    /**
+     * The name used in the td.client.protocol property
+     */
+    public String getValue()
+    {
+        return value;
+    }
+
+    List<Protocol> getProtocols()
+    {
+        return protocols;
+    }
+
+    public static TDHttpProtocol fromValue(String value)
+    {
+        for (TDHttpProtocol protocol : values()) {
+            if (protocol.value.equalsIgnoreCase(value)) {
+                return protocol;
+            }
+        }
+        throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, String.format("Unknown HTTP protocol: %s. Use one of http2, http1.1 or h2c", value));
+    }
+}
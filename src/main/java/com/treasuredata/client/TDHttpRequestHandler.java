@@ -1,10 +1,13 @@
 package com.treasuredata.client;
 
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import static com.treasuredata.client.TDClientException.ErrorType.INVALID_JSON_RESPONSE;
 import static com.treasuredata.client.TDRequestErrorHandler.defaultErrorResolver;
@@ -56,6 +59,39 @@ public interface TDHttpRequestHandler<Result>
         return httpClient.newCall(request).execute();
     }
 
+    /**
+     * Send the request through the given client without blocking the calling thread.
+     * The returned future is completed from OkHttp's dispatcher thread. Cancelling it cancels the underlying call.
+     */
+    default CompletableFuture<Response> sendAsync(OkHttpClient httpClient, Request request)
+    {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Call call = httpClient.newCall(request);
+        call.enqueue(new Callback()
+        {
+            @Override
+            public void onFailure(Call call, IOException e)
+            {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response)
+            {
+                if (!future.complete(response)) {
+                    // Already cancelled
+                    response.close();
+                }
+            }
+        });
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
     /**
      * Handle the response
      * @throws Exception
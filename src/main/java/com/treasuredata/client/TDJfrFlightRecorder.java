@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDJob;
+
+import java.util.List;
+
+/**
+ * {@link TDFlightRecorder} for the JVMs supporting JFR. Loaded only through reflection.
+ */
+class TDJfrFlightRecorder
+        extends TDFlightRecorder
+{
+    @Override
+    Object beginApiRequest()
+    {
+        TDApiRequestEvent event = new TDApiRequestEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endApiRequest(Object e, TDApiRequest apiRequest, TDRetryTimeline timeline, Throwable error)
+    {
+        if (e == null) {
+            return;
+        }
+        TDApiRequestEvent event = (TDApiRequestEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            List<TDRetryTimeline.Attempt> attempts = timeline.getAttempts();
+            event.method = apiRequest.getMethod().name();
+            event.path = apiRequest.getPath();
+            event.pathTemplate = TDApiPathTemplate.normalize(apiRequest.getPath());
+            event.attempts = attempts.size();
+            event.statusCode = attempts.isEmpty() ? -1 : attempts.get(attempts.size() - 1).getStatusCode().orElse(-1);
+            event.error = describe(error);
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginRetry()
+    {
+        TDRetryEvent event = new TDRetryEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endRetry(Object e, String path, int attempt, Throwable cause)
+    {
+        if (e == null) {
+            return;
+        }
+        TDRetryEvent event = (TDRetryEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.attempt = attempt;
+            event.cause = describe(cause);
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginJobPoll()
+    {
+        TDJobPollEvent event = new TDJobPollEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endJobPoll(Object e, String jobId, TDJob.Status status, Throwable error)
+    {
+        if (e == null) {
+            return;
+        }
+        TDJobPollEvent event = (TDJobPollEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.jobId = jobId;
+            event.status = status == null ? null : status.name();
+            event.error = describe(error);
+            event.commit();
+        }
+    }
+
+    private static String describe(Throwable error)
+    {
+        return error == null ? null : error.getClass().getName() + ": " + error.getMessage();
+    }
+}
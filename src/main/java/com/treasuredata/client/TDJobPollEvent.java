@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event of a job status or job info lookup
+ */
+@Name("com.treasuredata.client.JobPoll")
+@Label("TD Job Poll")
+@Category({"Treasure Data", "TD Client"})
+@Description("A lookup of the status of a TD job")
+class TDJobPollEvent
+        extends jdk.jfr.Event
+{
+    @Label("Job ID")
+    String jobId;
+
+    @Label("Job Status")
+    String status;
+
+    @Label("Error")
+    String error;
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+/**
+ * The polling schedule of {@link TDClient#waitForJob} and {@link TDAsyncClient#waitForJob}.
+ * <p>
+ * Polling starts at the initial interval and is multiplied by the multiplier after each poll, up to the max interval.
+ * The interval is also capped by (job duration) * (duration ratio), so that the latency to notice the completion
+ * stays small relative to the job's running time. A short query is polled quickly while a long-running one is polled less often.
+ */
+public class TDJobPollingConfig
+{
+    private final long initialIntervalMillis;
+    private final long maxIntervalMillis;
+    private final double multiplier;
+    private final double durationRatio;
+
+    public TDJobPollingConfig(long initialIntervalMillis, long maxIntervalMillis, double multiplier, double durationRatio)
+    {
+        if (!(initialIntervalMillis > 0) || initialIntervalMillis > maxIntervalMillis) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION,
+                    String.format("job polling interval must satisfy 0 < initial <= max: initial=%s, max=%s", initialIntervalMillis, maxIntervalMillis));
+        }
+        if (!(multiplier >= 1)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "multiplier of job polling must be 1 or larger: " + multiplier);
+        }
+        if (!(durationRatio > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "durationRatio of job polling must be positive: " + durationRatio);
+        }
+        this.initialIntervalMillis = initialIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.multiplier = multiplier;
+        this.durationRatio = durationRatio;
+    }
+
+    public long getInitialIntervalMillis()
+    {
+        return initialIntervalMillis;
+    }
+
+    public long getMaxIntervalMillis()
+    {
+        return maxIntervalMillis;
+    }
+
+    public double getMultiplier()
+    {
+        return multiplier;
+    }
+
+    /**
+     * The polling interval is capped by the job duration multiplied by this ratio
+     */
+    public double getDurationRatio()
+    {
+        return durationRatio;
+    }
+
+    /**
+     * Compute the wait before the next poll
+     *
+     * @param pollCount the number of polls made so far
+     * @param jobDurationSeconds the duration of the job reported by the last poll
+     */
+    long nextIntervalMillis(int pollCount, long jobDurationSeconds)
+    {
+        double interval = Math.min(maxIntervalMillis, initialIntervalMillis * Math.pow(multiplier, Math.max(pollCount - 1, 0)));
+        double durationCap = Math.max(initialIntervalMillis, jobDurationSeconds * 1000 * durationRatio);
+        return (long) Math.min(interval, durationCap);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TDJobPollingConfig{" +
+                "initialIntervalMillis=" + initialIntervalMillis +
+                ", maxIntervalMillis=" + maxIntervalMillis +
+                ", multiplier=" + multiplier +
+                ", durationRatio=" + durationRatio +
+                '}';
+    }
+
+    public static class TDJobPollingConfigBuilder
+    {
+        private long initialIntervalMillis = 500;
+        private long maxIntervalMillis = 30000;
+        private double multiplier = 1.5;
+        private double durationRatio = 0.1;
+
+        public TDJobPollingConfigBuilder()
+        {
+        }
+
+        public TDJobPollingConfigBuilder setInitialIntervalMillis(long initialIntervalMillis)
+        {
+            this.initialIntervalMillis = initialIntervalMillis;
+            return this;
+        }
+
+        public TDJobPollingConfigBuilder setMaxIntervalMillis(long maxIntervalMillis)
+        {
+            this.maxIntervalMillis = maxIntervalMillis;
+            return this;
+        }
+
+        public TDJobPollingConfigBuilder setMultiplier(double multiplier)
+        {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        public TDJobPollingConfigBuilder setDurationRatio(double durationRatio)
+        {
+            this.durationRatio = durationRatio;
+            return this;
+        }
+
+        public TDJobPollingConfig createTDJobPollingConfig()
+        {
+            return new TDJobPollingConfig(initialIntervalMillis, maxIntervalMillis, multiplier, durationRatio);
+        }
+    }
+}
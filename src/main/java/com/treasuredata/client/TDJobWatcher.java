@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.treasuredata.client.model.TDJob;
+import com.treasuredata.client.model.TDJobSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Watches many jobs with a single polling loop, and completes a future for each job when it finishes.
+ * <p>
+ * Instead of polling the status of each job, the watcher reads the recent jobs with {@link TDClient#listJobs(long, long)},
+ * so the number of API calls depends on the polling interval rather than the number of watched jobs.
+ * See {@link TDJobWatcherConfig} for the polling schedule.
+ * </p>
+ * <pre>
+ * try (TDJobWatcher watcher = new TDJobWatcher(client)) {
+ *     CompletableFuture&lt;TDJobSummary&gt; future = watcher.watch(jobId);
+ *     ...
+ * }
+ * </pre>
+ */
+public class TDJobWatcher
+        implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(TDJobWatcher.class);
+
+    private final TDClient client;
+    private final TDJobWatcherConfig config;
+    private final ScheduledExecutorService executor;
+    private final boolean isSharedExecutor;
+    private final ScheduledFuture<?> pollingTask;
+    private final ConcurrentMap<String, CompletableFuture<TDJobSummary>> watchedJobs = new ConcurrentHashMap<>();
+    // The sequence number of the last jobStatus call for each job, used for checking the jobs not found by listJobs in turn.
+    // Accessed only by the polling thread
+    private final Map<String, Long> lastStatusCalls = new HashMap<>();
+    private long statusCallCount;
+    private volatile boolean closed;
+
+    /**
+     * Create a watcher polling with the default {@link TDJobWatcherConfig}. The client is not closed by the watcher.
+     *
+     * @param client
+     */
+    public TDJobWatcher(TDClient client)
+    {
+        this(client, new TDJobWatcherConfig.TDJobWatcherConfigBuilder().createTDJobWatcherConfig());
+    }
+
+    public TDJobWatcher(TDClient client, TDJobWatcherConfig config)
+    {
+        this(client, config, Optional.empty());
+    }
+
+    /**
+     * Create a watcher polling on the given executor. The executor will not be shut down when the watcher is closed.
+     *
+     * @param client
+     * @param config
+     * @param executor
+     */
+    public TDJobWatcher(TDClient client, TDJobWatcherConfig config, ScheduledExecutorService executor)
+    {
+        this(client, config, Optional.of(executor));
+    }
+
+    private TDJobWatcher(TDClient client, TDJobWatcherConfig config, Optional<ScheduledExecutorService> executor)
+    {
+        this.client = requireNonNull(client, "client is null");
+        this.config = requireNonNull(config, "config is null");
+        this.isSharedExecutor = executor.isPresent();
+        this.executor = executor.orElseGet(() -> Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("td-client-job-watcher-%d")
+                .setDaemon(true)
+                .build()));
+        this.pollingTask = this.executor.scheduleAtFixedRate(this::poll, config.getPollingIntervalMillis(), config.getPollingIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start watching the job. The returned future is completed with the job status when the job finishes
+     * (success, error or killed), or exceptionally if the job is not found.
+     * Watching the same job again returns the same future, and cancelling it stops watching the job.
+     *
+     * @param jobId
+     * @return
+     */
+    public CompletableFuture<TDJobSummary> watch(String jobId)
+    {
+        requireNonNull(jobId, "jobId is null");
+        if (closed) {
+            throw new IllegalStateException("job watcher is already closed");
+        }
+        return watchedJobs.computeIfAbsent(jobId, id -> {
+            CompletableFuture<TDJobSummary> future = new CompletableFuture<>();
+            future.whenComplete((summary, error) -> watchedJobs.remove(id, future));
+            return future;
+        });
+    }
+
+    /**
+     * Return the number of jobs being watched
+     */
+    public int getWatchedJobCount()
+    {
+        return watchedJobs.size();
+    }
+
+    private void poll()
+    {
+        try {
+            pollJobs();
+        }
+        catch (RuntimeException e) {
+            // Retry at the next poll. Throwing an exception here would stop the polling task
+            logger.warn("Failed to poll the status of {} jobs", watchedJobs.size(), e);
+        }
+    }
+
+    /**
+     * Visible for testing.
+     */
+    void pollJobs()
+    {
+        Set<String> pending = new HashSet<>(watchedJobs.keySet());
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Walk the recent jobs, which are listed from the newest, until reaching the oldest watched job
+        long oldestJobId = pending.stream().mapToLong(TDJobWatcher::parseJobId).filter(id -> id >= 0).min().orElse(Long.MAX_VALUE);
+        for (int page = 0; page < config.getMaxPages() && !pending.isEmpty(); page++) {
+            long from = (long) page * config.getPageSize();
+            List<TDJob> jobs = client.listJobs(from, from + config.getPageSize() - 1).getJobs();
+            long lowestJobId = Long.MAX_VALUE;
+            for (TDJob job : jobs) {
+                if (pending.remove(job.getJobId()) && job.getStatus().isFinished()) {
+                    complete(job.getJobId(), toSummary(job));
+                }
+                long jobId = parseJobId(job.getJobId());
+                if (jobId >= 0) {
+                    lowestJobId = Math.min(lowestJobId, jobId);
+                }
+            }
+            if (jobs.size() < config.getPageSize() || lowestJobId <= oldestJobId) {
+                break;
+            }
+        }
+
+        // Check the jobs not found in the recent jobs one by one, starting from the ones checked least recently
+        List<String> notFound = new ArrayList<>(pending);
+        notFound.sort(Comparator.comparingLong(jobId -> lastStatusCalls.getOrDefault(jobId, 0L)));
+        for (String jobId : notFound.subList(0, Math.min(notFound.size(), config.getMaxStatusCalls()))) {
+            lastStatusCalls.put(jobId, ++statusCallCount);
+            try {
+                TDJobSummary summary = client.jobStatus(jobId);
+                if (summary.getStatus().isFinished()) {
+                    complete(jobId, summary);
+                }
+            }
+            catch (TDClientHttpNotFoundException e) {
+                CompletableFuture<TDJobSummary> future = watchedJobs.get(jobId);
+                if (future != null) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+        lastStatusCalls.keySet().retainAll(watchedJobs.keySet());
+    }
+
+    private void complete(String jobId, TDJobSummary summary)
+    {
+        CompletableFuture<TDJobSummary> future = watchedJobs.get(jobId);
+        if (future != null) {
+            future.complete(summary);
+        }
+    }
+
+    private static long parseJobId(String jobId)
+    {
+        try {
+            return Long.parseLong(jobId);
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static TDJobSummary toSummary(TDJob job)
+    {
+        return new TDJobSummary(job.getStatus(), job.getResultSize(), job.getDuration(), job.getJobId(), job.getCreatedAt(), job.getUpdatedAt(), job.getStartAt(), job.getEndAt());
+    }
+
+    /**
+     * Stop polling and cancel the futures of the jobs still being watched
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        pollingTask.cancel(false);
+        if (!isSharedExecutor) {
+            executor.shutdownNow();
+        }
+        for (CompletableFuture<TDJobSummary> future : watchedJobs.values()) {
+            future.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+/**
+ * Configuration of {@link TDJobWatcher}.
+ * <p>
+ * At every polling interval, the watcher walks the recent jobs with {@code listJobs(from, to)} page by page until
+ * it reaches the oldest watched job or the max pages. Watched jobs not found in these pages (e.g., older jobs) are
+ * checked with {@code jobStatus}, up to the max status calls per poll. So the number of API calls per poll is at most
+ * (max pages) + (max status calls) regardless of the number of watched jobs.
+ */
+public class TDJobWatcherConfig
+{
+    private final long pollingIntervalMillis;
+    private final int pageSize;
+    private final int maxPages;
+    private final int maxStatusCalls;
+
+    public TDJobWatcherConfig(long pollingIntervalMillis, int pageSize, int maxPages, int maxStatusCalls)
+    {
+        if (!(pollingIntervalMillis > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "pollingIntervalMillis of job watcher must be positive: " + pollingIntervalMillis);
+        }
+        if (!(pageSize > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "pageSize of job watcher must be positive: " + pageSize);
+        }
+        if (!(maxPages > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "maxPages of job watcher must be positive: " + maxPages);
+        }
+        if (maxStatusCalls < 0) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "maxStatusCalls of job watcher must not be negative: " + maxStatusCalls);
+        }
+        this.pollingIntervalMillis = pollingIntervalMillis;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.maxStatusCalls = maxStatusCalls;
+    }
+
+    /**
+     * The interval between the starts of two polls
+     */
+    public long getPollingIntervalMillis()
+    {
+        return pollingIntervalMillis;
+    }
+
+    /**
+     * The number of jobs read by a listJobs call
+     */
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * The maximum number of listJobs calls per poll
+     */
+    public int getMaxPages()
+    {
+        return maxPages;
+    }
+
+    /**
+     * The maximum number of jobStatus calls per poll for the watched jobs not found by listJobs
+     */
+    public int getMaxStatusCalls()
+    {
+        return maxStatusCalls;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TDJobWatcherConfig{" +
+                "pollingIntervalMillis=" + pollingIntervalMillis +
+                ", pageSize=" + pageSize +
+                ", maxPages=" + maxPages +
+                ", maxStatusCalls=" + maxStatusCalls +
+                '}';
+    }
+
+    public static class TDJobWatcherConfigBuilder
+    {
+        private long pollingIntervalMillis = 5000;
+        private int pageSize = 100;
+        private int maxPages = 10;
+        private int maxStatusCalls = 5;
+
+        public TDJobWatcherConfigBuilder()
+        {
+        }
+
+        public TDJobWatcherConfigBuilder setPollingIntervalMillis(long pollingIntervalMillis)
+        {
+            this.pollingIntervalMillis = pollingIntervalMillis;
+            return this;
+        }
+
+        public TDJobWatcherConfigBuilder setPageSize(int pageSize)
+        {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public TDJobWatcherConfigBuilder setMaxPages(int maxPages)
+        {
+            this.maxPages = maxPages;
+            return this;
+        }
+
+        public TDJobWatcherConfigBuilder setMaxStatusCalls(int maxStatusCalls)
+        {
+            this.maxStatusCalls = maxStatusCalls;
+            return this;
+        }
+
+        public TDJobWatcherConfig createTDJobWatcherConfig()
+        {
+            return new TDJobWatcherConfig(pollingIntervalMillis, pageSize, maxPages, maxStatusCalls);
+        }
+    }
+}
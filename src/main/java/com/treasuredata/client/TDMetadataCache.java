@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A TTL cache of database and table metadata, bounded by the number of entries with LRU eviction.
+ * Concurrent lookups of the same missing entry share a single API call.
+ */
+class TDMetadataCache
+{
+    // The value of an entry whose loader was interrupted. The other callers load the value again
+    private static final Object INTERRUPTED_LOADER = new Object();
+
+    enum EntryType
+    {
+        DATABASE, DATABASE_EXISTENCE, TABLE, TABLE_EXISTENCE, TABLE_LIST, TABLE_DISTRIBUTION
+    }
+
+    private static class Key
+    {
+        private final EntryType type;
+        // Cache entries separately for each API key because visible metadata depends on the user's permission
+        private final String apiKey;
+        private final String databaseName;
+        private final String tableName;
+
+        Key(EntryType type, String apiKey, String databaseName, String tableName)
+        {
+            this.type = type;
+            this.apiKey = apiKey;
+            this.databaseName = databaseName;
+            this.tableName = tableName;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return type == key.type &&
+                    Objects.equals(apiKey, key.apiKey) &&
+                    Objects.equals(databaseName, key.databaseName) &&
+                    Objects.equals(tableName, key.tableName);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(type, apiKey, databaseName, tableName);
+        }
+    }
+
+    private static class Entry
+    {
+        private final CompletableFuture<Object> value = new CompletableFuture<>();
+        private volatile long expireAtNanos = Long.MAX_VALUE;
+
+        boolean isExpired(long now)
+        {
+            // An entry being loaded never expires
+            return value.isDone() && now - expireAtNanos >= 0;
+        }
+    }
+
+    private final TDMetadataCacheConfig config;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    TDMetadataCache(TDMetadataCacheConfig config)
+    {
+        this.config = config;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+            {
+                return size() > config.getMaxEntries();
+            }
+        };
+    }
+
+    private long getTtlMillis(EntryType type)
+    {
+        switch (type) {
+            case DATABASE:
+            case DATABASE_EXISTENCE:
+                return config.getDatabaseTtlMillis();
+            case TABLE:
+            case TABLE_EXISTENCE:
+                return config.getTableTtlMillis();
+            case TABLE_LIST:
+                return config.getTableListTtlMillis();
+            case TABLE_DISTRIBUTION:
+                return config.getTableDistributionTtlMillis();
+            default:
+                throw new IllegalArgumentException("unknown type: " + type);
+        }
+    }
+
+    /**
+     * Get the cached value, or load it with the loader if it is missing or expired.
+     * Errors of the loader are not cached.
+     */
+    @SuppressWarnings("unchecked")
+    <V> V get(EntryType type, String apiKey, String databaseName, String tableName, Supplier<V> loader)
+    {
+        long ttlMillis = getTtlMillis(type);
+        if (ttlMillis == 0) {
+            return loader.get();
+        }
+
+        Key key = new Key(type, apiKey, databaseName, tableName);
+        while (true) {
+            Entry entry;
+            boolean isLoader = false;
+            synchronized (entries) {
+                entry = entries.get(key);
+                if (entry == null || entry.isExpired(System.nanoTime())) {
+                    entry = new Entry();
+                    entries.put(key, entry);
+                    isLoader = true;
+                }
+            }
+
+            if (isLoader) {
+                return load(key, entry, ttlMillis, loader);
+            }
+
+            // Wait for the value loaded by another thread
+            Object value = awaitValue(entry);
+            if (value != INTERRUPTED_LOADER) {
+                return (V) value;
+            }
+            // The interrupt was for the loader thread only. Load the value again, or wait for another loader
+        }
+    }
+
+    private <V> V load(Key key, Entry entry, long ttlMillis, Supplier<V> loader)
+    {
+        try {
+            V value = loader.get();
+            entry.expireAtNanos = System.nanoTime() + ttlMillis * 1_000_000L;
+            entry.value.complete(value);
+            return value;
+        }
+        catch (RuntimeException | Error e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            if (TDHttpClient.isInterrupted(e)) {
+                // Do not pass the interrupt of this thread to the callers waiting for the value
+                entry.value.complete(INTERRUPTED_LOADER);
+            }
+            else {
+                entry.value.completeExceptionally(e);
+            }
+            throw e;
+        }
+    }
+
+    private static Object awaitValue(Entry entry)
+    {
+        try {
+            return entry.value.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TDClientInterruptedException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TDClientException(TDClientException.ErrorType.EXECUTION_FAILURE, (Exception) cause);
+        }
+    }
+
+    /**
+     * Invalidate the entries of the table and the table list of the database
+     */
+    void invalidateTable(String databaseName, String tableName)
+    {
+        invalidate(key -> Objects.equals(key.databaseName, databaseName) &&
+                (key.type == EntryType.TABLE_LIST || Objects.equals(key.tableName, tableName)));
+    }
+
+    /**
+     * Invalidate all entries of the database including its tables
+     */
+    void invalidateDatabase(String databaseName)
+    {
+        invalidate(key -> Objects.equals(key.databaseName, databaseName));
+    }
+
+    void invalidateAll()
+    {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private void invalidate(Predicate<Key> condition)
+    {
+        synchronized (entries) {
+            Iterator<Key> it = entries.keySet().iterator();
+            while (it.hasNext()) {
+                if (condition.test(it.next())) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    int size()
+    {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+/**
+ * Configuration of the metadata cache of {@link TDClient}. The cache is disabled unless this is set with
+ * {@link AbstractTDClientBuilder#setMetadataCache(TDMetadataCacheConfig)}.
+ * A TTL of 0 disables caching for that kind of metadata.
+ */
+public class TDMetadataCacheConfig
+{
+    private final long databaseTtlMillis;
+    private final long tableTtlMillis;
+    private final long tableListTtlMillis;
+    private final long tableDistributionTtlMillis;
+    private final int maxEntries;
+
+    public TDMetadataCacheConfig(long databaseTtlMillis, long tableTtlMillis, long tableListTtlMillis, long tableDistributionTtlMillis, int maxEntries)
+    {
+        if (databaseTtlMillis < 0 || tableTtlMillis < 0 || tableListTtlMillis < 0 || tableDistributionTtlMillis < 0) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "metadata cache TTL must not be negative");
+        }
+        if (maxEntries <= 0) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "maxEntries of metadata cache must be positive: " + maxEntries);
+        }
+        this.databaseTtlMillis = databaseTtlMillis;
+        this.tableTtlMillis = tableTtlMillis;
+        this.tableListTtlMillis = tableListTtlMillis;
+        this.tableDistributionTtlMillis = tableDistributionTtlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * TTL of showDatabase and existsDatabase results
+     */
+    public long getDatabaseTtlMillis()
+    {
+        return databaseTtlMillis;
+    }
+
+    /**
+     * TTL of showTable and existsTable results
+     */
+    public long getTableTtlMillis()
+    {
+        return tableTtlMillis;
+    }
+
+    /**
+     * TTL of listTables and existsTables results
+     */
+    public long getTableListTtlMillis()
+    {
+        return tableListTtlMillis;
+    }
+
+    /**
+     * TTL of tableDistribution results
+     */
+    public long getTableDistributionTtlMillis()
+    {
+        return tableDistributionTtlMillis;
+    }
+
+    /**
+     * The max number of cached entries. The least recently used entries are evicted first.
+     */
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TDMetadataCacheConfig{" +
+                "databaseTtlMillis=" + databaseTtlMillis +
+                ", tableTtlMillis=" + tableTtlMillis +
+                ", tableListTtlMillis=" + tableListTtlMillis +
+                ", tableDistributionTtlMillis=" + tableDistributionTtlMillis +
+                ", maxEntries=" + maxEntries +
+                '}';
+    }
+
+    public static class TDMetadataCacheConfigBuilder
+    {
+        private long databaseTtlMillis = 60_000;
+        private long tableTtlMillis = 60_000;
+        private long tableListTtlMillis = 60_000;
+        private long tableDistributionTtlMillis = 600_000;
+        private int maxEntries = 10_000;
+
+        public TDMetadataCacheConfigBuilder()
+        {
+        }
+
+        public TDMetadataCacheConfigBuilder setDatabaseTtlMillis(long databaseTtlMillis)
+        {
+            this.databaseTtlMillis = databaseTtlMillis;
+            return this;
+        }
+
+        public TDMetadataCacheConfigBuilder setTableTtlMillis(long tableTtlMillis)
+        {
+            this.tableTtlMillis = tableTtlMillis;
+            return this;
+        }
+
+        public TDMetadataCacheConfigBuilder setTableListTtlMillis(long tableListTtlMillis)
+        {
+            this.tableListTtlMillis = tableListTtlMillis;
+            return this;
+        }
+
+        public TDMetadataCacheConfigBuilder setTableDistributionTtlMillis(long tableDistributionTtlMillis)
+        {
+            this.tableDistributionTtlMillis = tableDistributionTtlMillis;
+            return this;
+        }
+
+        public TDMetadataCacheConfigBuilder setMaxEntries(int maxEntries)
+        {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public TDMetadataCacheConfig createTDMetadataCacheConfig()
+        {
+            return new TDMetadataCacheConfig(databaseTtlMillis, tableTtlMillis, tableListTtlMillis, tableDistributionTtlMillis, maxEntries);
+        }
+    }
+}
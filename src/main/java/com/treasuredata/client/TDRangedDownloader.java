@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.treasuredata.client.TDClientException.ErrorType.UNEXPECTED_RESPONSE_CODE;
+
+/**
+ * Downloads a large response into a file with parallel HTTP Range requests.
+ * <p>
+ * The first chunk is requested alone to learn the total length from its Content-Range header. Then the other chunks
+ * are requested in parallel and written at their positions in the file, so no reassembly buffer is needed.
+ * Each chunk request is retried separately by {@link TDHttpClient}. If the server ignores the Range header and returns
+ * the whole content, the content is written from the single stream instead.
+ */
+class TDRangedDownloader
+{
+    private static final Logger logger = LoggerFactory.getLogger(TDRangedDownloader.class);
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TDHttpClient httpClient;
+    private final Optional<String> apiKeyCache;
+    private final TDApiRequest request;
+    private final FileChannel channel;
+    private final long chunkSize;
+
+    TDRangedDownloader(TDHttpClient httpClient, Optional<String> apiKeyCache, TDApiRequest request, FileChannel channel, long chunkSize)
+    {
+        if (chunkSize <= 0) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_INPUT, "chunkSize must be positive: " + chunkSize);
+        }
+        this.httpClient = httpClient;
+        this.apiKeyCache = apiKeyCache;
+        this.request = request;
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the number of bytes written to the channel from position 0
+     */
+    long download(int parallelism)
+            throws TDClientException
+    {
+        if (parallelism <= 0) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_INPUT, "parallelism must be positive: " + parallelism);
+        }
+        ChunkResult first = httpClient.submitRequest(request, apiKeyCache, new ChunkHandler(0, chunkSize - 1, true));
+        long totalLength;
+        if (!first.isPartial) {
+            logger.debug("The server does not support range requests. Downloaded {} bytes with a single stream", first.length);
+            totalLength = first.length;
+        }
+        else if (first.totalLength < 0) {
+            // Unknown total length. Read the rest with a single open-ended range
+            ChunkResult rest = httpClient.submitRequest(request, apiKeyCache, new ChunkHandler(first.length, -1, false));
+            totalLength = first.length + rest.length;
+        }
+        else {
+            totalLength = first.totalLength;
+            downloadChunks(first.length, totalLength, parallelism);
+        }
+        try {
+            if (channel.size() > totalLength) {
+                channel.truncate(totalLength);
+            }
+        }
+        catch (IOException e) {
+            throw new TDClientException(TDClientException.ErrorType.EXECUTION_FAILURE, "Failed to truncate the download file", e);
+        }
+        return totalLength;
+    }
+
+    private void downloadChunks(long from, long totalLength, int parallelism)
+    {
+        List<ChunkHandler> chunks = new ArrayList<>();
+        for (long start = from; start < totalLength; start += chunkSize) {
+            chunks.add(new ChunkHandler(start, Math.min(start + chunkSize, totalLength) - 1, false));
+        }
+        if (chunks.isEmpty()) {
+            return;
+        }
+        logger.debug("Downloading {} bytes in {} chunks with {} parallel requests", totalLength - from, chunks.size(), parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks.size()), new ThreadFactoryBuilder()
+                .setNameFormat("td-client-download-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            List<Future<ChunkResult>> futures = new ArrayList<>();
+            for (ChunkHandler chunk : chunks) {
+                futures.add(executor.submit(() -> httpClient.submitRequest(request, apiKeyCache, chunk)));
+            }
+            for (Future<ChunkResult> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            throw new TDClientInterruptedException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof TDClientException) {
+                throw (TDClientException) e.getCause();
+            }
+            throw new TDClientException(TDClientException.ErrorType.EXECUTION_FAILURE, e);
+        }
+        finally {
+            // Stop the remaining chunks upon a failure
+            executor.shutdownNow();
+        }
+    }
+
+    private static class ChunkResult
+    {
+        private final boolean isPartial;
+        private final long length;
+        private final long totalLength;
+
+        ChunkResult(boolean isPartial, long length, long totalLength)
+        {
+            this.isPartial = isPartial;
+            this.length = length;
+            this.totalLength = totalLength;
+        }
+    }
+
+    private class ChunkHandler
+            implements TDHttpRequestHandler<ChunkResult>
+    {
+        private final long start;
+        // Inclusive, or -1 for reading until the end
+        private final long end;
+        // True for the first request, which accepts the whole content if the server ignores the Range header
+        private final boolean isFirst;
+
+        ChunkHandler(long start, long end, boolean isFirst)
+        {
+            this.start = start;
+            this.end = end;
+            this.isFirst = isFirst;
+        }
+
+        @Override
+        public Request prepareRequest(Request request)
+        {
+            return request.newBuilder()
+                    .header("Range", end < 0 ? String.format("bytes=%d-", start) : String.format("bytes=%d-%d", start, end))
+                    .build();
+        }
+
+        @Override
+        public boolean isSuccess(ResponseContext responseContext)
+        {
+            // An empty content cannot satisfy any range
+            return responseContext.response.isSuccessful() || (isFirst && responseContext.response.code() == HTTP_RANGE_NOT_SATISFIABLE);
+        }
+
+        @Override
+        public ChunkResult onSuccess(Response response)
+                throws Exception
+        {
+            try (ResponseBody body = response.body()) {
+                if (response.code() == HTTP_RANGE_NOT_SATISFIABLE) {
+                    return new ChunkResult(false, 0, 0);
+                }
+                if (response.code() != HTTP_PARTIAL_CONTENT) {
+                    if (!isFirst) {
+                        throw new TDClientException(UNEXPECTED_RESPONSE_CODE, String.format("Expected a partial content for bytes %d-%d, but got status code %d", start, end, response.code()));
+                    }
+                    return new ChunkResult(false, write(body.source(), 0, Long.MAX_VALUE), -1);
+                }
+                String header = response.header("Content-Range");
+                TDContentRange range = TDContentRange.parse(header)
+                        .filter(r -> r.getStart() == start)
+                        .orElseThrow(() -> new TDClientException(UNEXPECTED_RESPONSE_CODE, String.format("Unexpected Content-Range for bytes %d-%d: %s", start, end, header)));
+                long written = write(body.source(), start, range.getLength());
+                if (written != range.getLength()) {
+                    // Retried as a truncated response
+                    throw new EOFException(String.format("Expected %d bytes from position %d, but got %d bytes", range.getLength(), start, written));
+                }
+                return new ChunkResult(true, written, range.getTotalLength());
+            }
+        }
+
+        private long write(BufferedSource source, long position, long limit)
+                throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long written = 0;
+            while (written < limit) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, limit - written));
+                if (source.read(buffer) < 0) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, position + written);
+                }
+            }
+            return written;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+/**
+ * Configuration of the client-side rate limiter shared by all requests of a client. The limiter is disabled unless
+ * this is set with {@link AbstractTDClientBuilder#setRateLimit(TDRateLimitConfig)}.
+ * <p>
+ * Requests to each endpoint are paced by a token bucket. Its rate is multiplied by the decrease factor
+ * when the API responds with 429 Too Many Requests, and increases additively while requests succeed (AIMD).
+ * All requests to the endpoint are also held back until the time given by a Retry-After header.
+ */
+public class TDRateLimitConfig
+{
+    private final double maxRequestsPerSecond;
+    private final double minRequestsPerSecond;
+    private final double decreaseFactor;
+    private final double increasePerSecond;
+
+    public TDRateLimitConfig(double maxRequestsPerSecond, double minRequestsPerSecond, double decreaseFactor, double increasePerSecond)
+    {
+        if (!(minRequestsPerSecond > 0) || minRequestsPerSecond > maxRequestsPerSecond) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION,
+                    String.format("rate limit must satisfy 0 < min <= max: min=%s, max=%s", minRequestsPerSecond, maxRequestsPerSecond));
+        }
+        if (!(decreaseFactor > 0 && decreaseFactor < 1)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "decreaseFactor of rate limit must be between 0 and 1: " + decreaseFactor);
+        }
+        if (!(increasePerSecond > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "increasePerSecond of rate limit must be positive: " + increasePerSecond);
+        }
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.minRequestsPerSecond = minRequestsPerSecond;
+        this.decreaseFactor = decreaseFactor;
+        this.increasePerSecond = increasePerSecond;
+    }
+
+    /**
+     * The initial and the highest request rate. Up to this number of requests can be sent at once after an idle period.
+     */
+    public double getMaxRequestsPerSecond()
+    {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * The lowest request rate, which the rate never goes below however many 429 responses are returned
+     */
+    public double getMinRequestsPerSecond()
+    {
+        return minRequestsPerSecond;
+    }
+
+    /**
+     * The rate is multiplied by this factor upon a 429 response
+     */
+    public double getDecreaseFactor()
+    {
+        return decreaseFactor;
+    }
+
+    /**
+     * The rate grows by this number of requests per second for each second of successful requests
+     */
+    public double getIncreasePerSecond()
+    {
+        return increasePerSecond;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TDRateLimitConfig{" +
+                "maxRequestsPerSecond=" + maxRequestsPerSecond +
+                ", minRequestsPerSecond=" + minRequestsPerSecond +
+                ", decreaseFactor=" + decreaseFactor +
+                ", increasePerSecond=" + increasePerSecond +
+                '}';
+    }
+
+    public static class TDRateLimitConfigBuilder
+    {
+        private double maxRequestsPerSecond = 50;
+        private double minRequestsPerSecond = 1;
+        private double decreaseFactor = 0.5;
+        private double increasePerSecond = 1;
+
+        public TDRateLimitConfigBuilder()
+        {
+        }
+
+        public TDRateLimitConfigBuilder setMaxRequestsPerSecond(double maxRequestsPerSecond)
+        {
+            this.maxRequestsPerSecond = maxRequestsPerSecond;
+            return this;
+        }
+
+        public TDRateLimitConfigBuilder setMinRequestsPerSecond(double minRequestsPerSecond)
+        {
+            this.minRequestsPerSecond = minRequestsPerSecond;
+            return this;
+        }
+
+        public TDRateLimitConfigBuilder setDecreaseFactor(double decreaseFactor)
+        {
+            this.decreaseFactor = decreaseFactor;
+            return this;
+        }
+
+        public TDRateLimitConfigBuilder setIncreasePerSecond(double increasePerSecond)
+        {
+            this.increasePerSecond = increasePerSecond;
+            return this;
+        }
+
+        public TDRateLimitConfig createTDRateLimitConfig()
+        {
+            return new TDRateLimitConfig(maxRequestsPerSecond, minRequestsPerSecond, decreaseFactor, increasePerSecond);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import okhttp3.HttpUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.treasuredata.client.TDClientHttpTooManyRequestsException.TOO_MANY_REQUESTS_429;
+
+/**
+ * An adaptive rate limiter that paces the requests to each endpoint with a token bucket.
+ * See {@link TDRateLimitConfig} for how the rate changes.
+ */
+class TDRateLimiter
+{
+    private static final Logger logger = LoggerFactory.getLogger(TDRateLimiter.class);
+
+    // 429 responses of requests sent before the last decrease of the rate are likely to be caused by
+    // the previous rate, so decrease the rate at most once in this period
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final TDRateLimitConfig config;
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    TDRateLimiter(TDRateLimitConfig config)
+    {
+        this.config = config;
+    }
+
+    /**
+     * Take a permit to send a request to the URL.
+     *
+     * @return the time in milliseconds to wait before sending the request
+     */
+    long reserve(HttpUrl url)
+    {
+        long waitNanos = getBucket(url).reserve(System.nanoTime());
+        // Round up so as not to send the request too early
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+    }
+
+    /**
+     * Adjust the rate by the response to a request to the URL
+     */
+    void onResponse(HttpUrl url, int code, Date retryAfter)
+    {
+        Bucket bucket = getBucket(url);
+        long now = System.nanoTime();
+        if (code == TOO_MANY_REQUESTS_429) {
+            double rate = bucket.decrease(now);
+            logger.debug(String.format("Reduced the request rate to %s to %.2f/sec", url.host(), rate));
+        }
+        else if (code >= 200 && code < 300) {
+            bucket.increase();
+        }
+        if (retryAfter != null) {
+            bucket.pause(now, TimeUnit.MILLISECONDS.toNanos(retryAfter.getTime() - System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Visible for testing
+     */
+    double getRate(HttpUrl url)
+    {
+        return getBucket(url).getRate();
+    }
+
+    private Bucket getBucket(HttpUrl url)
+    {
+        String endpoint = url.host() + ":" + url.port();
+        Bucket bucket = buckets.get(endpoint);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(endpoint, e -> new Bucket(System.nanoTime()));
+        }
+        return bucket;
+    }
+
+    private class Bucket
+    {
+        private double rate;
+        // Negative if the permits are reserved ahead
+        private double tokens;
+        // Tokens are refilled from this time. This is in the future while requests are paused
+        private long refilledAtNanos;
+        private long decreasedAtNanos;
+
+        Bucket(long now)
+        {
+            this.rate = config.getMaxRequestsPerSecond();
+            this.tokens = getCapacity();
+            this.refilledAtNanos = now;
+            this.decreasedAtNanos = now - DECREASE_INTERVAL_NANOS;
+        }
+
+        private double getCapacity()
+        {
+            return Math.max(1.0, rate);
+        }
+
+        private void refill(long now)
+        {
+            if (now > refilledAtNanos) {
+                tokens = Math.min(getCapacity(), tokens + (now - refilledAtNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+                refilledAtNanos = now;
+            }
+        }
+
+        synchronized long reserve(long now)
+        {
+            refill(now);
+            long waitNanos = Math.max(0, refilledAtNanos - now);
+            tokens -= 1;
+            if (tokens < 0) {
+                waitNanos += (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+            }
+            return waitNanos;
+        }
+
+        synchronized double decrease(long now)
+        {
+            refill(now);
+            if (now - decreasedAtNanos >= DECREASE_INTERVAL_NANOS) {
+                rate = Math.max(config.getMinRequestsPerSecond(), rate * config.getDecreaseFactor());
+                decreasedAtNanos = now;
+            }
+            // Stop bursting until the rate recovers
+            tokens = Math.min(tokens, 0);
+            return rate;
+        }
+
+        synchronized void increase()
+        {
+            // rate requests succeed in a second, so the rate grows by increasePerSecond in a second
+            rate = Math.min(config.getMaxRequestsPerSecond(), rate + config.getIncreasePerSecond() / rate);
+        }
+
+        synchronized void pause(long now, long durationNanos)
+        {
+            if (durationNanos > 0) {
+                refill(now);
+                tokens = Math.min(tokens, 0);
+                refilledAtNanos = Math.max(refilledAtNanos, now + durationNanos);
+            }
+        }
+
+        synchronized double getRate()
+        {
+            return rate;
+        }
+    }
+}
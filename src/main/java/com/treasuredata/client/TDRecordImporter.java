@@ -0,0 +1,584 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static com.treasuredata.client.TDClientException.ErrorType.EXECUTION_FAILURE;
+import static com.treasuredata.client.TDClientException.ErrorType.INVALID_INPUT;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Imports records into tables with {@link TDClient#importBytes(String, String, byte[], String)}.
+ * <p>
+ * Records are encoded into msgpack and compressed with gzip into a chunk for each table as they are added.
+ * A chunk is uploaded by a pool of uploader threads when it reaches the chunk size, or when it has been buffered for the flush interval.
+ * If the uploaders fall behind, adding records blocks until a queued chunk is uploaded. See {@link TDRecordImporterConfig}.
+ * Each chunk has a unique import id derived from the chunk sequence number, and every retry of a chunk is sent with the same id,
+ * so the import API deduplicates the records of a chunk that reached the server before the failure.
+ * Server errors, throttling and connection failures are retried by the client up to its retry limit.
+ * The importer itself only retries request timeouts (408), which the client does not retry, up to the upload retry limit.
+ * Upload failures are thrown from the next {@link #flush()} or {@link #close()}.
+ * </p>
+ * <pre>
+ * try (TDRecordImporter importer = new TDRecordImporter(client)) {
+ *     Map&lt;String, Object&gt; record = new HashMap&lt;&gt;();
+ *     record.put("time", System.currentTimeMillis() / 1000);
+ *     record.put("name", "td");
+ *     importer.add("mydb", "mytable", record);
+ * }
+ * </pre>
+ * As with the import API, each record needs a unix time "time" column.
+ */
+public class TDRecordImporter
+        implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(TDRecordImporter.class);
+    private static final TypeReference<Map<String, Object>> RECORD_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    // Converts record objects into columns, omitting null and absent values
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new Jdk8Module())
+            .setSerializationInclusion(JsonInclude.Include.NON_ABSENT);
+    // A scratch buffer of each thread to encode a record before adding it to a chunk
+    private static final ThreadLocal<MessageBufferPacker> recordPacker = ThreadLocal.withInitial(MessagePack::newDefaultBufferPacker);
+
+    private final TDClient client;
+    private final TDRecordImporterConfig config;
+    private final ExecutorService uploader;
+    private final ScheduledExecutorService flusher;
+    // Chunks waiting for upload or being uploaded
+    private final Semaphore uploadPermits;
+    // Buffered chunks for each table. Guarded by this
+    private final Map<TableName, Chunk> chunks = new LinkedHashMap<>();
+    private final Set<CompletableFuture<Void>> uploads = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<TDClientException> uploadError = new AtomicReference<>();
+    private final AtomicLong importedRecordCount = new AtomicLong();
+    // A random id of this importer, to make the chunk ids unique among importers
+    private final String importerId = UUID.randomUUID().toString();
+    private final AtomicLong chunkSequence = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Create an importer with the default {@link TDRecordImporterConfig}. The client is not closed by the importer.
+     *
+     * @param client
+     */
+    public TDRecordImporter(TDClient client)
+    {
+        this(client, new TDRecordImporterConfig.TDRecordImporterConfigBuilder().createTDRecordImporterConfig());
+    }
+
+    public TDRecordImporter(TDClient client, TDRecordImporterConfig config)
+    {
+        this.client = requireNonNull(client, "client is null");
+        this.config = requireNonNull(config, "config is null");
+        this.uploadPermits = new Semaphore(config.getUploadThreads() + config.getMaxQueuedChunks());
+        this.uploader = Executors.newFixedThreadPool(config.getUploadThreads(), new ThreadFactoryBuilder()
+                .setNameFormat("td-client-record-importer-%d")
+                .setDaemon(true)
+                .build());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("td-client-record-importer-flusher-%d")
+                .setDaemon(true)
+                .build());
+        // Check the buffered chunks a few times per flush interval
+        long checkIntervalMillis = Math.max(10, config.getFlushIntervalMillis() / 4);
+        this.flusher.scheduleWithFixedDelay(this::flushExpiredChunks, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add a record to the table. This blocks if too many chunks are waiting for upload.
+     *
+     * @param database
+     * @param table
+     * @param record column names and values. Values can be null, Boolean, Number, String, byte[], Date, Instant,
+     * or Map, Collection and arrays of them. The other values are imported as strings
+     */
+    public void add(String database, String table, Map<String, ?> record)
+    {
+        requireNonNull(record, "record is null");
+        TableName tableName = new TableName(requireNonNull(database, "database is null"), requireNonNull(table, "table is null"));
+        // Encode the record first, so that a record failed to encode does not break the chunk
+        byte[] encoded = encode(record);
+        while (true) {
+            Chunk chunk;
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("record importer is already closed");
+                }
+                chunk = chunks.computeIfAbsent(tableName, name -> new Chunk(name, chunkSequence.getAndIncrement()));
+            }
+            if (!chunk.append(encoded)) {
+                // The chunk has been taken for upload since the lookup. Add the record to a new chunk
+                continue;
+            }
+            if (chunk.size() >= config.getChunkSizeBytes()) {
+                synchronized (this) {
+                    chunks.remove(tableName, chunk);
+                }
+                upload(chunk);
+            }
+            return;
+        }
+    }
+
+    private static byte[] encode(Map<String, ?> record)
+    {
+        MessageBufferPacker packer = recordPacker.get();
+        packer.clear();
+        try {
+            packValue(packer, record);
+            return packer.toByteArray();
+        }
+        catch (IOException e) {
+            throw new TDClientException(EXECUTION_FAILURE, "Failed to encode a record", e);
+        }
+    }
+
+    /**
+     * Add a record object to the table. The object is converted into columns with Jackson, as it is serialized into JSON.
+     *
+     * @param database
+     * @param table
+     * @param record
+     */
+    public void add(String database, String table, Object record)
+    {
+        Map<String, Object> columns;
+        try {
+            columns = objectMapper.convertValue(requireNonNull(record, "record is null"), RECORD_TYPE);
+        }
+        catch (IllegalArgumentException e) {
+            throw new TDClientException(INVALID_INPUT, "Failed to convert a record of " + record.getClass().getName(), e);
+        }
+        add(database, table, columns);
+    }
+
+    /**
+     * Upload all of the buffered records, and wait until the uploads finish.
+     *
+     * @throws TDClientException if an upload since the last flush has failed
+     */
+    public void flush()
+    {
+        List<Chunk> buffered;
+        synchronized (this) {
+            buffered = new ArrayList<>(chunks.values());
+            chunks.clear();
+        }
+        for (Chunk chunk : buffered) {
+            upload(chunk);
+        }
+        for (CompletableFuture<Void> upload : new ArrayList<>(uploads)) {
+            try {
+                upload.get();
+            }
+            catch (InterruptedException e) {
+                throw new TDClientInterruptedException(e);
+            }
+            catch (ExecutionException e) {
+                // Upload failures are reported through uploadError
+            }
+        }
+        TDClientException error = uploadError.getAndSet(null);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Return the number of records uploaded so far
+     */
+    public long getImportedRecordCount()
+    {
+        return importedRecordCount.get();
+    }
+
+    private void flushExpiredChunks()
+    {
+        List<Chunk> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            Iterator<Chunk> it = chunks.values().iterator();
+            while (it.hasNext()) {
+                Chunk chunk = it.next();
+                if (TimeUnit.NANOSECONDS.toMillis(now - chunk.createdAtNanos) >= config.getFlushIntervalMillis()) {
+                    it.remove();
+                    expired.add(chunk);
+                }
+            }
+        }
+        try {
+            for (Chunk chunk : expired) {
+                upload(chunk);
+            }
+        }
+        catch (RuntimeException e) {
+            // Keep the flusher running
+            logger.error("Failed to flush records", e);
+        }
+    }
+
+    private void upload(Chunk chunk)
+    {
+        byte[] content = chunk.finish();
+        if (content == null) {
+            // Already taken for upload by another thread
+            return;
+        }
+        String id = chunkId(importerId, chunk.sequence);
+        // Backpressure. Waiting uninterruptibly not to lose the records of the chunk
+        uploadPermits.acquireUninterruptibly();
+        CompletableFuture<Void> upload;
+        try {
+            upload = CompletableFuture.runAsync(() -> {
+                try {
+                    importChunk(chunk, content, id);
+                    importedRecordCount.addAndGet(chunk.recordCount);
+                    logger.debug("Imported {} records ({} bytes) into {} with id {}", chunk.recordCount, content.length, chunk.tableName, id);
+                }
+                catch (RuntimeException e) {
+                    logger.error("Failed to import {} records into {} with id {}", chunk.recordCount, chunk.tableName, id, e);
+                    TDClientException error = new TDClientException(EXECUTION_FAILURE, String.format("Failed to import %d records into %s with id %s", chunk.recordCount, chunk.tableName, id), e);
+                    if (!uploadError.compareAndSet(null, error)) {
+                        uploadError.get().addSuppressed(error);
+                    }
+                }
+                finally {
+                    uploadPermits.release();
+                }
+            }, uploader);
+        }
+        catch (RuntimeException e) {
+            uploadPermits.release();
+            throw e;
+        }
+        uploads.add(upload);
+        upload.whenComplete((result, error) -> uploads.remove(upload));
+    }
+
+    /**
+     * Upload the chunk, retrying with the same id so that the import API deduplicates the chunk uploaded by a failed attempt.
+     * A chunk is uploaded at most (upload retry limit + 1) * (client retry limit + 1) times.
+     */
+    private void importChunk(Chunk chunk, byte[] content, String id)
+    {
+        BackOff backoff = BackOffStrategy.newBackOff(client.config);
+        while (true) {
+            try {
+                client.importBytes(chunk.tableName.database, chunk.tableName.table, content, id);
+                return;
+            }
+            catch (RuntimeException e) {
+                if (isInterrupt(e)) {
+                    // Interrupted by close() or an executor shutdown. The client has already turned the interrupt into an exception
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                if (!isRetryable(e) || backoff.getExecutionCount() >= config.getUploadRetryLimit()) {
+                    throw e;
+                }
+                int waitTimeMillis = backoff.nextWaitTimeMillis();
+                logger.warn(String.format("Retrying import of %d records into %s with id %s (%d/%d) in %.2f sec.", chunk.recordCount, chunk.tableName, id, backoff.getExecutionCount(), config.getUploadRetryLimit(), waitTimeMillis / 1000.0), e);
+                try {
+                    Thread.sleep(waitTimeMillis);
+                }
+                catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new TDClientInterruptedException(interrupted);
+                }
+            }
+        }
+    }
+
+    private static boolean isInterrupt(RuntimeException e)
+    {
+        return e instanceof TDClientInterruptedException && e.getCause() instanceof InterruptedException;
+    }
+
+    private static boolean isRetryable(RuntimeException e)
+    {
+        // TDHttpClient retries server errors, throttling and connection failures by itself, and retrying them here again
+        // would multiply the attempts. A request timeout is thrown without retries, but is safe to retry with the same id
+        return e instanceof TDClientHttpException && ((TDClientHttpException) e).getStatusCode() == 408;
+    }
+
+    /**
+     * A unique import id of a chunk, derived from the importer id and the sequence number of the chunk
+     */
+    private static String chunkId(String importerId, long sequence)
+    {
+        return UUID.nameUUIDFromBytes(String.format("%s:%d", importerId, sequence).getBytes(StandardCharsets.UTF_8)).toString().replace("-", "");
+    }
+
+    @Override
+    public void close()
+    {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.shutdownNow();
+        try {
+            // A running flushExpiredChunks may still be submitting the chunks it took, so wait for it before shutting down the uploader
+            awaitFlusherTermination();
+            flush();
+        }
+        finally {
+            uploader.shutdown();
+        }
+    }
+
+    private void awaitFlusherTermination()
+    {
+        try {
+            while (!flusher.awaitTermination(1, TimeUnit.SECONDS)) {
+                logger.debug("Waiting for the record importer flusher to finish");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TDClientInterruptedException(e);
+        }
+    }
+
+    private static class TableName
+    {
+        private final String database;
+        private final String table;
+
+        TableName(String database, String table)
+        {
+            this.database = database;
+            this.table = table;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            TableName that = (TableName) o;
+            return database.equals(that.database) && table.equals(that.table);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(database, table);
+        }
+
+        @Override
+        public String toString()
+        {
+            return database + "." + table;
+        }
+    }
+
+    /**
+     * Records of a table encoded into gzipped msgpack
+     */
+    private static class Chunk
+    {
+        private final TableName tableName;
+        private final long sequence;
+        private final long createdAtNanos = System.nanoTime();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final GZIPOutputStream out;
+        // Guarded by this. Not updated after the chunk is finished
+        private long size;
+        private int recordCount;
+        private boolean finished;
+
+        Chunk(TableName tableName, long sequence)
+        {
+            this.tableName = tableName;
+            this.sequence = sequence;
+            try {
+                this.out = new GZIPOutputStream(buffer, GZIP_BUFFER_SIZE);
+            }
+            catch (IOException e) {
+                throw new TDClientException(EXECUTION_FAILURE, e);
+            }
+        }
+
+        /**
+         * The msgpack size of the records before compression
+         */
+        synchronized long size()
+        {
+            return size;
+        }
+
+        /**
+         * Add an encoded record, or return false if the chunk has been finished
+         */
+        synchronized boolean append(byte[] record)
+        {
+            if (finished) {
+                return false;
+            }
+            try {
+                out.write(record);
+            }
+            catch (IOException e) {
+                throw new TDClientException(EXECUTION_FAILURE, "Failed to compress records", e);
+            }
+            size += record.length;
+            recordCount++;
+            return true;
+        }
+
+        /**
+         * Finish the gzip stream and return the content, or null if the chunk has already been finished
+         */
+        synchronized byte[] finish()
+        {
+            if (finished) {
+                return null;
+            }
+            finished = true;
+            try {
+                out.close();
+            }
+            catch (IOException e) {
+                throw new TDClientException(EXECUTION_FAILURE, "Failed to compress records", e);
+            }
+            return buffer.toByteArray();
+        }
+    }
+
+    private static void packValue(MessagePacker packer, Object value)
+            throws IOException
+    {
+        if (value == null) {
+            packer.packNil();
+        }
+        else if (value instanceof String) {
+            packer.packString((String) value);
+        }
+        else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            packer.packLong(((Number) value).longValue());
+        }
+        else if (value instanceof BigInteger) {
+            packer.packBigInteger((BigInteger) value);
+        }
+        else if (value instanceof Number) {
+            packer.packDouble(((Number) value).doubleValue());
+        }
+        else if (value instanceof Boolean) {
+            packer.packBoolean((Boolean) value);
+        }
+        else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            packer.packBinaryHeader(bytes.length);
+            packer.writePayload(bytes);
+        }
+        else if (value instanceof Date) {
+            // Unix time in seconds
+            packer.packLong(TimeUnit.MILLISECONDS.toSeconds(((Date) value).getTime()));
+        }
+        else if (value instanceof Instant) {
+            packer.packLong(((Instant) value).getEpochSecond());
+        }
+        else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            int size = map.size();
+            packer.packMapHeader(size);
+            int count = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                packValue(packer, entry.getKey());
+                packValue(packer, entry.getValue());
+                count++;
+            }
+            checkSize(size, count);
+        }
+        else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            int size = collection.size();
+            packer.packArrayHeader(size);
+            int count = 0;
+            for (Object element : collection) {
+                packValue(packer, element);
+                count++;
+            }
+            checkSize(size, count);
+        }
+        else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            packer.packArrayHeader(array.length);
+            for (Object element : array) {
+                packValue(packer, element);
+            }
+        }
+        else {
+            packer.packString(value.toString());
+        }
+    }
+
+    private static void checkSize(int headerSize, int count)
+    {
+        if (headerSize != count) {
+            throw new TDClientException(INVALID_INPUT, String.format("A collection of %d elements was modified to have %d elements while encoding a record", headerSize, count));
+        }
+    }
+}
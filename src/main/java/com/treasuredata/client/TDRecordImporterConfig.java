@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+/**
+ * Configuration of {@link TDRecordImporter}.
+ * <p>
+ * Records are buffered per table, and a chunk is uploaded when its msgpack size reaches the chunk size,
+ * or when its first record has been buffered for the flush interval. At most (upload threads) + (max queued chunks)
+ * chunks can be waiting for upload, and adding records blocks until a chunk is uploaded beyond that.
+ * Server errors, throttling and connection failures are retried by the client up to its retry limit.
+ * A chunk failed with a request timeout (408), which the client does not retry, is uploaded again with the same import id
+ * up to the upload retry limit.
+ */
+public class TDRecordImporterConfig
+{
+    private final int chunkSizeBytes;
+    private final long flushIntervalMillis;
+    private final int uploadThreads;
+    private final int maxQueuedChunks;
+    private final int uploadRetryLimit;
+
+    public TDRecordImporterConfig(int chunkSizeBytes, long flushIntervalMillis, int uploadThreads, int maxQueuedChunks, int uploadRetryLimit)
+    {
+        if (!(chunkSizeBytes > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "chunkSizeBytes of record importer must be positive: " + chunkSizeBytes);
+        }
+        if (!(flushIntervalMillis > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "flushIntervalMillis of record importer must be positive: " + flushIntervalMillis);
+        }
+        if (!(uploadThreads > 0)) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "uploadThreads of record importer must be positive: " + uploadThreads);
+        }
+        if (maxQueuedChunks < 0) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "maxQueuedChunks of record importer must not be negative: " + maxQueuedChunks);
+        }
+        if (uploadRetryLimit < 0) {
+            throw new TDClientException(TDClientException.ErrorType.INVALID_CONFIGURATION, "uploadRetryLimit of record importer must not be negative: " + uploadRetryLimit);
+        }
+        this.chunkSizeBytes = chunkSizeBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.uploadThreads = uploadThreads;
+        this.maxQueuedChunks = maxQueuedChunks;
+        this.uploadRetryLimit = uploadRetryLimit;
+    }
+
+    /**
+     * The msgpack size of records in a chunk before compression
+     */
+    public int getChunkSizeBytes()
+    {
+        return chunkSizeBytes;
+    }
+
+    /**
+     * The maximum time to buffer a record before uploading it
+     */
+    public long getFlushIntervalMillis()
+    {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * The number of threads uploading chunks in parallel
+     */
+    public int getUploadThreads()
+    {
+        return uploadThreads;
+    }
+
+    /**
+     * The number of chunks waiting for an upload thread before adding records blocks
+     */
+    public int getMaxQueuedChunks()
+    {
+        return maxQueuedChunks;
+    }
+
+    /**
+     * The maximum number of times to upload a failed chunk again
+     */
+    public int getUploadRetryLimit()
+    {
+        return uploadRetryLimit;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TDRecordImporterConfig{" +
+                "chunkSizeBytes=" + chunkSizeBytes +
+                ", flushIntervalMillis=" + flushIntervalMillis +
+                ", uploadThreads=" + uploadThreads +
+                ", maxQueuedChunks=" + maxQueuedChunks +
+                ", uploadRetryLimit=" + uploadRetryLimit +
+                '}';
+    }
+
+    public static class TDRecordImporterConfigBuilder
+    {
+        private int chunkSizeBytes = 8 * 1024 * 1024;
+        private long flushIntervalMillis = 10000;
+        private int uploadThreads = 4;
+        private int maxQueuedChunks = 8;
+        private int uploadRetryLimit = 3;
+
+        public TDRecordImporterConfigBuilder()
+        {
+        }
+
+        public TDRecordImporterConfigBuilder setChunkSizeBytes(int chunkSizeBytes)
+        {
+            this.chunkSizeBytes = chunkSizeBytes;
+            return this;
+        }
+
+        public TDRecordImporterConfigBuilder setFlushIntervalMillis(long flushIntervalMillis)
+        {
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+
+        public TDRecordImporterConfigBuilder setUploadThreads(int uploadThreads)
+        {
+            this.uploadThreads = uploadThreads;
+            return this;
+        }
+
+        public TDRecordImporterConfigBuilder setMaxQueuedChunks(int maxQueuedChunks)
+        {
+            this.maxQueuedChunks = maxQueuedChunks;
+            return this;
+        }
+
+        public TDRecordImporterConfigBuilder setUploadRetryLimit(int uploadRetryLimit)
+        {
+            this.uploadRetryLimit = uploadRetryLimit;
+            return this;
+        }
+
+        public TDRecordImporterConfig createTDRecordImporterConfig()
+        {
+            return new TDRecordImporterConfig(chunkSizeBytes, flushIntervalMillis, uploadThreads, maxQueuedChunks, uploadRetryLimit);
+        }
+    }
+}
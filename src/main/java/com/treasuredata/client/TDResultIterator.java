@@ -0,0 +1,413 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.treasuredata.client.model.TDColumn;
+import com.treasuredata.client.model.TDColumnType;
+import com.treasuredata.client.model.TDResultFormat;
+import org.msgpack.core.MessageFormatException;
+import org.msgpack.core.MessageIntegerOverflowException;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageTypeException;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+import static com.treasuredata.client.TDClientException.ErrorType.EXECUTION_FAILURE;
+import static com.treasuredata.client.TDClientException.ErrorType.INVALID_INPUT;
+import static com.treasuredata.client.TDClientException.ErrorType.INVALID_JSON_RESPONSE;
+
+/**
+ * Iterates over the rows of a job result in MESSAGE_PACK or MESSAGE_PACK_GZ format without reading the whole result into memory.
+ * <p>
+ * Each value is decoded according to the type of its column: int and long columns as Long, float and double as Double,
+ * string as String, array as List and map as Map. A value that cannot be converted to the column type becomes null,
+ * as in the schema-on-read of Treasure Data. Columns beyond the schema are decoded by their own msgpack types.
+ * <p>
+ * For constant memory usage, {@link #next()} returns the same array for every row, overwritten by the next call.
+ * Copy the array to keep the values of a row.
+ */
+public class TDResultIterator
+        implements Iterator<Object[]>, AutoCloseable
+{
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MessageUnpacker unpacker;
+    private final List<TDColumn> schema;
+    private final TDColumnType[] columnTypes;
+    private Object[] row;
+
+    public TDResultIterator(InputStream in, TDResultFormat format, List<TDColumn> schema)
+    {
+        this.unpacker = MessagePack.newDefaultUnpacker(openStream(in, format));
+        this.schema = Collections.unmodifiableList(new ArrayList<>(schema));
+        this.columnTypes = new TDColumnType[schema.size()];
+        for (int i = 0; i < columnTypes.length; i++) {
+            columnTypes[i] = schema.get(i).getType();
+        }
+        this.row = new Object[columnTypes.length];
+    }
+
+    private static InputStream openStream(InputStream in, TDResultFormat format)
+    {
+        switch (format) {
+            case MESSAGE_PACK:
+                return in;
+            case MESSAGE_PACK_GZ:
+                try {
+                    return new GZIPInputStream(in);
+                }
+                catch (IOException e) {
+                    throw new TDClientException(EXECUTION_FAILURE, "Failed to read the job result", e);
+                }
+            default:
+                throw new TDClientException(INVALID_INPUT, "TDResultIterator does not support " + format + " format");
+        }
+    }
+
+    /**
+     * Parse the result schema of a job (e.g., [["cnt","bigint"],["tags","array(varchar)"]]) into columns.
+     * Hive and Presto types are mapped to the nearest column types: integer types to long, floating point and decimal types
+     * to double, and the other types to string.
+     *
+     * @param resultSchema the value of {@link com.treasuredata.client.model.TDJob#getResultSchema()}
+     */
+    public static List<TDColumn> parseResultSchema(String resultSchema)
+    {
+        String[][] columns;
+        try {
+            columns = objectMapper.readValue(resultSchema, String[][].class);
+        }
+        catch (IOException e) {
+            throw new TDClientException(INVALID_JSON_RESPONSE, "Invalid result schema: " + resultSchema, e);
+        }
+        List<TDColumn> schema = new ArrayList<>(columns.length);
+        for (String[] column : columns) {
+            if (column.length < 2) {
+                throw new TDClientException(INVALID_JSON_RESPONSE, "Invalid result schema: " + resultSchema);
+            }
+            schema.add(new TDColumn(column[0], toColumnType(column[1])));
+        }
+        return schema;
+    }
+
+    static TDColumnType toColumnType(String resultType)
+    {
+        String type = resultType.trim().toLowerCase(Locale.ENGLISH);
+        int paramStart = indexOfAny(type, '<', '(');
+        String name = paramStart < 0 ? type : type.substring(0, paramStart).trim();
+        List<String> params = paramStart < 0 ? Collections.emptyList() : splitTypeParameters(type.substring(paramStart + 1, type.length() - 1));
+        switch (name) {
+            case "tinyint":
+            case "smallint":
+            case "int":
+            case "integer":
+            case "bigint":
+            case "long":
+                return TDColumnType.LONG;
+            case "real":
+            case "float":
+            case "double":
+            case "decimal":
+                return TDColumnType.DOUBLE;
+            case "array":
+                if (params.size() == 1) {
+                    return TDColumnType.newArrayType(toColumnType(params.get(0)));
+                }
+                break;
+            case "map":
+                if (params.size() == 2) {
+                    return TDColumnType.newMapType(toColumnType(params.get(0)), toColumnType(params.get(1)));
+                }
+                break;
+            default:
+                break;
+        }
+        return TDColumnType.STRING;
+    }
+
+    private static int indexOfAny(String s, char c1, char c2)
+    {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c1 || s.charAt(i) == c2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Split "varchar, array(bigint)" into the top-level type parameters
+     */
+    private static List<String> splitTypeParameters(String params)
+    {
+        List<String> result = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < params.length(); i++) {
+            char c = params.charAt(i);
+            if (c == '<' || c == '(') {
+                depth++;
+            }
+            else if (c == '>' || c == ')') {
+                depth--;
+            }
+            else if (c == ',' && depth == 0) {
+                result.add(params.substring(start, i));
+                start = i + 1;
+            }
+        }
+        result.add(params.substring(start));
+        return result;
+    }
+
+    public List<TDColumn> getSchema()
+    {
+        return schema;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        try {
+            return unpacker.hasNext();
+        }
+        catch (IOException e) {
+            throw new TDClientException(EXECUTION_FAILURE, "Failed to read the job result", e);
+        }
+    }
+
+    /**
+     * Read the next row. The returned array is reused for the following rows.
+     */
+    @Override
+    public Object[] next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            int numValues;
+            try {
+                numValues = unpacker.unpackArrayHeader();
+            }
+            catch (MessageTypeException e) {
+                throw new TDClientException(EXECUTION_FAILURE, "A row of the msgpack job result must be an array", e);
+            }
+            int rowLength = Math.max(columnTypes.length, numValues);
+            if (row.length != rowLength) {
+                row = new Object[rowLength];
+            }
+            for (int i = 0; i < numValues; i++) {
+                try {
+                    row[i] = i < columnTypes.length ? unpackValue(columnTypes[i]) : unpackValue();
+                }
+                catch (MessageFormatException e) {
+                    throw new TDClientException(EXECUTION_FAILURE, String.format("Failed to decode column %d of the msgpack job result", i), e);
+                }
+            }
+            // Missing values
+            Arrays.fill(row, numValues, rowLength, null);
+            return row;
+        }
+        catch (IOException e) {
+            throw new TDClientException(EXECUTION_FAILURE, "Failed to read the job result", e);
+        }
+    }
+
+    private Object unpackValue(TDColumnType type)
+            throws IOException
+    {
+        ValueType valueType = unpacker.getNextFormat().getValueType();
+        if (valueType == ValueType.NIL) {
+            unpacker.unpackNil();
+            return null;
+        }
+        // Read the value directly if it has the expected type
+        switch (type.getTypeName()) {
+            case INT:
+            case LONG:
+                if (valueType == ValueType.INTEGER) {
+                    return unpackLong();
+                }
+                break;
+            case FLOAT:
+            case DOUBLE:
+                if (valueType == ValueType.FLOAT) {
+                    return unpacker.unpackDouble();
+                }
+                break;
+            case STRING:
+                if (valueType == ValueType.STRING) {
+                    return unpacker.unpackString();
+                }
+                break;
+            case ARRAY:
+                if (valueType == ValueType.ARRAY) {
+                    int size = unpacker.unpackArrayHeader();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(unpackValue(type.getArrayElementType()));
+                    }
+                    return list;
+                }
+                break;
+            case MAP:
+                if (valueType == ValueType.MAP) {
+                    int size = unpacker.unpackMapHeader();
+                    Map<Object, Object> map = new LinkedHashMap<>(size * 2);
+                    for (int i = 0; i < size; i++) {
+                        Object key = unpackValue(type.getMapKeyType());
+                        map.put(key, unpackValue(type.getMapValueType()));
+                    }
+                    return map;
+                }
+                break;
+            default:
+                break;
+        }
+        return convert(unpacker.unpackValue(), type);
+    }
+
+    private Long unpackLong()
+            throws IOException
+    {
+        try {
+            return unpacker.unpackLong();
+        }
+        catch (MessageIntegerOverflowException e) {
+            // An unsigned 64-bit integer out of the long range
+            return null;
+        }
+    }
+
+    /**
+     * Decode a value of a column without a schema by its msgpack type
+     */
+    private Object unpackValue()
+            throws IOException
+    {
+        switch (unpacker.getNextFormat().getValueType()) {
+            case NIL:
+                unpacker.unpackNil();
+                return null;
+            case BOOLEAN:
+                return unpacker.unpackBoolean();
+            case INTEGER:
+                return unpackLong();
+            case FLOAT:
+                return unpacker.unpackDouble();
+            case STRING:
+                return unpacker.unpackString();
+            case ARRAY: {
+                int size = unpacker.unpackArrayHeader();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(unpackValue());
+                }
+                return list;
+            }
+            case MAP: {
+                int size = unpacker.unpackMapHeader();
+                Map<Object, Object> map = new LinkedHashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    Object key = unpackValue();
+                    map.put(key, unpackValue());
+                }
+                return map;
+            }
+            default:
+                // Binary and extension types
+                return convert(unpacker.unpackValue(), TDColumnType.STRING);
+        }
+    }
+
+    private static Object convert(Value value, TDColumnType type)
+    {
+        switch (type.getTypeName()) {
+            case INT:
+            case LONG:
+                if (value.isFloatValue()) {
+                    return (long) value.asFloatValue().toDouble();
+                }
+                if (value.isIntegerValue() && value.asIntegerValue().isInLongRange()) {
+                    return value.asIntegerValue().toLong();
+                }
+                if (value.isStringValue()) {
+                    try {
+                        return Long.parseLong(value.asStringValue().asString().trim());
+                    }
+                    catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+                return null;
+            case FLOAT:
+            case DOUBLE:
+                if (value.isIntegerValue()) {
+                    return value.asIntegerValue().toDouble();
+                }
+                if (value.isStringValue()) {
+                    try {
+                        return Double.parseDouble(value.asStringValue().asString().trim());
+                    }
+                    catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+                return null;
+            case STRING:
+                if (value.isRawValue()) {
+                    return new String(value.asRawValue().asByteArray(), StandardCharsets.UTF_8);
+                }
+                if (value.isArrayValue() || value.isMapValue()) {
+                    return value.toJson();
+                }
+                return value.toString();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            unpacker.close();
+        }
+        catch (IOException e) {
+            throw new TDClientException(EXECUTION_FAILURE, "Failed to close the job result", e);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Optional;
+
+import static com.treasuredata.client.TDClientException.ErrorType.UNEXPECTED_RESPONSE_CODE;
+
+/**
+ * An InputStream of a large response body that survives connection failures in the middle of the body.
+ * <p>
+ * It counts the bytes already read, and upon a retryable read error it re-issues the request with a Range header
+ * to continue from there, waiting with the configured {@link BackOff} between attempts. The retry limit applies to
+ * consecutive failures without progress. If the server ignores the Range header, the bytes already read are skipped.
+ * The first request has no Range header, so that OkHttp still asks for a gzip transfer encoding. If the server has
+ * compressed the body, the positions of the decompressed bytes do not match the body sent by the server,
+ * so the whole body is requested again and the bytes already read are skipped instead.
+ */
+class TDResumableInputStream
+        extends InputStream
+{
+    private static final Logger logger = LoggerFactory.getLogger(TDResumableInputStream.class);
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    private final TDHttpClient httpClient;
+    private final TDApiRequest request;
+    private final Optional<String> apiKeyCache;
+
+    private BackOff backoff;
+    // The position of the last read error
+    private long failedPosition = -1;
+    private long position;
+    private Response response;
+    // True if OkHttp has decompressed the gzip-encoded body of the first response
+    private boolean decompressed;
+    // Bytes to skip when the server ignored the Range header
+    private long bytesToSkip;
+    // True if no more bytes are available
+    private boolean exhausted;
+    private boolean closed;
+
+    TDResumableInputStream(TDHttpClient httpClient, TDApiRequest request, Optional<String> apiKeyCache)
+            throws TDClientException
+    {
+        this.httpClient = httpClient;
+        this.request = request;
+        this.apiKeyCache = apiKeyCache;
+        open();
+    }
+
+    /**
+     * The number of bytes read so far
+     */
+    long getPosition()
+    {
+        return position;
+    }
+
+    private void open()
+            throws TDClientException
+    {
+        long start = position;
+        // A Range header disables the transparent gzip decompression of OkHttp, so only send it when resuming
+        boolean ranged = start > 0 && !decompressed;
+        Response r = httpClient.submitRequest(request, apiKeyCache, new TDHttpClient.ResponseStreamHandler()
+        {
+            @Override
+            public Request prepareRequest(Request request)
+            {
+                if (!ranged) {
+                    return request;
+                }
+                return request.newBuilder()
+                        .header("Range", String.format("bytes=%d-", start))
+                        .build();
+            }
+
+            @Override
+            public boolean isSuccess(ResponseContext responseContext)
+            {
+                // No more bytes to read after a failure at the end of the body
+                return responseContext.response.isSuccessful() || (ranged && responseContext.response.code() == HTTP_RANGE_NOT_SATISFIABLE);
+            }
+        });
+        if (start == 0) {
+            decompressed = isDecompressed(r);
+        }
+        if (r.code() == HTTP_RANGE_NOT_SATISFIABLE) {
+            r.close();
+            exhausted = true;
+            return;
+        }
+        if (r.code() == HTTP_PARTIAL_CONTENT) {
+            String header = r.header("Content-Range");
+            if (!TDContentRange.parse(header).filter(range -> range.getStart() == start).isPresent()) {
+                r.close();
+                throw new TDClientException(UNEXPECTED_RESPONSE_CODE, String.format("Unexpected Content-Range for bytes %d-: %s", start, header));
+            }
+            bytesToSkip = 0;
+        }
+        else {
+            // The server ignored the Range header, or no Range header was sent, and returned the whole body
+            bytesToSkip = start;
+        }
+        response = r;
+    }
+
+    private static boolean isDecompressed(Response response)
+    {
+        // OkHttp removes the Content-Encoding header of a response it decompresses
+        Response networkResponse = response.networkResponse();
+        return networkResponse != null && "gzip".equalsIgnoreCase(networkResponse.header("Content-Encoding")) && response.header("Content-Encoding") == null;
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        while (true) {
+            ensureOpen();
+            if (exhausted) {
+                return -1;
+            }
+            try {
+                int b = body().read();
+                if (b >= 0) {
+                    position++;
+                }
+                return b;
+            }
+            catch (IOException e) {
+                resume(e);
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        while (true) {
+            ensureOpen();
+            if (exhausted) {
+                return -1;
+            }
+            try {
+                int n = body().read(b, off, len);
+                if (n > 0) {
+                    position += n;
+                }
+                return n;
+            }
+            catch (IOException e) {
+                resume(e);
+            }
+        }
+    }
+
+    private InputStream body()
+            throws IOException
+    {
+        if (bytesToSkip > 0) {
+            logger.debug("Skipping {} bytes already read from {}", bytesToSkip, request.getPath());
+            response.body().source().skip(bytesToSkip);
+            bytesToSkip = 0;
+        }
+        return response.body().byteStream();
+    }
+
+    @Override
+    public int available()
+            throws IOException
+    {
+        ensureOpen();
+        return exhausted || bytesToSkip > 0 ? 0 : response.body().byteStream().available();
+    }
+
+    private void ensureOpen()
+            throws IOException
+    {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (response == null && !exhausted) {
+            throw new IOException("Failed to resume reading " + request.getPath());
+        }
+    }
+
+    /**
+     * Reopen the body from the current position, or rethrow the error if it is not retryable
+     */
+    private void resume(IOException e)
+            throws IOException
+    {
+        closeResponse();
+        try {
+            // Throws TDClientException if the error is not retryable
+            TDRequestErrorHandler.defaultExceptionResolver(e);
+        }
+        catch (TDClientException nonRetryable) {
+            throw e;
+        }
+        if (position != failedPosition) {
+            // Made some progress since the last failure
+            backoff = BackOffStrategy.newBackOff(httpClient.config);
+            failedPosition = position;
+        }
+        int retryLimit = httpClient.config.retryLimit;
+        if (backoff.getExecutionCount() >= retryLimit) {
+            logger.warn("Retry limit exceeded while reading {} at byte {}: ({}/{})", request.getPath(), position, retryLimit, retryLimit);
+            throw e;
+        }
+        int waitTimeMillis = backoff.nextWaitTimeMillis();
+        logger.warn(String.format("Resuming %s from byte %,d (%d/%d) in %.2f sec. cause: %s", request.getPath(), position, backoff.getExecutionCount(), retryLimit, waitTimeMillis / 1000.0, e));
+        try {
+            Thread.sleep(waitTimeMillis);
+        }
+        catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ie = new InterruptedIOException("Interrupted while resuming " + request.getPath());
+            ie.addSuppressed(e);
+            throw ie;
+        }
+        try {
+            open();
+        }
+        catch (TDClientException openFailure) {
+            openFailure.addSuppressed(e);
+            throw openFailure;
+        }
+    }
+
+    private void closeResponse()
+    {
+        if (response != null) {
+            response.close();
+            response = null;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        closeResponse();
+    }
+}
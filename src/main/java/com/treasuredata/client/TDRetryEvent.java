@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event of the backoff wait before retrying a TD API request
+ */
+@Name("com.treasuredata.client.Retry")
+@Label("TD API Retry")
+@Category({"Treasure Data", "TD Client"})
+@Description("A backoff wait before retrying a TD API request")
+class TDRetryEvent
+        extends jdk.jfr.Event
+{
+    @Label("Path")
+    String path;
+
+    @Label("Attempt")
+    @Description("The number of the attempt made after this wait. 2 for the first retry")
+    int attempt;
+
+    @Label("Cause")
+    String cause;
+}
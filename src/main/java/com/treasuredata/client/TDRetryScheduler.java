@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timer for scheduling API request retries without holding a thread during the backoff.
+ * Unless a shared executor is given, the underlying thread is started lazily,
+ * so clients that never retry asynchronously do not pay for it.
+ */
+class TDRetryScheduler
+        implements AutoCloseable
+{
+    private final boolean isShared;
+    private ScheduledExecutorService executor;
+
+    TDRetryScheduler(Optional<ScheduledExecutorService> sharedExecutor)
+    {
+        this.isShared = sharedExecutor.isPresent();
+        this.executor = sharedExecutor.orElse(null);
+    }
+
+    synchronized ScheduledExecutorService getExecutor()
+    {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("td-client-retry-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        return executor;
+    }
+
+    ScheduledFuture<?> schedule(Runnable task, long delayMillis)
+    {
+        return getExecutor().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        // A shared executor is owned by the user
+        if (executor != null && !isShared) {
+            executor.shutdownNow();
+        }
+    }
+}
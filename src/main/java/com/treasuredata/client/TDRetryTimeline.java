@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A record of the attempts made for a single API request, including its retries and followed redirects.
+ */
+public class TDRetryTimeline
+{
+    public static class Attempt
+    {
+        private final int executionCount;
+        private final String method;
+        private final String path;
+        private final long waitTimeMillis;
+        private final long startTimeMillis;
+        private final long startNanos;
+        private volatile int statusCode = -1;
+        private volatile Throwable error;
+        private volatile long responseBytes = -1;
+        private volatile long elapsedNanos = -1;
+        private volatile TDCallTimings callTimings;
+
+        Attempt(int executionCount, String method, String path, long waitTimeMillis, long startTimeMillis)
+        {
+            this.executionCount = executionCount;
+            this.method = method;
+            this.path = path;
+            this.waitTimeMillis = waitTimeMillis;
+            this.startTimeMillis = startTimeMillis;
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * The execution count of the request at this attempt. 1 for the first attempt.
+         * Following a redirect does not count up the execution.
+         */
+        public int getExecutionCount()
+        {
+            return executionCount;
+        }
+
+        /**
+         * The http method name (e.g., GET)
+         */
+        public String getMethod()
+        {
+            return method;
+        }
+
+        public String getPath()
+        {
+            return path;
+        }
+
+        /**
+         * The backoff wait before this attempt
+         */
+        public long getWaitTimeMillis()
+        {
+            return waitTimeMillis;
+        }
+
+        public long getStartTimeMillis()
+        {
+            return startTimeMillis;
+        }
+
+        /**
+         * The http status code of the response, or empty if no response was received
+         */
+        public Optional<Integer> getStatusCode()
+        {
+            return statusCode == -1 ? Optional.empty() : Optional.of(statusCode);
+        }
+
+        /**
+         * The error raised during this attempt
+         */
+        public Optional<Throwable> getError()
+        {
+            return Optional.ofNullable(error);
+        }
+
+        /**
+         * The number of response body bytes read by the client, or empty if not measured
+         */
+        public Optional<Long> getResponseBytes()
+        {
+            return responseBytes == -1 ? Optional.empty() : Optional.of(responseBytes);
+        }
+
+        /**
+         * Connection-level timings of the http call, recorded only when metrics are collected
+         */
+        public Optional<TDCallTimings> getCallTimings()
+        {
+            return Optional.ofNullable(callTimings);
+        }
+
+        /**
+         * The time spent for this attempt excluding the backoff wait, or -1 if the attempt is in progress
+         */
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        void setStatusCode(int statusCode)
+        {
+            this.statusCode = statusCode;
+        }
+
+        void setError(Throwable error)
+        {
+            this.error = error;
+        }
+
+        void setResponseBytes(long responseBytes)
+        {
+            this.responseBytes = responseBytes;
+        }
+
+        void setCallTimings(TDCallTimings callTimings)
+        {
+            this.callTimings = callTimings;
+        }
+
+        void finish()
+        {
+            this.elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Attempt{executionCount=%d, method=%s, path=%s, waitTimeMillis=%d, statusCode=%s, error=%s}",
+                    executionCount, method, path, waitTimeMillis, getStatusCode().map(String::valueOf).orElse("none"), error);
+        }
+    }
+
+    private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+    private final long startNanos = System.nanoTime();
+    // The normalized path of the request. Set only when metrics are collected
+    private volatile String pathTemplate;
+
+    Attempt newAttempt(int executionCount, String method, String path, long waitTimeMillis)
+    {
+        Attempt attempt = new Attempt(executionCount, method, path, waitTimeMillis, System.currentTimeMillis());
+        attempts.add(attempt);
+        return attempt;
+    }
+
+    long getElapsedNanos()
+    {
+        return System.nanoTime() - startNanos;
+    }
+
+    String getPathTemplate()
+    {
+        return pathTemplate;
+    }
+
+    void setPathTemplate(String pathTemplate)
+    {
+        this.pathTemplate = pathTemplate;
+    }
+
+    public List<Attempt> getAttempts()
+    {
+        return Collections.unmodifiableList(attempts);
+    }
+
+    /**
+     * The total time spent for waiting between the attempts
+     */
+    public long getTotalWaitTimeMillis()
+    {
+        long total = 0;
+        for (Attempt attempt : attempts) {
+            total += attempt.getWaitTimeMillis();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TDRetryTimeline" + attempts;
+    }
+}
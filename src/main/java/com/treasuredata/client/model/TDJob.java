@@ -284,6 +284,11 @@ public class TDJob
         return startAt;
     }
 
+    public String getUpdatedAt()
+    {
+        return updatedAt;
+    }
+
     public String getEndAt()
     {
         return endAt;
@@ -22,6 +22,7 @@ import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -303,6 +304,35 @@ public class TestServerFailures
         }
     }
 
+    @Test
+    public void retryOnTruncatedJsonResponse()
+            throws Exception
+    {
+        StringBuilder body = new StringBuilder("{\"databases\":[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                body.append(",");
+            }
+            body.append("{\"name\":\"db").append(i).append("\"}");
+        }
+        body.append("]}");
+        server.enqueue(new MockResponse().setBody(body.toString()).setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        server.enqueue(new MockResponse().setBody(body.toString()));
+        server.start(port);
+
+        TDClient client = TDClient
+                .newBuilder()
+                .setEndpoint("localhost")
+                .setUseSSL(false)
+                .setPort(port)
+                .setRetryInitialIntervalMillis(10)
+                .build();
+
+        // A connection failure while binding the streamed response body should be retried
+        assertEquals(1000, client.listDatabaseNames().size());
+        assertEquals(2, server.getRequestCount());
+    }
+
     @Test
     public void errorBodyTimeoutRetryTest()
             throws Exception
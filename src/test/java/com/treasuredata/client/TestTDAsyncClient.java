@@ -0,0 +1,442 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDBulkImportSession;
+import com.treasuredata.client.model.TDJob;
+import com.treasuredata.client.model.TDJobSummary;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestTDAsyncClient
+{
+    private MockWebServer server;
+    private TDAsyncClient client;
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        server = new MockWebServer();
+        server.start();
+        client = TDAsyncClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setApiKey("1/0123456789abcdef0123456789abcdef01234567")
+                .setRetryInitialIntervalMillis(10)
+                .setRetryMaxIntervalMillis(100)
+                .setRetryLimit(3)
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws Exception
+    {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void jobStatus()
+            throws Exception
+    {
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"success\",\"duration\":3}"));
+
+        TDJobSummary summary = client.jobStatus("17").get(10, TimeUnit.SECONDS);
+        assertThat(summary.getJobId(), is("17"));
+        assertThat(summary.getStatus(), is(TDJob.Status.SUCCESS));
+
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getPath(), is("/v3/job/status/17"));
+        assertThat(request.getHeader("Authorization"), is("TD1 1/0123456789abcdef0123456789abcdef01234567"));
+    }
+
+    @Test
+    public void waitForJob()
+            throws Exception
+    {
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"running\",\"duration\":1}"));
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"error\",\"duration\":2}"));
+        TDJobPollingConfig polling = new TDJobPollingConfig.TDJobPollingConfigBuilder()
+                .setInitialIntervalMillis(10)
+                .createTDJobPollingConfig();
+
+        TDJobSummary summary = client.waitForJob("17", Duration.ofSeconds(10), polling).get(10, TimeUnit.SECONDS);
+        assertThat(summary.getStatus(), is(TDJob.Status.ERROR));
+        assertEquals(2, server.getRequestCount());
+
+        // Cancelling the future stops polling
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"18\",\"status\":\"running\",\"duration\":1}"));
+        CompletableFuture<TDJobSummary> future = client.waitForJob("18", Duration.ofSeconds(10), new TDJobPollingConfig.TDJobPollingConfigBuilder()
+                .setInitialIntervalMillis(200)
+                .createTDJobPollingConfig());
+        server.takeRequest();
+        future.cancel(false);
+        Thread.sleep(500);
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void coalesceIdenticalRequests()
+            throws Exception
+    {
+        try (TDAsyncClient coalescingClient = TDAsyncClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setApiKey("1/0123456789abcdef0123456789abcdef01234567")
+                .setCoalesceRequests(true)
+                .build()) {
+            server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"success\"}").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+            server.enqueue(new MockResponse().setBody("{\"job_id\":\"18\",\"status\":\"running\"}"));
+
+            CompletableFuture<TDJobSummary> f1 = coalescingClient.jobStatus("17");
+            CompletableFuture<TDJobSummary> f2 = coalescingClient.jobStatus("17");
+            // Cancelling one of the callers does not affect the others
+            CompletableFuture<TDJobSummary> f3 = coalescingClient.jobStatus("17");
+            f3.cancel(false);
+            assertThat(f1.get(10, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.SUCCESS));
+            assertThat(f2.get(10, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.SUCCESS));
+            assertEquals(1, server.getRequestCount());
+
+            // A new request is sent after the shared one has completed
+            assertThat(coalescingClient.jobStatus("18").get(10, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.RUNNING));
+            assertEquals(2, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void multiplexRequestsOverHttp2()
+            throws Exception
+    {
+        try (MockWebServer h2cServer = new MockWebServer()) {
+            h2cServer.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+            h2cServer.start();
+            try (TDAsyncClient h2cClient = TDAsyncClient.newBuilder(false)
+                    .setUseSSL(false)
+                    .setEndpoint(h2cServer.getHostName())
+                    .setPort(h2cServer.getPort())
+                    .setProtocol(TDHttpProtocol.H2C)
+                    .setConnectionPoolSize(1)
+                    .setMaxRequestsPerHost(10)
+                    .build()) {
+                for (int i = 0; i < 10; i++) {
+                    h2cServer.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"running\"}").setHeadersDelay(200, TimeUnit.MILLISECONDS));
+                }
+                List<CompletableFuture<TDJobSummary>> futures = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    futures.add(h2cClient.jobStatus("17"));
+                }
+                for (CompletableFuture<TDJobSummary> future : futures) {
+                    assertThat(future.get(10, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.RUNNING));
+                }
+                // All of the requests are sent as streams of a single connection
+                Set<Integer> sequenceNumbers = new HashSet<>();
+                for (int i = 0; i < 10; i++) {
+                    sequenceNumbers.add(h2cServer.takeRequest().getSequenceNumber());
+                }
+                assertEquals(10, sequenceNumbers.size());
+                assertThat(Collections.max(sequenceNumbers), is(9));
+            }
+        }
+    }
+
+    @Test
+    public void recordCallTimings()
+            throws Exception
+    {
+        List<TDRetryTimeline.Attempt> attempts = new ArrayList<>();
+        try (TDAsyncClient metricsClient = TDAsyncClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setMetrics(new TDClientMetrics()
+                {
+                    @Override
+                    public void attemptFinished(String pathTemplate, TDRetryTimeline.Attempt attempt)
+                    {
+                        attempts.add(attempt);
+                    }
+                })
+                .build()) {
+            server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"success\"}"));
+            metricsClient.jobStatus("17").get(10, TimeUnit.SECONDS);
+
+            assertEquals(1, attempts.size());
+            TDCallTimings timings = attempts.get(0).getCallTimings().get();
+            assertFalse(timings.isConnectionReused());
+            assertThat(timings.getNanos(TDCallTimings.Phase.TIME_TO_FIRST_BYTE) >= 0, is(true));
+            assertThat(timings.getNanos(TDCallTimings.Phase.BODY_READ) >= 0, is(true));
+            assertThat(attempts.get(0).getResponseBytes().get() > 0, is(true));
+        }
+    }
+
+    @Test
+    public void retryOnServerError()
+            throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"running\"}"));
+
+        TDJobSummary summary = client.jobStatus("17").get(10, TimeUnit.SECONDS);
+        assertThat(summary.getStatus(), is(TDJob.Status.RUNNING));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void retryOnSharedScheduler()
+            throws Exception
+    {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            try (TDAsyncClient sharedClient = TDAsyncClient.newBuilder(false)
+                    .setUseSSL(false)
+                    .setEndpoint(server.getHostName())
+                    .setPort(server.getPort())
+                    .setApiKey("1/0123456789abcdef0123456789abcdef01234567")
+                    .setRetryInitialIntervalMillis(10)
+                    .setRetryMaxIntervalMillis(100)
+                    .setRetryScheduler(scheduler)
+                    .build()) {
+                server.enqueue(new MockResponse().setResponseCode(503));
+                server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"running\"}"));
+
+                TDJobSummary summary = sharedClient.jobStatus("17").get(10, TimeUnit.SECONDS);
+                assertThat(summary.getStatus(), is(TDJob.Status.RUNNING));
+                assertEquals(2, server.getRequestCount());
+            }
+            // A shared scheduler is owned by the caller
+            assertFalse(scheduler.isShutdown());
+        }
+        finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void existsTable()
+            throws Exception
+    {
+        server.enqueue(new MockResponse().setBody("{\"id\":1,\"name\":\"www_access\",\"type\":\"log\",\"schema\":\"[]\"}"));
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        assertThat(client.existsTable("sample_datasets", "www_access").get(10, TimeUnit.SECONDS), is(true));
+        assertThat(client.existsTable("sample_datasets", "missing").get(10, TimeUnit.SECONDS), is(false));
+        assertThat(server.takeRequest().getPath(), is("/v3/table/show/sample_datasets/www_access"));
+    }
+
+    @Test
+    public void failAfterRetryLimit()
+            throws Exception
+    {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+        }
+        try {
+            client.jobStatus("17").get(10, TimeUnit.SECONDS);
+            fail("cannot reach here");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TDClientHttpException.class));
+            assertEquals(TDClientException.ErrorType.SERVER_ERROR, ((TDClientHttpException) e.getCause()).getErrorType());
+        }
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void notFoundIsNotRetried()
+            throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        try {
+            client.showDatabase("missing").get(10, TimeUnit.SECONDS);
+            fail("cannot reach here");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TDClientHttpNotFoundException.class));
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void missingTableDistribution()
+            throws Exception
+    {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        assertFalse(client.tableDistribution("db", "tbl").get(10, TimeUnit.SECONDS).isPresent());
+    }
+
+    @Test
+    public void concurrentRequests()
+            throws Exception
+    {
+        int n = 100;
+        for (int i = 0; i < n; i++) {
+            server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"success\"}"));
+        }
+        List<CompletableFuture<TDJobSummary>> futures = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            futures.add(client.jobStatus("17"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        for (CompletableFuture<TDJobSummary> f : futures) {
+            assertThat(f.get().getJobId(), is("17"));
+        }
+        assertEquals(n, server.getRequestCount());
+    }
+
+    private static MockResponse bulkImportSession(String status, boolean frozen, long validRecords, long errorRecords)
+    {
+        return new MockResponse().setBody(String.format("{\"name\":\"session\",\"database\":\"db\",\"table\":\"tbl\",\"status\":\"%s\",\"upload_frozen\":%s,"
+                + "\"job_id\":\"17\",\"valid_records\":%d,\"error_records\":%d,\"valid_parts\":2,\"error_parts\":0}", status, frozen, validRecords, errorRecords));
+    }
+
+    @Test
+    public void bulkImport()
+            throws Exception
+    {
+        Map<String, File> parts = new LinkedHashMap<>();
+        for (String name : Arrays.asList("part1", "part2")) {
+            File file = File.createTempFile(name, ".msgpack.gz");
+            file.deleteOnExit();
+            Files.write(file.toPath(), name.getBytes());
+            parts.put(name, file);
+        }
+        // Resume a session in which part1 has been uploaded
+        server.enqueue(new MockResponse().setResponseCode(409).setBody("{\"message\":\"already exists\"}"));
+        server.enqueue(bulkImportSession("uploading", false, 0, 0));
+        server.enqueue(new MockResponse().setBody("{\"name\":\"session\",\"parts\":[\"part1\"]}"));
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(bulkImportSession("uploading", false, 0, 0));
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\"}"));
+        server.enqueue(bulkImportSession("performing", true, 10, 0));
+        server.enqueue(bulkImportSession("ready", true, 20, 1));
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(bulkImportSession("committing", true, 20, 1));
+        server.enqueue(bulkImportSession("committed", true, 20, 1));
+
+        TDJobPollingConfig polling = new TDJobPollingConfig.TDJobPollingConfigBuilder()
+                .setInitialIntervalMillis(10)
+                .createTDJobPollingConfig();
+        List<String> progress = Collections.synchronizedList(new ArrayList<>());
+        TDBulkImportSession session = client.bulkImport("session", "db", "tbl", parts, Duration.ofSeconds(10), polling,
+                s -> progress.add(s.getStatus() + ":" + s.getValidRecords() + "/" + s.getErrorRecords())).get(10, TimeUnit.SECONDS);
+
+        assertThat(session.getStatus(), is(TDBulkImportSession.ImportStatus.COMMITTED));
+        assertEquals(20, session.getValidRecords());
+        assertEquals(Arrays.asList("UPLOADING:0/0", "PERFORMING:10/0", "READY:20/1", "COMMITTING:20/1", "COMMITTED:20/1"), progress);
+
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < server.getRequestCount(); i++) {
+            RecordedRequest request = server.takeRequest();
+            paths.add(request.getMethod() + " " + request.getPath().replaceAll("\\?.*", ""));
+        }
+        assertEquals(Arrays.asList(
+                "POST /v3/bulk_import/create/session/db/tbl",
+                "GET /v3/bulk_import/show/session",
+                "GET /v3/bulk_import/list_parts/session",
+                "PUT /v3/bulk_import/upload_part/session/part2",
+                "GET /v3/bulk_import/show/session",
+                "POST /v3/bulk_import/freeze/session",
+                "POST /v3/bulk_import/perform/session",
+                "GET /v3/bulk_import/show/session",
+                "GET /v3/bulk_import/show/session",
+                "POST /v3/bulk_import/commit/session",
+                "GET /v3/bulk_import/show/session",
+                "GET /v3/bulk_import/show/session"), paths);
+    }
+
+    @Test
+    public void cancelBulkImport()
+            throws Exception
+    {
+        server.enqueue(new MockResponse().setBody("{}"));
+        for (int i = 0; i < 10; i++) {
+            server.enqueue(bulkImportSession("performing", true, 10, 0));
+        }
+
+        TDJobPollingConfig polling = new TDJobPollingConfig.TDJobPollingConfigBuilder()
+                .setInitialIntervalMillis(200)
+                .createTDJobPollingConfig();
+        CountDownLatch performing = new CountDownLatch(2);
+        CompletableFuture<TDBulkImportSession> future = client.bulkImport("session", "db", "tbl", Collections.emptyMap(), Duration.ofSeconds(10), polling,
+                s -> performing.countDown());
+        // Cancel while polling the PERFORMING session
+        assertTrue(performing.await(10, TimeUnit.SECONDS));
+        future.cancel(false);
+        int requestCount = server.getRequestCount();
+        Thread.sleep(600);
+        assertEquals(requestCount, server.getRequestCount());
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void failBulkImportWithoutValidRecords()
+            throws Exception
+    {
+        server.enqueue(bulkImportSession("ready", true, 0, 5));
+
+        CompletableFuture<TDBulkImportSession> future = client.performAndCommitBulkImportSession("session", Duration.ofSeconds(10));
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("should not reach here");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TDClientException.class));
+            assertThat(((TDClientException) e.getCause()).getErrorType(), is(TDClientException.ErrorType.EXECUTION_FAILURE));
+        }
+        // Not committed
+        assertEquals(1, server.getRequestCount());
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDBulkImportSession;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTDBulkImportUploader
+{
+    private MockWebServer server;
+    private TDClient client;
+    // Records of the uploaded parts
+    private final Map<String, List<Value>> parts = new ConcurrentHashMap<>();
+    private final Set<String> listedParts = ConcurrentHashMap.newKeySet();
+    private final List<String> steps = Collections.synchronizedList(new ArrayList<>());
+    private volatile String status = "uploading";
+    private volatile boolean frozen;
+    // The number of polls to report the transient status
+    private final AtomicInteger pendingPolls = new AtomicInteger();
+    private volatile int failingUploadCode = 200;
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+            {
+                String path = request.getPath();
+                if (path.startsWith("/v3/bulk_import/list_parts/")) {
+                    String list = listedParts.stream().map(p -> "\"" + p + "\"").collect(Collectors.joining(","));
+                    return new MockResponse().setBody("{\"name\":\"session\",\"parts\":[" + list + "]}");
+                }
+                if (path.startsWith("/v3/bulk_import/upload_part/")) {
+                    if (failingUploadCode != 200) {
+                        return new MockResponse().setResponseCode(failingUploadCode).setBody("{\"message\":\"error\"}");
+                    }
+                    String partName = path.substring(path.lastIndexOf('/') + 1);
+                    List<Value> records = new ArrayList<>();
+                    try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(new GZIPInputStream(request.getBody().inputStream()))) {
+                        while (unpacker.hasNext()) {
+                            records.add(unpacker.unpackValue());
+                        }
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    parts.put(partName, records);
+                    return new MockResponse().setBody("{}");
+                }
+                if (path.startsWith("/v3/bulk_import/freeze/")) {
+                    steps.add("freeze");
+                    frozen = true;
+                    return new MockResponse().setBody("{}");
+                }
+                if (path.startsWith("/v3/bulk_import/perform/")) {
+                    steps.add("perform");
+                    status = "performing";
+                    pendingPolls.set(2);
+                    return new MockResponse().setBody("{\"job_id\":\"1\"}");
+                }
+                if (path.startsWith("/v3/bulk_import/commit/")) {
+                    steps.add("commit");
+                    status = "committing";
+                    pendingPolls.set(2);
+                    return new MockResponse().setBody("{}");
+                }
+                if (path.startsWith("/v3/bulk_import/show/")) {
+                    if (pendingPolls.get() > 0 && pendingPolls.decrementAndGet() == 0) {
+                        status = status.equals("performing") ? "ready" : "committed";
+                    }
+                    long validRecords = parts.values().stream().mapToLong(List::size).sum();
+                    return new MockResponse().setBody(String.format("{\"name\":\"session\",\"database\":\"db\",\"table\":\"tbl\",\"status\":\"%s\",\"upload_frozen\":%s,"
+                            + "\"job_id\":\"1\",\"valid_records\":%d,\"error_records\":0,\"valid_parts\":%d,\"error_parts\":0}", status, frozen, validRecords, parts.size()));
+                }
+                return new MockResponse().setResponseCode(404).setBody("{\"message\":\"not found\"}");
+            }
+        });
+        server.start();
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryLimit(0)
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws Exception
+    {
+        client.close();
+        server.shutdown();
+    }
+
+    private static TDBulkImportUploaderConfig config(long partSizeBytes)
+    {
+        return new TDBulkImportUploaderConfig.TDBulkImportUploaderConfigBuilder()
+                .setPartSizeBytes(partSizeBytes)
+                .setUploadThreads(3)
+                .setStatusPolling(new TDJobPollingConfig.TDJobPollingConfigBuilder().setInitialIntervalMillis(10).setMaxIntervalMillis(20).createTDJobPollingConfig())
+                .createTDBulkImportUploaderConfig();
+    }
+
+    private static byte[] msgpack(int numRecords, boolean gzip)
+            throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream stream = gzip ? new GZIPOutputStream(out) : out;
+        try (MessagePacker packer = MessagePack.newDefaultPacker(stream)) {
+            for (int i = 0; i < numRecords; i++) {
+                packer.packMapHeader(2);
+                packer.packString("time").packLong(1700000000L + i);
+                packer.packString("id").packString(String.format("%05d", i));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private List<Long> uploadedIds()
+    {
+        return parts.values().stream()
+                .flatMap(List::stream)
+                .map(v -> v.asMapValue().map().get(ValueFactory.newString("id")).asStringValue().asString())
+                .map(Long::parseLong)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void splitIntoPartsOnRecordBoundaries()
+            throws Exception
+    {
+        List<TDBulkImportUploader.Progress> progress = Collections.synchronizedList(new ArrayList<>());
+        List<String> partNames;
+        // Each record is 20 bytes
+        try (TDBulkImportUploader uploader = new TDBulkImportUploader(client, config(200), progress::add)) {
+            partNames = uploader.upload("session", "data", new ByteArrayInputStream(msgpack(95, true)));
+        }
+
+        assertEquals(10, partNames.size());
+        assertEquals("data_00000", partNames.get(0));
+        assertEquals("data_00009", partNames.get(9));
+        assertEquals(partNames.stream().sorted().collect(Collectors.toList()), parts.keySet().stream().sorted().collect(Collectors.toList()));
+        assertEquals(10, parts.get("data_00000").size());
+        assertEquals(5, parts.get("data_00009").size());
+        List<Long> expectedIds = new ArrayList<>();
+        for (long i = 0; i < 95; i++) {
+            expectedIds.add(i);
+        }
+        assertEquals(expectedIds, uploadedIds());
+
+        assertEquals(10, progress.size());
+        TDBulkImportUploader.Progress last = progress.get(9);
+        assertEquals(10, last.getCompletedParts());
+        assertEquals(95, last.getCompletedRecords());
+        assertTrue(last.getUploadedBytes() > 0);
+        assertFalse(progress.stream().anyMatch(TDBulkImportUploader.Progress::isSkipped));
+    }
+
+    @Test
+    public void skipUploadedParts()
+            throws Exception
+    {
+        File file = File.createTempFile("bulk-import", ".msgpack");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            // Plain msgpack input
+            out.write(msgpack(30, false));
+        }
+        listedParts.addAll(Arrays.asList("data_00000", "data_00002"));
+
+        List<TDBulkImportUploader.Progress> progress = Collections.synchronizedList(new ArrayList<>());
+        try (TDBulkImportUploader uploader = new TDBulkImportUploader(client, config(200), progress::add)) {
+            uploader.upload("session", "data", file);
+        }
+
+        assertEquals(Collections.singleton("data_00001"), parts.keySet());
+        assertEquals(Arrays.asList(10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L), uploadedIds());
+        assertEquals(3, progress.size());
+        assertEquals(2, progress.stream().filter(TDBulkImportUploader.Progress::isSkipped).count());
+        assertEquals(30, progress.stream().mapToLong(TDBulkImportUploader.Progress::getPartRecords).sum());
+    }
+
+    @Test
+    public void uploadAndCommit()
+            throws Exception
+    {
+        File file = File.createTempFile("bulk-import", ".msgpack.gz");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(msgpack(50, true));
+        }
+
+        TDBulkImportSession session;
+        try (TDBulkImportUploader uploader = new TDBulkImportUploader(client, config(200))) {
+            session = uploader.uploadAndCommit("session", "data", file, Duration.ofSeconds(30));
+        }
+
+        assertEquals(TDBulkImportSession.ImportStatus.COMMITTED, session.getStatus());
+        assertEquals(50, session.getValidRecords());
+        assertEquals(5, parts.size());
+        assertEquals(Arrays.asList("freeze", "perform", "commit"), steps);
+    }
+
+    @Test
+    public void resumeFromCommitting()
+            throws Exception
+    {
+        status = "committing";
+        frozen = true;
+        pendingPolls.set(3);
+
+        TDBulkImportSession session;
+        try (TDBulkImportUploader uploader = new TDBulkImportUploader(client, config(200))) {
+            session = uploader.uploadAndCommit("session", "data", new File("not-found.msgpack.gz"), Duration.ofSeconds(30));
+        }
+
+        assertEquals(TDBulkImportSession.ImportStatus.COMMITTED, session.getStatus());
+        assertTrue(steps.isEmpty());
+    }
+
+    @Test
+    public void failOnUploadError()
+            throws Exception
+    {
+        failingUploadCode = 400;
+        try (TDBulkImportUploader uploader = new TDBulkImportUploader(client, config(200))) {
+            TDClientException e = assertThrows(TDClientException.class, () -> uploader.upload("session", "data", new ByteArrayInputStream(msgpack(50, true))));
+            assertEquals(TDClientException.ErrorType.EXECUTION_FAILURE, e.getErrorType());
+        }
+    }
+}
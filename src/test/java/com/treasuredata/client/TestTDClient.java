@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.ByteStreams;
 import com.treasuredata.client.model.ObjectMappers;
 import com.treasuredata.client.model.TDBulkImportSession;
 import com.treasuredata.client.model.TDBulkLoadSessionStartRequest;
@@ -51,9 +52,15 @@ import com.treasuredata.client.model.TDTable;
 import com.treasuredata.client.model.TDTableDistribution;
 import com.treasuredata.client.model.TDUser;
 import com.treasuredata.client.model.TDUserList;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -74,13 +81,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -93,11 +105,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Random;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -109,9 +128,11 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -1865,6 +1886,540 @@ public class TestTDClient
         assertFalse(distributionOpt.isPresent());
     }
 
+    @Test
+    public void existsTableWithShow()
+            throws Exception
+    {
+        client = mockClient();
+        server.enqueue(new MockResponse().setBody("{\"id\":1,\"name\":\"www_access\",\"type\":\"log\",\"schema\":\"[]\"}"));
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"error\":\"Table not found\"}"));
+
+        assertTrue(client.existsTable("sample_datasets", "www_access"));
+        assertFalse(client.existsTable("sample_datasets", "missing"));
+        assertEquals("/v3/table/show/sample_datasets/www_access", server.takeRequest().getPath());
+        assertEquals("/v3/table/show/sample_datasets/missing", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void existsDatabaseWithShow()
+            throws Exception
+    {
+        client = mockClient();
+        server.enqueue(new MockResponse().setBody("{\"name\":\"sample_datasets\",\"count\":10}"));
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"error\":\"Database not found\"}"));
+
+        assertTrue(client.existsDatabase("sample_datasets"));
+        assertFalse(client.existsDatabase("missing"));
+        assertEquals("/v3/database/show/sample_datasets", server.takeRequest().getPath());
+        assertEquals("/v3/database/show/missing", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void existsTables()
+            throws Exception
+    {
+        client = mockClient();
+        server.enqueue(new MockResponse().setBody("{\"database\":\"sample_datasets\",\"tables\":[{\"id\":1,\"name\":\"www_access\",\"type\":\"log\",\"schema\":\"[]\"},"
+                + "{\"id\":2,\"name\":\"nasdaq\",\"type\":\"log\",\"schema\":\"[]\"}]}"));
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"error\":\"Database not found\"}"));
+
+        Map<String, Boolean> existence = client.existsTables("sample_datasets", Arrays.asList("nasdaq", "missing", "www_access"));
+        assertEquals(Arrays.asList("nasdaq", "missing", "www_access"), new ArrayList<>(existence.keySet()));
+        assertEquals(Arrays.asList(true, false, true), new ArrayList<>(existence.values()));
+        assertEquals(1, server.getRequestCount());
+
+        assertEquals(Collections.singletonMap("www_access", false), client.existsTables("missing", Collections.singletonList("www_access")));
+    }
+
+    @Test
+    public void cachedMetadataIsInvalidatedByMutations()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setMetadataCache(new TDMetadataCacheConfig.TDMetadataCacheConfigBuilder().createTDMetadataCacheConfig())
+                .build();
+        String table = "{\"id\":1,\"name\":\"www_access\",\"type\":\"log\",\"schema\":\"[]\"}";
+        server.enqueue(new MockResponse().setBody(table));
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"error\":\"Table not found\"}"));
+
+        assertEquals("www_access", client.showTable("sample_datasets", "www_access").getName());
+        assertEquals("www_access", client.showTable("sample_datasets", "www_access").getName());
+        assertEquals(1, server.getRequestCount());
+
+        client.deleteTable("sample_datasets", "www_access");
+        assertFalse(client.existsTable("sample_datasets", "www_access"));
+        assertFalse(client.existsTable("sample_datasets", "www_access"));
+        assertEquals(3, server.getRequestCount());
+        assertEquals("/v3/table/show/sample_datasets/www_access", server.takeRequest().getPath());
+        assertEquals("/v3/table/delete/sample_datasets/www_access", server.takeRequest().getPath());
+        assertEquals("/v3/table/show/sample_datasets/www_access", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void coalesceConcurrentGetRequests()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setCoalesceRequests(true)
+                .build();
+        server.enqueue(new MockResponse().setBody("{\"name\":\"sample_datasets\",\"count\":10}").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<TDDatabase>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> client.showDatabase("sample_datasets")));
+            }
+            for (Future<TDDatabase> result : results) {
+                assertEquals("sample_datasets", result.get(10, TimeUnit.SECONDS).getName());
+            }
+            assertEquals(1, server.getRequestCount());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void retryCoalescedRequestOfInterruptedCaller()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setCoalesceRequests(true)
+                .setRetryInitialIntervalMillis(10000)
+                .build();
+        // The first caller waits for a retry after the error
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("{\"name\":\"sample_datasets\",\"count\":10}"));
+
+        AtomicReference<Throwable> leaderError = new AtomicReference<>();
+        Thread leader = new Thread(() -> {
+            try {
+                client.showDatabase("sample_datasets");
+            }
+            catch (Throwable e) {
+                leaderError.set(e);
+            }
+        });
+        leader.start();
+        server.takeRequest(10, TimeUnit.SECONDS);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<TDDatabase> follower = executor.submit(() -> client.showDatabase("sample_datasets"));
+            Thread.sleep(200);
+            leader.interrupt();
+            leader.join(10000);
+            assertTrue(leaderError.get() instanceof TDClientInterruptedException, "leader error: " + leaderError.get());
+
+            // The interrupt of the first caller is not passed to the waiting caller, which sends the request again
+            assertEquals("sample_datasets", follower.get(10, TimeUnit.SECONDS).getName());
+            assertEquals(2, server.getRequestCount());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void throttleRequestsAfter429()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryInitialIntervalMillis(10)
+                .setRateLimit(new TDRateLimitConfig.TDRateLimitConfigBuilder()
+                        .setMaxRequestsPerSecond(20)
+                        .setMinRequestsPerSecond(5)
+                        .createTDRateLimitConfig())
+                .build();
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+        for (int i = 0; i < 5; i++) {
+            server.enqueue(new MockResponse().setBody("{\"name\":\"sample_datasets\",\"count\":10}"));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("sample_datasets", client.showDatabase("sample_datasets").getName());
+        }
+        // Retry-After pauses the requests, and then they are paced at about 10 requests/sec
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 1000 + 300, "elapsed: " + elapsedMillis);
+        assertEquals(6, server.getRequestCount());
+    }
+
+    @Test
+    public void collectMetrics()
+            throws Exception
+    {
+        TDHistogramMetrics metrics = new TDHistogramMetrics();
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryInitialIntervalMillis(10)
+                .setMetrics(metrics)
+                .build();
+        String table = "{\"id\":1,\"name\":\"www_access\",\"type\":\"log\",\"schema\":\"[]\"}";
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody(table));
+        server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"error\":\"Table not found\"}"));
+
+        client.showTable("sample_datasets", "www_access");
+        assertFalse(client.existsTable("sample_datasets", "missing"));
+
+        TDHistogramMetrics.Snapshot snapshot = metrics.snapshot().get("/v3/table/show/{db}/{table}");
+        assertEquals(2, snapshot.getRequests());
+        assertEquals(1, snapshot.getFailedRequests());
+        assertEquals(3, snapshot.getAttempts());
+        assertEquals(0, snapshot.getInflightRequests());
+        assertEquals(1L, (long) snapshot.getStatusCodes().get(200));
+        assertEquals(1L, (long) snapshot.getStatusCodes().get(404));
+        assertEquals(1L, (long) snapshot.getStatusCodes().get(500));
+        assertTrue(snapshot.getResponseBytes() >= table.length());
+        assertTrue(snapshot.getBackoffWaitMillis() > 0);
+        assertEquals(2, snapshot.getRequestLatencyMicros().getCount());
+        // Connection-level timings
+        assertEquals(3, snapshot.getPhaseLatencyMicros().get(TDCallTimings.Phase.TIME_TO_FIRST_BYTE).getCount());
+        assertEquals(3, snapshot.getPhaseLatencyMicros().get(TDCallTimings.Phase.REQUEST_WRITE).getCount());
+        assertTrue(snapshot.getPhaseLatencyMicros().get(TDCallTimings.Phase.CONNECT).getCount() >= 1);
+        assertEquals(0, snapshot.getPhaseLatencyMicros().get(TDCallTimings.Phase.TLS).getCount());
+    }
+
+    @Test
+    public void waitForJobWithAdaptivePolling()
+            throws Exception
+    {
+        client = mockClient();
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"queued\",\"duration\":0}"));
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"running\",\"duration\":1}"));
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"success\",\"duration\":2}"));
+
+        TDJobPollingConfig polling = new TDJobPollingConfig.TDJobPollingConfigBuilder()
+                .setInitialIntervalMillis(10)
+                .setMaxIntervalMillis(1000)
+                .setMultiplier(2)
+                .setDurationRatio(0.01)
+                .createTDJobPollingConfig();
+        TDJobSummary summary = client.waitForJob("17", Duration.ofSeconds(10), polling);
+        assertEquals(TDJob.Status.SUCCESS, summary.getStatus());
+        assertEquals(3, server.getRequestCount());
+        assertEquals("/v3/job/status/17", server.takeRequest().getPath());
+
+        // The interval grows exponentially, but is capped by 1% of the job duration
+        assertEquals(10, polling.nextIntervalMillis(1, 0));
+        assertEquals(40, polling.nextIntervalMillis(3, 100));
+        assertEquals(200, polling.nextIntervalMillis(10, 20));
+        assertEquals(1000, polling.nextIntervalMillis(20, 3600));
+    }
+
+    @Test
+    public void waitForJobTimeout()
+            throws Exception
+    {
+        client = mockClient();
+        for (int i = 0; i < 10; i++) {
+            server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"running\",\"duration\":100}"));
+        }
+
+        TDJobPollingConfig polling = new TDJobPollingConfig.TDJobPollingConfigBuilder()
+                .setInitialIntervalMillis(100)
+                .createTDJobPollingConfig();
+        TDClientTimeoutException e = assertThrows(TDClientTimeoutException.class, () -> client.waitForJob("17", Duration.ofMillis(250), polling));
+        assertEquals(TDClientException.ErrorType.REQUEST_TIMEOUT, e.getErrorType());
+        // Polled at 0, 100, 250 (the deadline) ms
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void warmUpConnections()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setMaxIdleConnections(3)
+                .build();
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody("{\"status\":\"ok\"}"));
+        }
+
+        // Capped by the max idle connections
+        assertEquals(3, client.warmUp(5));
+        for (int i = 0; i < 3; i++) {
+            // The first request of each connection
+            assertEquals(0, server.takeRequest().getSequenceNumber());
+        }
+        // The following request reuses a warmed-up connection
+        client.serverStatus();
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void warmUpWithNegativeConnections()
+    {
+        client = mockClient();
+        TDClientException e = assertThrows(TDClientException.class, () -> client.warmUp(-1));
+        assertEquals(TDClientException.ErrorType.INVALID_INPUT, e.getErrorType());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void downloadJobResultWithRanges()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryInitialIntervalMillis(10)
+                .build();
+        byte[] content = new byte[1000];
+        new Random(0).nextBytes(content);
+        AtomicInteger failures = new AtomicInteger();
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+            {
+                Matcher m = Pattern.compile("bytes=(\\d+)-(\\d+)").matcher(request.getHeader("Range"));
+                assertTrue(m.matches());
+                int start = Integer.parseInt(m.group(1));
+                int end = Math.min(Integer.parseInt(m.group(2)), content.length - 1);
+                if (start == 500 && failures.getAndIncrement() == 0) {
+                    // A failed chunk is retried alone
+                    return new MockResponse().setResponseCode(500);
+                }
+                return new MockResponse()
+                        .setResponseCode(206)
+                        .setHeader("Content-Range", String.format("bytes %d-%d/%d", start, end, content.length))
+                        .setBody(new Buffer().write(content, start, end - start + 1));
+            }
+        });
+
+        File file = File.createTempFile("td-client", ".result");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[2000]);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            assertEquals(1000, client.downloadJobResult("17", TDResultFormat.CSV, channel, 4, 100));
+        }
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        // 10 chunks and a retry
+        assertEquals(11, server.getRequestCount());
+        assertEquals("/v3/job/result/17?format=csv&header=false", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void downloadJobResultWithoutRangeSupport()
+            throws Exception
+    {
+        client = mockClient();
+        server.enqueue(new MockResponse().setBody("a,b\n1,2\n"));
+
+        File file = File.createTempFile("td-client", ".result");
+        file.deleteOnExit();
+        assertEquals(8, client.downloadJobResult("17", TDResultFormat.CSV, file));
+        assertEquals("a,b\n1,2\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals(1, server.getRequestCount());
+        assertEquals("bytes=0-16777215", server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void resumeJobResultAfterDisconnection()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryInitialIntervalMillis(10)
+                .build();
+        byte[] content = new byte[1000];
+        new Random(0).nextBytes(content);
+        server.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes 0-999/1000")
+                .setBody(new Buffer().write(content))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        server.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes 500-999/1000")
+                .setBody(new Buffer().write(content, 500, 500)));
+
+        byte[] result = client.jobResult("17", TDResultFormat.MESSAGE_PACK_GZ, input -> {
+            try {
+                return ByteStreams.toByteArray(input);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertArrayEquals(content, result);
+        // The first request keeps the gzip transfer encoding
+        RecordedRequest first = server.takeRequest();
+        assertNull(first.getHeader("Range"));
+        assertEquals("gzip", first.getHeader("Accept-Encoding"));
+        // Only the rest of the result is requested
+        assertEquals("bytes=500-", server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void resumeGzipEncodedJobResult()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryInitialIntervalMillis(10)
+                .build();
+        byte[] content = String.join("", Collections.nCopies(1000, "1,name\n")).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (OutputStream gz = new GZIPOutputStream(gzipped)) {
+            gz.write(content);
+        }
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(new Buffer().write(gzipped.toByteArray()))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(new Buffer().write(gzipped.toByteArray())));
+
+        byte[] result = client.jobResult("17", TDResultFormat.CSV, input -> {
+            try {
+                return ByteStreams.toByteArray(input);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertArrayEquals(content, result);
+        // The positions of the decompressed bytes cannot be used for a Range header, so the whole body is requested again
+        for (int i = 0; i < 2; i++) {
+            RecordedRequest request = server.takeRequest();
+            assertNull(request.getHeader("Range"));
+            assertEquals("gzip", request.getHeader("Accept-Encoding"));
+        }
+    }
+
+    @Test
+    public void resumeJobResultWithoutRangeSupport()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryInitialIntervalMillis(10)
+                .build();
+        byte[] content = new byte[1000];
+        new Random(0).nextBytes(content);
+        server.enqueue(new MockResponse()
+                .setBody(new Buffer().write(content))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        server.enqueue(new MockResponse().setBody(new Buffer().write(content)));
+
+        byte[] result = client.jobResult("17", TDResultFormat.MESSAGE_PACK_GZ, input -> {
+            try {
+                return ByteStreams.toByteArray(input);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // The bytes already read are skipped in the second response
+        assertArrayEquals(content, result);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void iterateJobResultRows()
+            throws Exception
+    {
+        client = mockClient();
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"success\",\"query\":\"select 1\",\"hive_result_schema\":\"[[\\\"id\\\",\\\"bigint\\\"],[\\\"name\\\",\\\"varchar\\\"]]\"}"));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream gz = new GZIPOutputStream(result);
+                MessagePacker packer = MessagePack.newDefaultPacker(gz)) {
+            for (int i = 0; i < 3; i++) {
+                packer.packArrayHeader(2).packLong(i).packString("name" + i);
+            }
+        }
+        server.enqueue(new MockResponse().setBody(new Buffer().write(result.toByteArray())));
+
+        List<String> rows = client.jobResultRows("17", it -> {
+            List<String> list = new ArrayList<>();
+            while (it.hasNext()) {
+                Object[] row = it.next();
+                list.add(String.format("%d:%s", (Long) row[0], row[1]));
+            }
+            return list;
+        });
+        assertEquals(Arrays.asList("0:name0", "1:name1", "2:name2"), rows);
+        assertEquals("/v3/job/show/17", server.takeRequest().getPath());
+        assertEquals("/v3/job/result/17?format=msgpack.gz&header=false", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void recordFlightRecorderEvents()
+            throws Exception
+    {
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryInitialIntervalMillis(10)
+                .build();
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("{\"job_id\":\"17\",\"status\":\"running\"}"));
+
+        File dump = File.createTempFile("td-client", ".jfr");
+        dump.deleteOnExit();
+        try (Recording recording = new Recording()) {
+            recording.enable("com.treasuredata.client.ApiRequest").withoutThreshold();
+            recording.enable("com.treasuredata.client.Retry").withoutThreshold();
+            recording.enable("com.treasuredata.client.JobPoll").withoutThreshold();
+            recording.start();
+            assertEquals(TDJob.Status.RUNNING, client.jobStatus("17").getStatus());
+            recording.stop();
+            recording.dump(dump.toPath());
+        }
+
+        Map<String, RecordedEvent> events = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+            events.put(event.getEventType().getName(), event);
+        }
+        RecordedEvent request = events.get("com.treasuredata.client.ApiRequest");
+        assertEquals("GET", request.getString("method"));
+        assertEquals("/v3/job/status/17", request.getString("path"));
+        assertEquals("/v3/job/status/{job_id}", request.getString("pathTemplate"));
+        assertEquals(200, request.getInt("statusCode"));
+        assertEquals(2, request.getInt("attempts"));
+
+        RecordedEvent retry = events.get("com.treasuredata.client.Retry");
+        assertEquals(2, retry.getInt("attempt"));
+        assertThat(retry.getString("cause"), containsString("500"));
+
+        RecordedEvent poll = events.get("com.treasuredata.client.JobPoll");
+        assertEquals("17", poll.getString("jobId"));
+        assertEquals("RUNNING", poll.getString("status"));
+        assertTrue(poll.getDuration().compareTo(retry.getDuration()) >= 0);
+    }
+
     @Test
     public void testImportFile()
             throws Exception
@@ -1935,6 +2490,70 @@ public class TestTDClient
         assertEquals(result.getUniqueId(), "4288048cf8f811e88b560a87157ac806");
     }
 
+    @Test
+    public void testImportDirectByteBuffer()
+            throws Exception
+    {
+        client = mockClient();
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("{\"unique_id\":\"4288048cf8f811e88b560a87157ac806\",\"md5_hex\":\"a34e7c79aa6b6cc48e6e1075c2215a8b\",\"database\":\"db\",\"table\":\"tbl\",\"elapsed_time\":10}"));
+
+        File tmpFile = createTempMsgpackGz("import", 10);
+        byte[] bytes = Files.readAllBytes(tmpFile.toPath());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 10);
+        buffer.position(5);
+        buffer.put(bytes);
+        buffer.position(5).limit(5 + bytes.length);
+        TDImportResult result = client.importBytes("db", "tbl", buffer, "4288048cf8f811e88b560a87157ac806");
+
+        assertEquals(result.getUniqueId(), "4288048cf8f811e88b560a87157ac806");
+        // The body must be re-sent in full on retry and the buffer position must be kept
+        assertEquals(2, server.getRequestCount());
+        for (int i = 0; i < 2; i++) {
+            RecordedRequest request = server.takeRequest();
+            assertEquals("/v3/table/import_with_id/db/tbl/4288048cf8f811e88b560a87157ac806/msgpack.gz", request.getPath());
+            assertEquals(String.valueOf(bytes.length), request.getHeader("Content-Length"));
+            assertArrayEquals(bytes, request.getBody().readByteArray());
+        }
+        assertEquals(5, buffer.position());
+    }
+
+    @Test
+    public void testImportFileChannelRegion()
+            throws Exception
+    {
+        client = mockClient();
+        server.enqueue(new MockResponse().setBody("{\"unique_id\":\"4288048cf8f811e88b560a87157ac806\",\"md5_hex\":\"a34e7c79aa6b6cc48e6e1075c2215a8b\",\"database\":\"db\",\"table\":\"tbl\",\"elapsed_time\":10}"));
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        File tmpFile = createTempMsgpackGz("import", 10);
+        byte[] bytes = Files.readAllBytes(tmpFile.toPath());
+        File paddedFile = File.createTempFile("import-padded", ".bin");
+        paddedFile.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(paddedFile)) {
+            out.write(new byte[100]);
+            out.write(bytes);
+            out.write(new byte[100]);
+        }
+
+        try (FileChannel channel = FileChannel.open(paddedFile.toPath(), StandardOpenOption.READ)) {
+            TDImportResult result = client.importFile("db", "tbl", channel, 100, bytes.length);
+            assertEquals(result.getUniqueId(), "4288048cf8f811e88b560a87157ac806");
+            client.uploadBulkImportPart("session", "part1", channel, 100, bytes.length);
+            assertEquals(0, channel.position());
+        }
+
+        RecordedRequest importRequest = server.takeRequest();
+        assertEquals("/v3/table/import/db/tbl/msgpack.gz", importRequest.getPath());
+        assertEquals(String.valueOf(bytes.length), importRequest.getHeader("Content-Length"));
+        assertArrayEquals(bytes, importRequest.getBody().readByteArray());
+
+        RecordedRequest partRequest = server.takeRequest();
+        assertEquals("PUT", partRequest.getMethod());
+        assertEquals("/v3/bulk_import/upload_part/session/part1", partRequest.getPath());
+        assertArrayEquals(bytes, partRequest.getBody().readByteArray());
+    }
+
     @Test
     public void testGetFederatedQueryConfigsWhenEmpty()
         throws Exception
@@ -37,9 +37,15 @@ import java.util.Properties;
 
 import static com.treasuredata.client.TDClientConfig.Type.API_ENDPOINT;
 import static com.treasuredata.client.TDClientConfig.Type.API_PORT;
+import static com.treasuredata.client.TDClientConfig.Type.COALESCE_REQUESTS;
+import static com.treasuredata.client.TDClientConfig.Type.CONNECTION_KEEP_ALIVE_MILLIS;
 import static com.treasuredata.client.TDClientConfig.Type.CONNECTION_POOL_SIZE;
 import static com.treasuredata.client.TDClientConfig.Type.CONNECT_TIMEOUT_MILLIS;
+import static com.treasuredata.client.TDClientConfig.Type.MAX_IDLE_CONNECTIONS;
+import static com.treasuredata.client.TDClientConfig.Type.MAX_REQUESTS;
+import static com.treasuredata.client.TDClientConfig.Type.MAX_REQUESTS_PER_HOST;
 import static com.treasuredata.client.TDClientConfig.Type.PASSOWRD;
+import static com.treasuredata.client.TDClientConfig.Type.PROTOCOL;
 import static com.treasuredata.client.TDClientConfig.Type.PROXY_HOST;
 import static com.treasuredata.client.TDClientConfig.Type.PROXY_PASSWORD;
 import static com.treasuredata.client.TDClientConfig.Type.PROXY_PORT;
@@ -75,6 +81,12 @@ public class TestTDClientConfig
         p.put(CONNECT_TIMEOUT_MILLIS, 2345);
         p.put(READ_TIMEOUT_MILLIS, 3456);
         p.put(CONNECTION_POOL_SIZE, 234);
+        p.put(CONNECTION_KEEP_ALIVE_MILLIS, 4567);
+        p.put(MAX_IDLE_CONNECTIONS, 12);
+        p.put(MAX_REQUESTS, 345);
+        p.put(MAX_REQUESTS_PER_HOST, 123);
+        p.put(PROTOCOL, "http1.1");
+        p.put(COALESCE_REQUESTS, true);
         p.put(RETRY_LIMIT, 11);
         p.put(RETRY_INITIAL_INTERVAL_MILLIS, 456);
         p.put(RETRY_MAX_INTERVAL_MILLIS, 10000);
@@ -93,6 +105,12 @@ public class TestTDClientConfig
         assertEquals(m.get(USESSL), config.useSSL);
         assertEquals(m.get(CONNECT_TIMEOUT_MILLIS), config.connectTimeoutMillis);
         assertEquals(m.get(CONNECTION_POOL_SIZE), config.connectionPoolSize);
+        assertEquals(m.get(CONNECTION_KEEP_ALIVE_MILLIS), config.connectionKeepAliveMillis);
+        assertEquals(m.get(MAX_IDLE_CONNECTIONS), config.maxIdleConnections);
+        assertEquals(m.get(MAX_REQUESTS), config.maxRequests);
+        assertEquals(m.get(MAX_REQUESTS_PER_HOST), config.maxRequestsPerHost);
+        assertEquals(m.get(PROTOCOL), config.protocol.getValue());
+        assertEquals(m.get(COALESCE_REQUESTS), config.coalesceRequests);
         assertEquals(m.get(READ_TIMEOUT_MILLIS), config.readTimeoutMillis);
         assertEquals(m.get(RETRY_INITIAL_INTERVAL_MILLIS), config.retryInitialIntervalMillis);
         assertEquals(m.get(RETRY_MAX_INTERVAL_MILLIS), config.retryMaxIntervalMillis);
@@ -122,6 +140,12 @@ public class TestTDClientConfig
         b.setUseSSL(Boolean.parseBoolean(m.get(USESSL).toString()));
         b.setConnectTimeoutMillis(Integer.parseInt(m.get(CONNECT_TIMEOUT_MILLIS).toString()));
         b.setConnectionPoolSize(Integer.parseInt(m.get(CONNECTION_POOL_SIZE).toString()));
+        b.setConnectionKeepAliveMillis(Integer.parseInt(m.get(CONNECTION_KEEP_ALIVE_MILLIS).toString()));
+        b.setMaxIdleConnections(Integer.parseInt(m.get(MAX_IDLE_CONNECTIONS).toString()));
+        b.setMaxRequests(Integer.parseInt(m.get(MAX_REQUESTS).toString()));
+        b.setMaxRequestsPerHost(Integer.parseInt(m.get(MAX_REQUESTS_PER_HOST).toString()));
+        b.setProtocol(TDHttpProtocol.fromValue(m.get(PROTOCOL).toString()));
+        b.setCoalesceRequests(Boolean.parseBoolean(m.get(COALESCE_REQUESTS).toString()));
         b.setReadTimeoutMillis(Integer.parseInt(m.get(READ_TIMEOUT_MILLIS).toString()));
         b.setRetryInitialIntervalMillis(Integer.parseInt(m.get(RETRY_INITIAL_INTERVAL_MILLIS).toString()));
         b.setRetryMaxIntervalMillis(Integer.parseInt(m.get(RETRY_MAX_INTERVAL_MILLIS).toString()));
@@ -189,6 +213,18 @@ public class TestTDClientConfig
         });
     }
 
+    @Test
+    public void readInvalidProtocol()
+    {
+        Properties p = new Properties();
+        p.setProperty(PROTOCOL.key, "spdy");
+        TDClientException e = Assertions.assertThrows(TDClientException.class, () -> TDClient.newBuilder().setProperties(p));
+        assertEquals(TDClientException.ErrorType.INVALID_CONFIGURATION, e.getErrorType());
+
+        // h2c is only for cleartext connections
+        Assertions.assertThrows(TDClientException.class, () -> TDClient.newBuilder().setProtocol(TDHttpProtocol.H2C).build());
+    }
+
     @Test
     public void readInvalidDoubleValue()
     {
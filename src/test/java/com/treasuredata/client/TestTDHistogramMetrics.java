@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTDHistogramMetrics
+{
+    @Test
+    public void normalizePath()
+    {
+        assertEquals("/v3/table/show/{db}/{table}", TDApiPathTemplate.normalize("/v3/table/show/sample_datasets/www_access"));
+        assertEquals("/v3/table/list/{db}", TDApiPathTemplate.normalize("/v3/table/list/sample_datasets"));
+        assertEquals("/v3/job/list", TDApiPathTemplate.normalize("/v3/job/list?from=0&to=20"));
+        assertEquals("/v3/bulk_loads/{name}/jobs", TDApiPathTemplate.normalize("/v3/bulk_loads/session1/jobs"));
+        assertEquals("/v4/queries/{id}/jobs", TDApiPathTemplate.normalize("/v4/queries/123/jobs"));
+        assertEquals("/v3/job/status/{job_id}", TDApiPathTemplate.normalize("https://api.treasuredata.com/v3/job/status/17"));
+        // Unknown paths
+        assertEquals("/v3/unknown/api/{param}/{param}", TDApiPathTemplate.normalize("/v3/unknown/api/a/b"));
+        assertEquals("/v3/table/show/{param}", TDApiPathTemplate.normalize("/v3/table/show/a"));
+        assertEquals("/", TDApiPathTemplate.normalize("/"));
+    }
+
+    @Test
+    public void histogramBuckets()
+    {
+        for (long v : new long[] {0, 1, 15, 16, 17, 100, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = TDHistogram.bucketIndex(v);
+            assertTrue(v <= TDHistogram.bucketUpperBound(index), "value: " + v);
+            if (index > 0) {
+                assertTrue(v > TDHistogram.bucketUpperBound(index - 1), "value: " + v);
+            }
+        }
+    }
+
+    @Test
+    public void histogramPercentiles()
+            throws Exception
+    {
+        TDHistogram histogram = new TDHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.submit(() -> {
+                for (int i = 1; i <= 1000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        TDHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(4000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500.5, snapshot.getMean(), 0.001);
+        assertBetween(500, 500 * 1.125, snapshot.getPercentile(0.5));
+        assertBetween(990, 1000, snapshot.getPercentile(0.99));
+        assertEquals(1, snapshot.getPercentile(0));
+        assertEquals(1000, snapshot.getPercentile(1));
+        assertEquals(0, new TDHistogram().snapshot().getPercentile(0.5));
+    }
+
+    private static void assertBetween(double lower, double upper, long value)
+    {
+        assertTrue(lower <= value && value <= upper, String.format("%d is not in [%s, %s]", value, lower, upper));
+    }
+
+    @Test
+    public void aggregateByPathTemplate()
+    {
+        TDHistogramMetrics metrics = new TDHistogramMetrics();
+        String path = "/v3/job/status/{job_id}";
+        TDRetryTimeline timeline = new TDRetryTimeline();
+        metrics.requestStarted("GET", path);
+
+        TDRetryTimeline.Attempt first = timeline.newAttempt(1, "GET", "/v3/job/status/1", 0);
+        first.setError(new TDClientTimeoutException(new TimeoutException()));
+        first.finish();
+        metrics.attemptFinished(path, first);
+        TDRetryTimeline.Attempt second = timeline.newAttempt(2, "GET", "/v3/job/status/1", 500);
+        second.setStatusCode(200);
+        second.setResponseBytes(123);
+        second.finish();
+        metrics.attemptFinished(path, second);
+        assertEquals(1, metrics.snapshot().get(path).getInflightRequests());
+
+        metrics.requestFinished(path, timeline, TimeUnit.MILLISECONDS.toNanos(600), Optional.empty());
+        TDHistogramMetrics.Snapshot snapshot = metrics.snapshot().get(path);
+        assertEquals(0, snapshot.getInflightRequests());
+        assertEquals(1, snapshot.getRequests());
+        assertEquals(0, snapshot.getFailedRequests());
+        assertEquals(2, snapshot.getAttempts());
+        assertEquals(500, snapshot.getBackoffWaitMillis());
+        assertEquals(123, snapshot.getResponseBytes());
+        assertEquals(1L, (long) snapshot.getStatusCodes().get(200));
+        assertEquals(1L, (long) snapshot.getErrorTypes().get(TDClientTimeoutException.class.getName()));
+        assertEquals(600_000, snapshot.getRequestLatencyMicros().getMax());
+
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+}
@@ -18,6 +18,8 @@
  */
 package com.treasuredata.client;
 
+import com.fasterxml.jackson.databind.JavaType;
+import com.treasuredata.client.model.TDJobSummary;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
@@ -41,6 +43,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -52,6 +55,7 @@ import static org.exparity.hamcrest.date.DateMatchers.within;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -100,6 +104,85 @@ public class TestTDHttpClient
         assertEquals("td-client-java unknown,td-sample-client 1.0", request2.header(USER_AGENT));
     }
 
+    @Test
+    public void prepareRequestUrl()
+            throws Exception
+    {
+        TDHttpClient httpClient = TDClient.newBuilder(false).setEndpoint("api.example.com").setPort(8080).setUseSSL(false).build().httpClient;
+        try {
+            TDApiRequest get = TDApiRequest.Builder.GET("/v3/job/list")
+                    .addQueryParam("from", "0")
+                    .addQueryParam("status", "a b&c")
+                    .build();
+            assertEquals("http://api.example.com:8080/v3/job/list?from=0&status=a+b%26c", httpClient.prepareRequest(get, Optional.empty()).url().toString());
+
+            // Query parameters of POST requests are sent as a form body
+            TDApiRequest post = TDApiRequest.Builder.POST("/v3/job/issue/presto/sample_datasets")
+                    .addQueryParam("query", "select 1")
+                    .build();
+            Request postRequest = httpClient.prepareRequest(post, Optional.empty());
+            assertEquals("http://api.example.com:8080/v3/job/issue/presto/sample_datasets", postRequest.url().toString());
+            okio.Buffer body = new okio.Buffer();
+            postRequest.body().writeTo(body);
+            assertEquals("query=select+1", body.readUtf8());
+
+            // Absolute URLs (e.g., redirect locations) are used as is
+            TDApiRequest redirected = TDApiRequest.Builder.GET("https://other.example.com/v3/system/server_status").build();
+            assertEquals("https://other.example.com/v3/system/server_status", httpClient.prepareRequest(redirected, Optional.empty()).url().toString());
+        }
+        finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    public void prepareRequestUrlWithEndpointPathPrefix()
+            throws Exception
+    {
+        TDHttpClient httpClient = TDClient.newBuilder(false).setEndpoint("gateway.example.com/prefix").setUseSSL(true).build().httpClient;
+        try {
+            TDApiRequest show = TDApiRequest.Builder.GET("/v3/table/show/a/b").build();
+            assertEquals("https://gateway.example.com/prefix/v3/table/show/a/b", httpClient.prepareRequest(show, Optional.empty()).url().toString());
+
+            TDApiRequest list = TDApiRequest.Builder.GET("/v3/job/list?from=0&to=10")
+                    .addQueryParam("status", "running")
+                    .build();
+            assertEquals("https://gateway.example.com/prefix/v3/job/list?from=0&to=10&status=running", httpClient.prepareRequest(list, Optional.empty()).url().toString());
+        }
+        finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    public void prepareRequestAuthorization()
+    {
+        String nakedKey = "1/0123456789abcdef0123456789abcdef01234567";
+        TDHttpClient httpClient = TDClient.newBuilder(false).setApiKey(nakedKey).build().httpClient;
+        try {
+            TDApiRequest req = TDApiRequest.Builder.GET("/v3/system/server_status").build();
+            assertEquals("TD1 " + nakedKey, httpClient.prepareRequest(req, Optional.empty()).header("Authorization"));
+            // API key given for each request takes precedence
+            assertEquals("TD1 0123456789abcdef0123456789abcdef01234567", httpClient.prepareRequest(req, Optional.of("0123456789abcdef0123456789abcdef01234567")).header("Authorization"));
+            assertEquals("TD1 " + nakedKey, httpClient.prepareRequest(req, Optional.of(nakedKey)).header("Authorization"));
+            assertEquals("Bearer token", httpClient.prepareRequest(req, Optional.of("Bearer token")).header("Authorization"));
+        }
+        finally {
+            httpClient.close();
+        }
+    }
+
+    @Test
+    public void formatDateHeader()
+    {
+        long time = 1700000000000L;
+        String expected = new java.text.SimpleDateFormat("E, dd MMM yyyy HH:mm:ss Z", java.util.Locale.ENGLISH).format(new Date(time));
+        assertEquals(expected, TDHttpClient.formatDateHeader(time));
+        // The value is reused within the same second
+        assertThat(TDHttpClient.formatDateHeader(time + 999), Matchers.sameInstance(TDHttpClient.formatDateHeader(time)));
+        assertThat(TDHttpClient.formatDateHeader(time + 1000), Matchers.not(expected));
+    }
+
     @Test
     public void deleteMethodTest()
     {
@@ -283,6 +366,153 @@ public class TestTDHttpClient
         assertThat(requests, is(4));
     }
 
+    @Test
+    public void recordRetryTimeline()
+            throws Exception
+    {
+        client = TDClient.newBuilder()
+                .setRetryStrategy(BackOffStrategy.Exponential)
+                .setRetryInitialIntervalMillis(10)
+                .setRetryMaxIntervalMillis(100)
+                .setRetryLimit(3)
+                .build()
+                .httpClient;
+
+        final AtomicInteger requests = new AtomicInteger();
+        TDApiRequest req = TDApiRequest.Builder.GET("/v3/system/server_status").build();
+        TDHttpClient.RequestContext context = new TDHttpClient.RequestContext(client.config, req, Optional.empty());
+        String result = client.submitRequest(context, new TDHttpRequestHandler<String>()
+        {
+            @Override
+            public Response send(OkHttpClient httpClient, Request request)
+            {
+                return newResponse(request, requests.incrementAndGet() < 3 ? 500 : 200, "ok");
+            }
+
+            @Override
+            public String onSuccess(Response response)
+                    throws Exception
+            {
+                return response.body().string();
+            }
+        });
+
+        assertThat(result, is("ok"));
+        List<TDRetryTimeline.Attempt> attempts = context.timeline.getAttempts();
+        assertThat(attempts.size(), is(3));
+        assertThat(attempts.get(0).getExecutionCount(), is(1));
+        assertThat(attempts.get(0).getWaitTimeMillis(), is(0L));
+        assertThat(attempts.get(0).getStatusCode(), is(Optional.of(500)));
+        assertThat(attempts.get(1).getExecutionCount(), is(2));
+        assertThat(attempts.get(1).getWaitTimeMillis(), Matchers.greaterThan(0L));
+        assertThat(attempts.get(1).getStatusCode(), is(Optional.of(500)));
+        assertThat(attempts.get(2).getExecutionCount(), is(3));
+        assertThat(attempts.get(2).getStatusCode(), is(Optional.of(200)));
+        assertFalse(attempts.get(2).getError().isPresent());
+    }
+
+    @Test
+    public void redirectDoesNotConsumeRetries()
+            throws Exception
+    {
+        client = TDClient.newBuilder()
+                .setRetryLimit(0)
+                .build()
+                .httpClient;
+
+        final AtomicInteger requests = new AtomicInteger();
+        TDApiRequest req = TDApiRequest.Builder.GET("/v3/system/server_status").build();
+        TDHttpClient.RequestContext context = new TDHttpClient.RequestContext(client.config, req, Optional.empty());
+        String result = client.submitRequest(context, new TDHttpRequestHandler<String>()
+        {
+            @Override
+            public Response send(OkHttpClient httpClient, Request request)
+            {
+                if (requests.incrementAndGet() == 1) {
+                    return newResponse(request, 307, "").newBuilder()
+                            .header("Location", "https://api.treasuredata.com/v3/system/redirected")
+                            .build();
+                }
+                assertThat(request.url().encodedPath(), is("/v3/system/redirected"));
+                return newResponse(request, 200, "ok");
+            }
+
+            @Override
+            public String onSuccess(Response response)
+                    throws Exception
+            {
+                return response.body().string();
+            }
+        });
+
+        assertThat(result, is("ok"));
+        List<TDRetryTimeline.Attempt> attempts = context.timeline.getAttempts();
+        assertThat(attempts.size(), is(2));
+        assertThat(attempts.get(0).getStatusCode(), is(Optional.of(307)));
+        assertThat(attempts.get(1).getExecutionCount(), is(attempts.get(0).getExecutionCount()));
+        assertThat(attempts.get(1).getWaitTimeMillis(), is(0L));
+    }
+
+    @Test
+    public void retryWithConstantStackDepth()
+            throws Exception
+    {
+        final int retryLimit = 50;
+        client = TDClient.newBuilder()
+                .setRetryStrategy(BackOffStrategy.Exponential)
+                .setRetryInitialIntervalMillis(0)
+                .setRetryLimit(retryLimit)
+                .build()
+                .httpClient;
+
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger minStackDepth = new AtomicInteger(Integer.MAX_VALUE);
+        final AtomicInteger maxStackDepth = new AtomicInteger();
+        TDApiRequest req = TDApiRequest.Builder.GET("/v3/system/server_status").build();
+        String result = client.submitRequest(req, Optional.empty(), new TDHttpRequestHandler<String>()
+        {
+            @Override
+            public Response send(OkHttpClient httpClient, Request request)
+            {
+                int depth = new Throwable().getStackTrace().length;
+                minStackDepth.accumulateAndGet(depth, Math::min);
+                maxStackDepth.accumulateAndGet(depth, Math::max);
+                return newResponse(request, requests.incrementAndGet() <= retryLimit ? 503 : 200, "ok");
+            }
+
+            @Override
+            public String onSuccess(Response response)
+                    throws Exception
+            {
+                return response.body().string();
+            }
+        });
+
+        assertThat(result, is("ok"));
+        assertThat(requests.get(), is(retryLimit + 1));
+        assertThat(maxStackDepth.get(), is(minStackDepth.get()));
+    }
+
+    @Test
+    public void reuseJsonReader()
+    {
+        JavaType type = client.getObjectMapper().getTypeFactory().constructType(TDJobSummary.class);
+        assertThat(client.getJsonReader(type), Matchers.sameInstance(client.getJsonReader(type)));
+        // Clients created with other headers share the readers
+        assertThat(client.withHeaders(Collections.singletonMap("k", Collections.singletonList("v"))).getJsonReader(type), Matchers.sameInstance(client.getJsonReader(type)));
+    }
+
+    private static Response newResponse(Request request, int code, String body)
+    {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .message("")
+                .code(code)
+                .body(ResponseBody.create(MediaType.parse("plain/text"), body))
+                .build();
+    }
+
     @Test
     public void readBodyAsBytes()
             throws Exception
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDJob;
+import com.treasuredata.client.model.TDJobSummary;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTDJobWatcher
+{
+    private MockWebServer server;
+    private TDClient client;
+    // Job id -> status. Jobs 1000 to 1049 are listed from the newest
+    private final Map<Long, String> jobs = new ConcurrentHashMap<>();
+    private final List<String> requests = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        for (long id = 1000; id < 1050; id++) {
+            jobs.put(id, "running");
+        }
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+            {
+                synchronized (requests) {
+                    requests.add(request.getPath());
+                }
+                if (request.getPath().startsWith("/v3/job/list")) {
+                    int from = Integer.parseInt(request.getRequestUrl().queryParameter("from"));
+                    int to = Integer.parseInt(request.getRequestUrl().queryParameter("to"));
+                    String list = IntStream.rangeClosed(from, Math.min(to, jobs.size() - 1))
+                            .mapToObj(i -> jobJson(1049 - i))
+                            .collect(Collectors.joining(","));
+                    return new MockResponse().setBody("{\"jobs\":[" + list + "],\"count\":" + jobs.size() + "}");
+                }
+                else if (request.getPath().startsWith("/v3/job/status/")) {
+                    long id = Long.parseLong(request.getPath().substring("/v3/job/status/".length()));
+                    if (!jobs.containsKey(id)) {
+                        return new MockResponse().setResponseCode(404).setBody("{\"message\":\"Job not found\"}");
+                    }
+                    return new MockResponse().setBody(jobJson(id));
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryLimit(0)
+                .build();
+    }
+
+    private String jobJson(long id)
+    {
+        return String.format("{\"job_id\":\"%d\",\"status\":\"%s\",\"type\":\"presto\",\"query\":\"select 1\",\"duration\":3}", id, jobs.get(id));
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws Exception
+    {
+        client.close();
+        server.shutdown();
+    }
+
+    private List<String> takeRequests()
+    {
+        synchronized (requests) {
+            List<String> taken = new ArrayList<>(requests);
+            requests.clear();
+            return taken;
+        }
+    }
+
+    @Test
+    public void resolveJobsWithSharedPolling()
+            throws Exception
+    {
+        TDJobWatcherConfig config = new TDJobWatcherConfig.TDJobWatcherConfigBuilder()
+                // Poll manually
+                .setPollingIntervalMillis(TimeUnit.HOURS.toMillis(1))
+                .setPageSize(20)
+                .setMaxPages(2)
+                .setMaxStatusCalls(1)
+                .createTDJobWatcherConfig();
+        try (TDJobWatcher watcher = new TDJobWatcher(client, config)) {
+            CompletableFuture<TDJobSummary> newest = watcher.watch("1049");
+            CompletableFuture<TDJobSummary> second = watcher.watch("1030");
+            CompletableFuture<TDJobSummary> old1 = watcher.watch("1001");
+            CompletableFuture<TDJobSummary> old2 = watcher.watch("1000");
+            assertThat(watcher.watch("1049"), is(newest));
+            assertEquals(4, watcher.getWatchedJobCount());
+
+            jobs.put(1049L, "success");
+            jobs.put(1030L, "error");
+            jobs.put(1001L, "killed");
+            jobs.put(1000L, "success");
+            watcher.pollJobs();
+            // Two pages cover jobs 1049 to 1010. One of the older jobs is checked with jobStatus
+            assertEquals(3, takeRequests().size());
+            assertThat(newest.get(1, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.SUCCESS));
+            assertThat(second.get(1, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.ERROR));
+            assertTrue(old1.isDone() ^ old2.isDone());
+
+            // The other old job is checked at the next poll
+            watcher.pollJobs();
+            assertThat(old1.get(1, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.KILLED));
+            assertThat(old2.get(1, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.SUCCESS));
+            assertEquals(0, watcher.getWatchedJobCount());
+            takeRequests();
+
+            // No API call without watched jobs
+            watcher.pollJobs();
+            assertTrue(takeRequests().isEmpty());
+        }
+    }
+
+    @Test
+    public void stopAtTheOldestWatchedJob()
+            throws Exception
+    {
+        TDJobWatcherConfig config = new TDJobWatcherConfig.TDJobWatcherConfigBuilder()
+                .setPollingIntervalMillis(TimeUnit.HOURS.toMillis(1))
+                .setPageSize(10)
+                .createTDJobWatcherConfig();
+        try (TDJobWatcher watcher = new TDJobWatcher(client, config)) {
+            List<CompletableFuture<TDJobSummary>> futures = new ArrayList<>();
+            for (long id = 1035; id < 1050; id++) {
+                futures.add(watcher.watch(String.valueOf(id)));
+            }
+            watcher.pollJobs();
+            // 15 jobs are covered by 2 list calls
+            List<String> calls = takeRequests();
+            assertEquals(2, calls.size());
+            assertTrue(calls.stream().allMatch(path -> path.startsWith("/v3/job/list")));
+            assertFalse(futures.stream().anyMatch(CompletableFuture::isDone));
+
+            // Unknown jobs fail
+            CompletableFuture<TDJobSummary> unknown = watcher.watch("999");
+            watcher.pollJobs();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> unknown.get(1, TimeUnit.SECONDS));
+            assertThat(e.getCause(), instanceOf(TDClientHttpNotFoundException.class));
+        }
+    }
+
+    @Test
+    public void pollPeriodically()
+            throws Exception
+    {
+        TDJobWatcherConfig config = new TDJobWatcherConfig.TDJobWatcherConfigBuilder()
+                .setPollingIntervalMillis(50)
+                .createTDJobWatcherConfig();
+        CompletableFuture<TDJobSummary> cancelled;
+        try (TDJobWatcher watcher = new TDJobWatcher(client, config)) {
+            CompletableFuture<TDJobSummary> future = watcher.watch("1040");
+            cancelled = watcher.watch("1041");
+            jobs.put(1040L, "success");
+            assertThat(future.get(10, TimeUnit.SECONDS).getStatus(), is(TDJob.Status.SUCCESS));
+        }
+        // Closing the watcher cancels the pending futures
+        assertTrue(cancelled.isCancelled());
+    }
+}
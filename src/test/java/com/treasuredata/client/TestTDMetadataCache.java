@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.treasuredata.client.TDMetadataCache.EntryType.DATABASE;
+import static com.treasuredata.client.TDMetadataCache.EntryType.TABLE;
+import static com.treasuredata.client.TDMetadataCache.EntryType.TABLE_LIST;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTDMetadataCache
+{
+    private static TDMetadataCacheConfig.TDMetadataCacheConfigBuilder config()
+    {
+        return new TDMetadataCacheConfig.TDMetadataCacheConfigBuilder();
+    }
+
+    @Test
+    public void cacheUntilExpiration()
+            throws Exception
+    {
+        TDMetadataCache cache = new TDMetadataCache(config().setTableTtlMillis(100).createTDMetadataCacheConfig());
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, (int) cache.get(TABLE, "key", "db", "t", calls::incrementAndGet));
+        assertEquals(1, (int) cache.get(TABLE, "key", "db", "t", calls::incrementAndGet));
+        // Entries are separated by API keys
+        assertEquals(2, (int) cache.get(TABLE, "key2", "db", "t", calls::incrementAndGet));
+
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertEquals(3, (int) cache.get(TABLE, "key", "db", "t", calls::incrementAndGet));
+    }
+
+    @Test
+    public void zeroTtlDisablesCache()
+    {
+        TDMetadataCache cache = new TDMetadataCache(config().setDatabaseTtlMillis(0).createTDMetadataCacheConfig());
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, (int) cache.get(DATABASE, "key", "db", null, calls::incrementAndGet));
+        assertEquals(2, (int) cache.get(DATABASE, "key", "db", null, calls::incrementAndGet));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedEntry()
+    {
+        TDMetadataCache cache = new TDMetadataCache(config().setMaxEntries(2).createTDMetadataCacheConfig());
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get(TABLE, "key", "db", "t1", calls::incrementAndGet);
+        cache.get(TABLE, "key", "db", "t2", calls::incrementAndGet);
+        // Touch t1 so that t2 becomes the eldest
+        cache.get(TABLE, "key", "db", "t1", calls::incrementAndGet);
+        cache.get(TABLE, "key", "db", "t3", calls::incrementAndGet);
+        assertEquals(2, cache.size());
+        assertEquals(3, calls.get());
+
+        cache.get(TABLE, "key", "db", "t1", calls::incrementAndGet);
+        assertEquals(3, calls.get());
+        cache.get(TABLE, "key", "db", "t2", calls::incrementAndGet);
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void invalidateTable()
+    {
+        TDMetadataCache cache = new TDMetadataCache(config().createTDMetadataCacheConfig());
+        cache.get(TABLE, "key", "db", "t1", () -> 1);
+        cache.get(TABLE, "key", "db", "t2", () -> 1);
+        cache.get(TABLE_LIST, "key", "db", null, () -> 1);
+        cache.get(TABLE_LIST, "key", "db2", null, () -> 1);
+
+        cache.invalidateTable("db", "t1");
+        assertEquals(2, cache.size());
+        cache.invalidateDatabase("db");
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void errorsAreNotCached()
+    {
+        TDMetadataCache cache = new TDMetadataCache(config().createTDMetadataCacheConfig());
+        assertThrows(TDClientHttpNotFoundException.class, () -> cache.get(TABLE, "key", "db", "t", () -> {
+            throw new TDClientHttpNotFoundException("not found");
+        }));
+        assertEquals(0, cache.size());
+        assertEquals(1, (int) cache.get(TABLE, "key", "db", "t", () -> 1));
+    }
+
+    @Test
+    public void loadOnceForConcurrentLookups()
+            throws Exception
+    {
+        TDMetadataCache cache = new TDMetadataCache(config().createTDMetadataCacheConfig());
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Integer> first = executor.submit(() -> cache.get(TABLE, "key", "db", "t", () -> {
+                loading.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return calls.incrementAndGet();
+            }));
+            loading.await();
+            Future<Integer> second = executor.submit(() -> cache.get(TABLE, "key", "db", "t", calls::incrementAndGet));
+            Future<Integer> third = executor.submit(() -> cache.get(TABLE, "key", "db", "t", calls::incrementAndGet));
+            release.countDown();
+
+            assertEquals(1, (int) first.get());
+            assertEquals(1, (int) second.get());
+            assertEquals(1, (int) third.get());
+            assertEquals(1, calls.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void reloadAfterInterruptedLoader()
+            throws Exception
+    {
+        TDMetadataCache cache = new TDMetadataCache(config().createTDMetadataCacheConfig());
+        CountDownLatch loading = new CountDownLatch(1);
+        Thread loader = new Thread(() -> {
+            try {
+                cache.get(TABLE, "key", "db", "t", () -> {
+                    loading.countDown();
+                    try {
+                        Thread.sleep(10000);
+                    }
+                    catch (InterruptedException e) {
+                        throw new TDClientInterruptedException(e);
+                    }
+                    return 1;
+                });
+            }
+            catch (TDClientInterruptedException e) {
+                // Expected
+            }
+        });
+        loader.start();
+        loading.await();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> waiting = executor.submit(() -> cache.get(TABLE, "key", "db", "t", () -> 2));
+            Thread.sleep(200);
+            loader.interrupt();
+            // The waiting caller loads the value by itself instead of failing with the interrupt of the loader
+            assertEquals(2, (int) waiting.get(10, TimeUnit.SECONDS));
+            loader.join(10000);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void interruptWaitingCaller()
+            throws Exception
+    {
+        TDMetadataCache cache = new TDMetadataCache(config().createTDMetadataCacheConfig());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> first = executor.submit(() -> cache.get(TABLE, "key", "db", "t", () -> {
+                loading.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }));
+            loading.await();
+
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            AtomicBoolean interrupted = new AtomicBoolean();
+            Thread waiting = new Thread(() -> {
+                try {
+                    cache.get(TABLE, "key", "db", "t", () -> 2);
+                }
+                catch (Throwable e) {
+                    error.set(e);
+                    interrupted.set(Thread.currentThread().isInterrupted());
+                }
+            });
+            waiting.start();
+            Thread.sleep(200);
+            waiting.interrupt();
+            waiting.join(10000);
+            assertTrue(error.get() instanceof TDClientInterruptedException, "error: " + error.get());
+            assertTrue(interrupted.get());
+
+            release.countDown();
+            assertEquals(1, (int) first.get(10, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import okhttp3.HttpUrl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestTDRateLimiter
+{
+    private static final HttpUrl API = HttpUrl.get("https://api.treasuredata.com/v3/job/list");
+    private static final HttpUrl OTHER_API = HttpUrl.get("https://api.treasuredata.co.jp/v3/job/list");
+
+    private static TDRateLimiter newRateLimiter(double maxRequestsPerSecond)
+    {
+        return new TDRateLimiter(new TDRateLimitConfig.TDRateLimitConfigBuilder()
+                .setMaxRequestsPerSecond(maxRequestsPerSecond)
+                .setMinRequestsPerSecond(1)
+                .setDecreaseFactor(0.5)
+                .setIncreasePerSecond(2)
+                .createTDRateLimitConfig());
+    }
+
+    @Test
+    public void burstUpToMaxRate()
+    {
+        TDRateLimiter limiter = newRateLimiter(10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.reserve(API));
+        }
+        // The 11th request has to wait for a token refilled at 10 requests/sec
+        assertThat(limiter.reserve(API), lessThanOrEqualTo(100L));
+        assertThat(limiter.reserve(API), greaterThan(100L));
+    }
+
+    @Test
+    public void decreaseOn429AndRecoverOnSuccess()
+    {
+        TDRateLimiter limiter = newRateLimiter(8);
+        limiter.onResponse(API, 429, null);
+        assertEquals(4.0, limiter.getRate(API), 0.001);
+        // Throttled requests stop bursting
+        assertThat(limiter.reserve(API), greaterThan(200L));
+
+        // Successive 429 responses of the requests already sent do not decrease the rate further
+        limiter.onResponse(API, 429, null);
+        assertEquals(4.0, limiter.getRate(API), 0.001);
+
+        // Other endpoints are not affected
+        assertEquals(8.0, limiter.getRate(OTHER_API), 0.001);
+        assertEquals(0, limiter.reserve(OTHER_API));
+
+        limiter.onResponse(API, 200, null);
+        assertEquals(4.5, limiter.getRate(API), 0.001);
+        for (int i = 0; i < 100; i++) {
+            limiter.onResponse(API, 200, null);
+        }
+        assertEquals(8.0, limiter.getRate(API), 0.001);
+    }
+
+    @Test
+    public void pauseUntilRetryAfter()
+    {
+        TDRateLimiter limiter = newRateLimiter(100);
+        limiter.onResponse(API, 503, new Date(System.currentTimeMillis() + 2000));
+        // 503 does not change the rate, but all requests wait for the Retry-After time
+        assertEquals(100.0, limiter.getRate(API), 0.001);
+        assertThat(limiter.reserve(API), greaterThanOrEqualTo(1900L));
+        assertThat(limiter.reserve(API), greaterThanOrEqualTo(1900L));
+        assertEquals(0, limiter.reserve(OTHER_API));
+    }
+
+    @Test
+    public void invalidConfig()
+    {
+        Assertions.assertThrows(TDClientException.class, () -> new TDRateLimitConfig.TDRateLimitConfigBuilder().setMinRequestsPerSecond(0).createTDRateLimitConfig());
+        Assertions.assertThrows(TDClientException.class, () -> new TDRateLimitConfig.TDRateLimitConfigBuilder().setMaxRequestsPerSecond(0.5).createTDRateLimitConfig());
+        Assertions.assertThrows(TDClientException.class, () -> new TDRateLimitConfig.TDRateLimitConfigBuilder().setDecreaseFactor(1).createTDRateLimitConfig());
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestTDRecordImporter
+{
+    private MockWebServer server;
+    private TDClient client;
+    // Imported records for each path
+    private final List<String> paths = Collections.synchronizedList(new ArrayList<>());
+    private final List<Value> records = Collections.synchronizedList(new ArrayList<>());
+    private volatile CountDownLatch uploadLatch = new CountDownLatch(0);
+    private volatile int responseCode = 200;
+    // The number of uploads to fail with failureCode
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile int failureCode = 503;
+    private final List<String> failedPaths = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp()
+            throws Exception
+    {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+                    throws InterruptedException
+            {
+                uploadLatch.await();
+                if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    failedPaths.add(request.getPath());
+                    return new MockResponse().setResponseCode(failureCode).setBody("{\"message\":\"unavailable\"}");
+                }
+                if (responseCode != 200) {
+                    return new MockResponse().setResponseCode(responseCode).setBody("{\"message\":\"error\"}");
+                }
+                paths.add(request.getPath());
+                try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(new GZIPInputStream(request.getBody().inputStream()))) {
+                    while (unpacker.hasNext()) {
+                        records.add(unpacker.unpackValue());
+                    }
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return new MockResponse().setBody("{\"database\":\"db\",\"table\":\"tbl\",\"elapsed_time\":1,\"unique_id\":\"x\",\"md5_hex\":\"x\"}");
+            }
+        });
+        server.start();
+        client = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryLimit(0)
+                .setRetryInitialIntervalMillis(10)
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown()
+            throws Exception
+    {
+        uploadLatch.countDown();
+        client.close();
+        server.shutdown();
+    }
+
+    private static Map<String, Object> record(long i)
+    {
+        Map<String, Object> record = new HashMap<>();
+        record.put("time", 1500000000L + i);
+        record.put("name", "record" + i);
+        return record;
+    }
+
+    public static class Event
+    {
+        public long time = 1500000000L;
+        public double value = 1.5;
+        public List<String> tags = Collections.singletonList("a");
+    }
+
+    @Test
+    public void uploadChunksBySize()
+    {
+        TDRecordImporterConfig config = new TDRecordImporterConfig.TDRecordImporterConfigBuilder()
+                .setChunkSizeBytes(256)
+                .createTDRecordImporterConfig();
+        try (TDRecordImporter importer = new TDRecordImporter(client, config)) {
+            for (int i = 0; i < 100; i++) {
+                importer.add("db", "tbl", record(i));
+            }
+            importer.add("db", "tbl2", new Event());
+            importer.flush();
+            assertEquals(101, importer.getImportedRecordCount());
+        }
+        assertEquals(101, records.size());
+        // Multiple chunks for tbl and one for tbl2
+        assertThat(paths.size(), greaterThan(3));
+        for (String path : paths) {
+            assertThat(path, startsWith("/v3/table/import_with_id/db/tbl"));
+        }
+        Value event = records.stream().filter(r -> r.asMapValue().map().size() == 3).findFirst().get();
+        assertEquals("{\"time\":1500000000,\"value\":1.5,\"tags\":[\"a\"]}", event.toJson());
+    }
+
+    @Test
+    public void skipRecordFailedToEncode()
+    {
+        Map<String, Object> brokenValue = record(1);
+        brokenValue.put("value", new Object()
+        {
+            @Override
+            public String toString()
+            {
+                throw new IllegalStateException("broken");
+            }
+        });
+        Map<String, Object> brokenCollection = record(2);
+        // A collection that has fewer elements than its size
+        brokenCollection.put("tags", new AbstractCollection<String>()
+        {
+            @Override
+            public Iterator<String> iterator()
+            {
+                return Collections.singletonList("a").iterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return 2;
+            }
+        });
+
+        try (TDRecordImporter importer = new TDRecordImporter(client)) {
+            importer.add("db", "tbl", record(0));
+            assertThrows(IllegalStateException.class, () -> importer.add("db", "tbl", brokenValue));
+            TDClientException e = assertThrows(TDClientException.class, () -> importer.add("db", "tbl", brokenCollection));
+            assertEquals(TDClientException.ErrorType.INVALID_INPUT, e.getErrorType());
+            importer.add("db", "tbl", record(3));
+            importer.flush();
+            assertEquals(2, importer.getImportedRecordCount());
+        }
+        // The chunk has only the records encoded successfully
+        assertEquals(1, paths.size());
+        assertEquals(2, records.size());
+        assertEquals("record0", records.get(0).asMapValue().map().get(ValueFactory.newString("name")).asStringValue().asString());
+        assertEquals("record3", records.get(1).asMapValue().map().get(ValueFactory.newString("name")).asStringValue().asString());
+    }
+
+    @Test
+    public void uploadByFlushInterval()
+            throws Exception
+    {
+        TDRecordImporterConfig config = new TDRecordImporterConfig.TDRecordImporterConfigBuilder()
+                .setFlushIntervalMillis(50)
+                .createTDRecordImporterConfig();
+        try (TDRecordImporter importer = new TDRecordImporter(client, config)) {
+            importer.add("db", "tbl", record(0));
+            // Uploaded without flush
+            RecordedRequest request = server.takeRequest(10, TimeUnit.SECONDS);
+            assertThat(request.getPath(), startsWith("/v3/table/import_with_id/db/tbl/"));
+        }
+        assertEquals(1, records.size());
+    }
+
+    @Test
+    public void blockWhenUploadQueueIsFull()
+            throws Exception
+    {
+        TDRecordImporterConfig config = new TDRecordImporterConfig.TDRecordImporterConfigBuilder()
+                // A chunk for every record
+                .setChunkSizeBytes(1)
+                .setUploadThreads(1)
+                .setMaxQueuedChunks(1)
+                .createTDRecordImporterConfig();
+        uploadLatch = new CountDownLatch(1);
+        try (TDRecordImporter importer = new TDRecordImporter(client, config)) {
+            // One uploading and one queued chunk
+            importer.add("db", "tbl", record(0));
+            importer.add("db", "tbl", record(1));
+            AtomicInteger added = new AtomicInteger();
+            CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+                importer.add("db", "tbl", record(2));
+                added.incrementAndGet();
+            });
+            Thread.sleep(200);
+            assertFalse(third.isDone());
+
+            uploadLatch.countDown();
+            third.get(10, TimeUnit.SECONDS);
+            assertEquals(1, added.get());
+        }
+        assertEquals(3, records.size());
+    }
+
+    @Test
+    public void retryUploadWithSameId()
+    {
+        // Request timeouts are not retried by the client
+        failureCode = 408;
+        failures.set(2);
+        try (TDRecordImporter importer = new TDRecordImporter(client)) {
+            importer.add("db", "tbl", record(0));
+            importer.flush();
+            importer.add("db", "tbl", record(1));
+            importer.flush();
+            assertEquals(2, importer.getImportedRecordCount());
+        }
+        assertEquals(2, failedPaths.size());
+        // Retried with the same import id
+        assertEquals(failedPaths.get(0), failedPaths.get(1));
+        assertEquals(failedPaths.get(0), paths.get(0));
+        assertThat(paths.get(0), matchesPattern("/v3/table/import_with_id/db/tbl/[0-9a-f]{32}/msgpack.gz"));
+        // A new id for the next chunk
+        assertNotEquals(paths.get(0), paths.get(1));
+    }
+
+    @Test
+    public void giveUpRetryAfterLimit()
+    {
+        failureCode = 408;
+        failures.set(10);
+        TDRecordImporterConfig config = new TDRecordImporterConfig.TDRecordImporterConfigBuilder()
+                .setUploadRetryLimit(2)
+                .createTDRecordImporterConfig();
+        try (TDRecordImporter importer = new TDRecordImporter(client, config)) {
+            importer.add("db", "tbl", record(0));
+            TDClientException e = assertThrows(TDClientException.class, importer::flush);
+            assertThat(e.getCause(), instanceOf(TDClientHttpException.class));
+        }
+        // 3 uploads, each of which OkHttp sends twice because it retries a 408 response once by itself
+        assertEquals(6, failedPaths.size());
+        assertEquals(0, records.size());
+    }
+
+    @Test
+    public void leaveServerErrorRetriesToClient()
+    {
+        failures.set(10);
+        TDClient retryingClient = TDClient.newBuilder(false)
+                .setUseSSL(false)
+                .setEndpoint(server.getHostName())
+                .setPort(server.getPort())
+                .setRetryLimit(1)
+                .setRetryInitialIntervalMillis(10)
+                .build();
+        try (TDRecordImporter importer = new TDRecordImporter(retryingClient)) {
+            importer.add("db", "tbl", record(0));
+            TDClientException e = assertThrows(TDClientException.class, importer::flush);
+            assertThat(e.getCause(), instanceOf(TDClientHttpException.class));
+        }
+        finally {
+            retryingClient.close();
+        }
+        // Retried by the client with the same id, but not by the importer again
+        assertEquals(2, failedPaths.size());
+        assertEquals(failedPaths.get(0), failedPaths.get(1));
+    }
+
+    @Test
+    public void throwUploadFailureFromFlush()
+    {
+        responseCode = 400;
+        try (TDRecordImporter importer = new TDRecordImporter(client)) {
+            importer.add("db", "tbl", record(0));
+            TDClientException e = assertThrows(TDClientException.class, importer::flush);
+            assertThat(e.getMessage(), startsWith("[EXECUTION_FAILURE] Failed to import 1 records into db.tbl"));
+            assertEquals(0, importer.getImportedRecordCount());
+
+            // The failure is reported once
+            importer.flush();
+        }
+    }
+}
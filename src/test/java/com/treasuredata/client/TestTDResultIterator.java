@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.treasuredata.client;
+
+import com.treasuredata.client.model.TDColumn;
+import com.treasuredata.client.model.TDColumnType;
+import com.treasuredata.client.model.TDResultFormat;
+import org.junit.jupiter.api.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTDResultIterator
+{
+    private static final List<TDColumn> SCHEMA = Arrays.asList(
+            new TDColumn("id", TDColumnType.LONG),
+            new TDColumn("score", TDColumnType.DOUBLE),
+            new TDColumn("name", TDColumnType.STRING),
+            new TDColumn("tags", TDColumnType.newArrayType(TDColumnType.STRING)),
+            new TDColumn("attrs", TDColumnType.newMapType(TDColumnType.STRING, TDColumnType.LONG)));
+
+    private interface Rows
+    {
+        void pack(MessagePacker packer)
+                throws IOException;
+    }
+
+    private static byte[] msgpackGz(Rows rows)
+            throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gz = new GZIPOutputStream(out);
+                MessagePacker packer = MessagePack.newDefaultPacker(gz)) {
+            rows.pack(packer);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void readTypedRows()
+            throws IOException
+    {
+        byte[] result = msgpackGz(packer -> {
+            packer.packArrayHeader(5)
+                    .packLong(1).packDouble(0.5).packString("a")
+                    .packArrayHeader(2).packString("x").packString("y")
+                    .packMapHeader(1).packString("k").packLong(10);
+            packer.packArrayHeader(5)
+                    .packLong(2).packNil().packString("b")
+                    .packArrayHeader(0)
+                    .packMapHeader(0);
+        });
+
+        try (TDResultIterator rows = new TDResultIterator(new ByteArrayInputStream(result), TDResultFormat.MESSAGE_PACK_GZ, SCHEMA)) {
+            assertEquals(SCHEMA, rows.getSchema());
+            assertTrue(rows.hasNext());
+            Object[] row = rows.next();
+            Map<Object, Object> attrs = new HashMap<>();
+            attrs.put("k", 10L);
+            assertArrayEquals(new Object[] {1L, 0.5, "a", Arrays.asList("x", "y"), attrs}, row);
+
+            // The row buffer is reused
+            assertSame(row, rows.next());
+            assertArrayEquals(new Object[] {2L, null, "b", Collections.emptyList(), Collections.emptyMap()}, row);
+            assertFalse(rows.hasNext());
+        }
+    }
+
+    @Test
+    public void convertValuesOfOtherTypes()
+            throws IOException
+    {
+        byte[] result = msgpackGz(packer -> {
+            // Mismatched types, a missing column and an extra column
+            packer.packArrayHeader(3).packString("12").packLong(3).packLong(100);
+            packer.packArrayHeader(6).packString("x").packString("1.5").packArrayHeader(1).packLong(1).packString("t").packString("m").packBoolean(true);
+        });
+
+        try (TDResultIterator rows = new TDResultIterator(new ByteArrayInputStream(result), TDResultFormat.MESSAGE_PACK_GZ, SCHEMA)) {
+            assertArrayEquals(new Object[] {12L, 3.0, "100", null, null}, rows.next());
+            // Unconvertible values become null, and extra columns are decoded by their own types
+            assertArrayEquals(new Object[] {null, 1.5, "[1]", null, null, true}, rows.next());
+            assertFalse(rows.hasNext());
+        }
+    }
+
+    @Test
+    public void rejectRowOtherThanArray()
+            throws IOException
+    {
+        byte[] result = msgpackGz(packer -> packer.packString("not a row"));
+
+        try (TDResultIterator rows = new TDResultIterator(new ByteArrayInputStream(result), TDResultFormat.MESSAGE_PACK_GZ, SCHEMA)) {
+            TDClientException e = assertThrows(TDClientException.class, rows::next);
+            assertEquals(TDClientException.ErrorType.EXECUTION_FAILURE, e.getErrorType());
+            assertTrue(e.getMessage().contains("must be an array"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void parseResultSchema()
+    {
+        List<TDColumn> schema = TDResultIterator.parseResultSchema(
+                "[[\"cnt\",\"bigint\"],[\"avg\",\"double\"],[\"name\",\"varchar\"],[\"tags\",\"array(varchar)\"],[\"m\",\"map<string,int>\"],[\"d\",\"decimal(10,2)\"]]");
+        assertEquals(Arrays.asList(
+                new TDColumn("cnt", TDColumnType.LONG),
+                new TDColumn("avg", TDColumnType.DOUBLE),
+                new TDColumn("name", TDColumnType.STRING),
+                new TDColumn("tags", TDColumnType.newArrayType(TDColumnType.STRING)),
+                new TDColumn("m", TDColumnType.newMapType(TDColumnType.STRING, TDColumnType.LONG)),
+                new TDColumn("d", TDColumnType.DOUBLE)), schema);
+    }
+
+    @Test
+    public void rejectTextFormat()
+    {
+        TDClientException e = assertThrows(TDClientException.class, () -> new TDResultIterator(new ByteArrayInputStream(new byte[0]), TDResultFormat.CSV, SCHEMA));
+        assertEquals(TDClientException.ErrorType.INVALID_INPUT, e.getErrorType());
+    }
+}